@@ -1,6 +1,14 @@
 package com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Controllers;
 
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Models.CacheHeaders;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Models.PhotoMetadata;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Services.DownloadingService;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Services.ImageResizer;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Services.RangeDownloadWriter;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.ImageFormat;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.ImageVariant;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.core.io.Resource;
 import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpHeaders;
@@ -21,20 +29,48 @@ import java.util.Map;
 public class DownloadController {
 
     private final DownloadingService downloadingService;
+    private final RangeDownloadWriter rangeDownloadWriter;
+    private final ImageResizer imageResizer;
 
-    public DownloadController(DownloadingService downloadingService) {
+    public DownloadController(DownloadingService downloadingService, RangeDownloadWriter rangeDownloadWriter,
+                              ImageResizer imageResizer) {
         this.downloadingService = downloadingService;
+        this.rangeDownloadWriter = rangeDownloadWriter;
+        this.imageResizer = imageResizer;
     }
 
+    // w resizes (format: jpeg, png, webp or auto, WebP for clients that accept it by default);
+    // a stored variant's width in JPEG is served from that variant, anything else is rendered.
+    // Range/If-Range give 206 partial responses, If-None-Match/If-Modified-Since give 304
     @GetMapping("/image/{photoId}")
-    public ResponseEntity<?> downloadImage(@PathVariable int photoId) {
+    public ResponseEntity<?> downloadImage(@PathVariable int photoId,
+                                           @RequestParam(required = false) Integer w,
+                                           @RequestParam(required = false) String format,
+                                           HttpServletRequest request, HttpServletResponse response) {
         try {
             // Validate photo ID
             if (photoId < 0) {
                 return buildErrorResponse("Photo ID must be a positive number", HttpStatus.BAD_REQUEST);
             }
+            if (w == null && format != null) {
+                return buildErrorResponse("format needs a width (w)", HttpStatus.BAD_REQUEST);
+            }
+            ImageVariant variant = ImageVariant.ORIGINAL;
+            if (w != null) {
+                // The format depends on Accept unless it was named, so shared caches must keep one copy per Accept
+                if (format == null || format.equalsIgnoreCase("auto")) {
+                    response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+                }
+                variant = storedVariant(w, format, request);
+                if (variant == null) return resizedImage(photoId, w, format, request, response);
+            }
+            PhotoMetadata metadata = downloadingService.findPhoto(photoId);
+            CacheHeaders cacheHeaders = downloadingService.cacheHeaders(metadata, variant);
+            if (rangeDownloadWriter.checkNotModified(cacheHeaders, request, response)) {
+                return null;
+            }
 
-            Resource resource = downloadingService.downloadImage(photoId);
+            Resource resource = downloadingService.openImage(metadata, variant, cacheHeaders);
 
             // Check if resource exists and is readable
             if (!resource.exists()) {
@@ -45,15 +81,9 @@ public class DownloadController {
                 return buildErrorResponse("Photo file is not readable", HttpStatus.FORBIDDEN);
             }
 
-            // Determine content type based on file extension
-            String contentType = determineContentType(resource.getFilename());
-
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION,
-                            "attachment; filename=\"" + resource.getFilename() + "\"")
-                    .header(HttpHeaders.CONTENT_LENGTH, String.valueOf(resource.contentLength()))
-                    .body(resource);
+            rangeDownloadWriter.write(resource, contentType(metadata, variant, resource),
+                    "attachment; filename=\"" + resource.getFilename() + "\"", cacheHeaders, request, response);
+            return null;
 
         } catch (IllegalArgumentException e) {
             return buildErrorResponse("Invalid photo ID: " + e.getMessage(), HttpStatus.BAD_REQUEST);
@@ -67,6 +97,8 @@ public class DownloadController {
             return buildErrorResponse("Invalid file path in database: " + e.getMessage(),
                     HttpStatus.INTERNAL_SERVER_ERROR);
         } catch (IOException e) {
+            // Part of the file is already out, e.g. the client went away: nothing left to answer
+            if (response.isCommitted()) return null;
             return buildErrorResponse("Error reading image file: " + e.getMessage(),
                     HttpStatus.INTERNAL_SERVER_ERROR);
         } catch (Exception e) {
@@ -75,6 +107,42 @@ public class DownloadController {
         }
     }
 
+    // The stored variant that answers this request as is, or null when it must be rendered
+    private ImageVariant storedVariant(int w, String format, HttpServletRequest request) {
+        ImageVariant variant = ImageVariant.storedAt(w);
+        if (variant == null) return null;
+        ImageFormat imageFormat;
+        try {
+            imageFormat = imageResizer.negotiate(format, request.getHeader(HttpHeaders.ACCEPT));
+        } catch (IllegalArgumentException e) {
+            // Reported by resizedImage
+            return null;
+        }
+        return imageFormat == ImageFormat.JPEG ? variant : null;
+    }
+
+    private ResponseEntity<?> resizedImage(int photoId, Integer w, String format,
+                                           HttpServletRequest request, HttpServletResponse response) throws IOException {
+        int targetWidth;
+        ImageFormat imageFormat;
+        try {
+            targetWidth = imageResizer.normalizeWidth(w);
+            imageFormat = imageResizer.negotiate(format, request.getHeader(HttpHeaders.ACCEPT));
+        } catch (IllegalArgumentException e) {
+            return buildErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        PhotoMetadata metadata = downloadingService.findPhoto(photoId);
+        CacheHeaders cacheHeaders = downloadingService.resizedCacheHeaders(metadata, targetWidth, imageFormat);
+        if (rangeDownloadWriter.checkNotModified(cacheHeaders, request, response)) {
+            return null;
+        }
+
+        Resource resource = downloadingService.openResized(metadata, targetWidth, imageFormat, cacheHeaders);
+        rangeDownloadWriter.write(resource, imageFormat.getMimeType(),
+                "attachment; filename=\"" + resource.getFilename() + "\"", cacheHeaders, request, response);
+        return null;
+    }
+
     @GetMapping("/image/{photoId}/info")
     public ResponseEntity<?> getImageInfo(@PathVariable int photoId) {
         try {
@@ -82,23 +150,24 @@ public class DownloadController {
                 return buildErrorResponse("Photo ID must be a positive number", HttpStatus.BAD_REQUEST);
             }
 
-            Resource resource = downloadingService.downloadImage(photoId);
+            // Size and type come from the cached metadata; only existence needs the file
+            PhotoMetadata metadata = downloadingService.findPhoto(photoId);
+            Resource resource = downloadingService.downloadImage(metadata, ImageVariant.ORIGINAL);
+            boolean exists = resource.exists();
 
             Map<String, Object> info = new HashMap<>();
             info.put("photoId", photoId);
-            info.put("filename", resource.getFilename());
-            info.put("exists", resource.exists());
-            info.put("readable", resource.isReadable());
-
-            try {
-                info.put("size", resource.contentLength());
-                info.put("sizeKB", String.format("%.2f", resource.contentLength() / 1024.0));
-                info.put("sizeMB", String.format("%.2f", resource.contentLength() / (1024.0 * 1024.0)));
-            } catch (IOException e) {
-                info.put("size", "Unable to determine");
-            }
+            info.put("filename", metadata.filename());
+            info.put("exists", exists);
+            info.put("readable", exists && resource.isReadable());
+
+            long size = metadata.sizeBytes();
+            info.put("size", size);
+            info.put("sizeKB", String.format("%.2f", size / 1024.0));
+            info.put("sizeMB", String.format("%.2f", size / (1024.0 * 1024.0)));
 
-            info.put("contentType", determineContentType(resource.getFilename()));
+            info.put("contentType", metadata.contentType() != null
+                    ? metadata.contentType() : determineContentType(metadata.filename()));
             info.put("message", "Image info retrieved successfully");
             info.put("status", "success");
 
@@ -118,26 +187,36 @@ public class DownloadController {
         }
     }
 
+    // Previews default to the feed-size variant; pass width for anything else
     @GetMapping("/image/{photoId}/preview")
-    public ResponseEntity<?> previewImage(@PathVariable int photoId) {
+    public ResponseEntity<?> previewImage(@PathVariable int photoId,
+                                          @RequestParam(required = false) Integer width,
+                                          HttpServletRequest request, HttpServletResponse response) {
         try {
             if (photoId < 0) {
                 return buildErrorResponse("Photo ID must be a positive number", HttpStatus.BAD_REQUEST);
             }
+            if (width != null && width <= 0) {
+                return buildErrorResponse("Width must be a positive number", HttpStatus.BAD_REQUEST);
+            }
 
-            Resource resource = downloadingService.downloadImage(photoId);
+            ImageVariant variant = width == null ? ImageVariant.FEED : ImageVariant.forWidth(width);
+            PhotoMetadata metadata = downloadingService.findPhoto(photoId);
+            CacheHeaders cacheHeaders = downloadingService.cacheHeaders(metadata, variant);
+            if (rangeDownloadWriter.checkNotModified(cacheHeaders, request, response)) {
+                return null;
+            }
+
+            Resource resource = downloadingService.openImage(metadata, variant, cacheHeaders);
 
             if (!resource.exists() || !resource.isReadable()) {
                 return buildErrorResponse("Photo file not available", HttpStatus.NOT_FOUND);
             }
 
-            String contentType = determineContentType(resource.getFilename());
-
             // For preview, use inline instead of attachment
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
-                    .body(resource);
+            rangeDownloadWriter.write(resource, contentType(metadata, variant, resource),
+                    "inline; filename=\"" + resource.getFilename() + "\"", cacheHeaders, request, response);
+            return null;
 
         } catch (IllegalArgumentException e) {
             return buildErrorResponse("Invalid photo ID", HttpStatus.BAD_REQUEST);
@@ -147,6 +226,10 @@ public class DownloadController {
             }
             return buildErrorResponse("Error loading preview: " + e.getMessage(),
                     HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (IOException e) {
+            if (response.isCommitted()) return null;
+            return buildErrorResponse("Error reading image file: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
         } catch (Exception e) {
             return buildErrorResponse("Unexpected error: " + e.getMessage(),
                     HttpStatus.INTERNAL_SERVER_ERROR);
@@ -161,11 +244,12 @@ public class DownloadController {
             }
 
             Resource resource = downloadingService.downloadImage(photoId);
+            boolean exists = resource.exists();
 
             Map<String, Object> response = new HashMap<>();
             response.put("photoId", photoId);
-            response.put("exists", resource.exists());
-            response.put("readable", resource.isReadable());
+            response.put("exists", exists);
+            response.put("readable", exists && resource.isReadable());
             response.put("status", "success");
 
             return ResponseEntity.ok(response);
@@ -186,6 +270,31 @@ public class DownloadController {
         }
     }
 
+    // 304s, full and partial responses, bytes sent by each path, and the hot-image cache
+    @GetMapping("/metrics")
+    public ResponseEntity<?> getDownloadMetrics() {
+        try {
+            Map<String, Object> response = new HashMap<>(rangeDownloadWriter.getMetrics());
+            response.putAll(downloadingService.getMetrics());
+            response.put("status", "success");
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return buildErrorResponse("Error fetching download metrics: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // 🔹 Type of what openImage served: derived variants are always JPEG, the original has its type
+    //    on the blob row. A missing variant falls back to the original, recognised by its file name
+    private String contentType(PhotoMetadata metadata, ImageVariant variant, Resource resource) {
+        boolean original = variant == ImageVariant.ORIGINAL
+                || (metadata.filename() != null && metadata.filename().equals(resource.getFilename()));
+        if (!original) return ImageFormat.JPEG.getMimeType();
+        // Rows from before content types were recorded
+        return metadata.contentType() != null ? metadata.contentType() : determineContentType(resource.getFilename());
+    }
+
     /**
      * Determines content type based on file extension
      */
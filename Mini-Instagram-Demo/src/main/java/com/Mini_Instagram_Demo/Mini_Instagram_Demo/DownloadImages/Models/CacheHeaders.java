@@ -0,0 +1,12 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Models;
+
+/**
+ * Validators and caching policy of an image response, worked out from the
+ * photo row before its file is opened.
+ *
+ * @param etag         strong entity tag, quoted
+ * @param lastModified epoch millis, or -1 when the response may still change
+ * @param cacheControl value of the Cache-Control header
+ */
+public record CacheHeaders(String etag, long lastModified, String cacheControl) {
+}
@@ -0,0 +1,21 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Models;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+
+/**
+ * A photo row together with what the download endpoints need to know about
+ * its original file, taken from photo_blob so the file is not looked at.
+ * The blob fields are null (size -1) for photos not yet moved into the
+ * content-addressed storage.
+ */
+public record PhotoMetadata(Photo photo, String storageKey, long sizeBytes, String contentType) {
+
+    // Stored files never change after upload
+    public long lastModified() {
+        return photo.getCreationDate() == null ? -1 : photo.getCreationDate().getTime();
+    }
+
+    public String filename() {
+        return storageKey == null ? null : storageKey.substring(storageKey.lastIndexOf('/') + 1);
+    }
+}
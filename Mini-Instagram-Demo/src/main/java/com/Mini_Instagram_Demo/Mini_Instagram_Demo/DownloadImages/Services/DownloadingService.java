@@ -1,33 +1,147 @@
 package com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Services;
 
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Models.CacheHeaders;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Models.PhotoMetadata;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.ImageFormat;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.ImageVariant;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
-import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoRepo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services.PhotoBlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.net.MalformedURLException;
-import java.util.Optional;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Service
 public class DownloadingService {
 
-    private final PhotoRepo photoRepo;
+    private final PhotoMetadataCache photoMetadataCache;
+    private final PhotoBlobStore photoBlobStore;
+    private final HotImageCache hotImageCache;
+    private final ImageResizer imageResizer;
 
+    @Value("${download.cache-max-age-seconds:31536000}")
+    private long cacheMaxAgeSeconds;
 
-    public DownloadingService(PhotoRepo photoRepo) {
-        this.photoRepo = photoRepo;
+    public DownloadingService(PhotoMetadataCache photoMetadataCache, PhotoBlobStore photoBlobStore,
+                              HotImageCache hotImageCache, ImageResizer imageResizer) {
+        this.photoMetadataCache = photoMetadataCache;
+        this.photoBlobStore = photoBlobStore;
+        this.hotImageCache = hotImageCache;
+        this.imageResizer = imageResizer;
     }
 
-    public Resource downloadImage(int photoId) throws MalformedURLException {
+    public Resource downloadImage(int photoId) {
+        return downloadImage(photoId, ImageVariant.ORIGINAL);
+    }
+
+    // 🔹 The requested variant, or the next larger one that exists (the original at worst)
+    public Resource downloadImage(int photoId, ImageVariant variant) {
+        return downloadImage(findPhoto(photoId), variant);
+    }
+
+    public Resource downloadImage(PhotoMetadata metadata, ImageVariant variant) {
+        return resourceOf(metadata, servedVariant(metadata, variant));
+    }
+
+    // 🔹 Variant downloadImage serves for a request: small originals have no larger variants made,
+    //    so the walk can end at the original even for a READY photo. Looks at storage
+    private ImageVariant servedVariant(PhotoMetadata metadata, ImageVariant variant) {
+        Photo photo = metadata.photo();
+        if (photo.getDerivativeState() == Photo.DerivativeState.READY) {
+            for (ImageVariant v = variant; v.isDerived(); v = v.larger()) {
+                if (photoBlobStore.derivative(photo.getContentHash(), v).exists()) return v;
+            }
+        }
+        return ImageVariant.ORIGINAL;
+    }
+
+    private Resource resourceOf(PhotoMetadata metadata, ImageVariant served) {
+        if (served.isDerived()) return photoBlobStore.derivative(metadata.photo().getContentHash(), served);
+        // 🔹 Photos from before content addressing are moved into the storage by LegacyPhotoImporter
+        if (metadata.storageKey() == null) throw new RuntimeException("no Data found");
+        return photoBlobStore.resolveKey(metadata.storageKey());
+    }
+
+    // 🔹 What the download endpoints serve: downloadImage, from memory when the image is hot
+    public Resource openImage(PhotoMetadata metadata, ImageVariant variant, CacheHeaders cacheHeaders) {
+        // The ETag identifies the bytes, so it is the cache key
+        Resource cached = hotImageCache.get(cacheHeaders.etag());
+        if (cached != null) return cached;
+
+        // Only a body on its way out pays for the existence walk. A variant that fell back to
+        // a larger one is cached under that one's key, so a small original is held once
+        ImageVariant served = servedVariant(metadata, variant);
+        String key = etag(metadata.photo().getContentHash(), served);
+        if (!key.equals(cacheHeaders.etag())) {
+            cached = hotImageCache.get(key);
+            if (cached != null) return cached;
+        }
+        return hotImageCache.admit(key, resourceOf(metadata, served));
+    }
+
+    // 🔹 The original scaled to width and encoded as format, rendered on first use; also kept hot in memory
+    public Resource openResized(PhotoMetadata metadata, int width, ImageFormat format, CacheHeaders cacheHeaders)
+            throws IOException {
+        Resource cached = hotImageCache.get(cacheHeaders.etag());
+        if (cached != null) return cached;
+        Resource original = downloadImage(metadata, ImageVariant.ORIGINAL);
+        Resource resized = new FileSystemResource(
+                imageResizer.resize(metadata.photo().getContentHash(), original, width, format));
+        return hotImageCache.admit(cacheHeaders.etag(), resized);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("photoMetadataCache", photoMetadataCache.getMetrics());
+        metrics.put("hotImageCache", hotImageCache.getMetrics());
+        metrics.put("resizer", imageResizer.getMetrics());
+        return metrics;
+    }
+
+    public PhotoMetadata findPhoto(int photoId) {
         if(photoId<0) throw new IllegalArgumentException();
 
-        Optional<Photo> byId = photoRepo.findById(photoId);
-        if(byId.isEmpty()) throw new RuntimeException("no Data found");
-        Photo photo = byId.get();
-        File file = new File(photo.getPhotoPath());
-        return new UrlResource(file.toURI());
+        return photoMetadataCache.get(photoId).orElseThrow(() -> new RuntimeException("no Data found"));
+    }
+
+    /**
+     * Validators of what {@link #downloadImage(PhotoMetadata, ImageVariant)} serves,
+     * from the row alone so a conditional GET never looks at storage. Once
+     * derivatives are READY, the content hash and the requested variant fix
+     * the bytes (the variant, or the larger one it falls back to for a small
+     * original), and stored files never change, so the response can be
+     * cached for good. A scaled variant still being generated is served as
+     * the original and must be revalidated until it is ready.
+     */
+    public CacheHeaders cacheHeaders(PhotoMetadata metadata, ImageVariant variant) {
+        Photo photo = metadata.photo();
+        if (metadata.storageKey() == null) throw new RuntimeException("no Data found");
+
+        Photo.DerivativeState state = photo.getDerivativeState();
+        if (variant.isDerived() && state == Photo.DerivativeState.PENDING) {
+            return new CacheHeaders(etag(photo.getContentHash(), ImageVariant.ORIGINAL), -1, "no-cache");
+        }
+        // Without READY variants the original is served for every size
+        ImageVariant named = state == Photo.DerivativeState.READY ? variant : ImageVariant.ORIGINAL;
+        return new CacheHeaders(etag(photo.getContentHash(), named), metadata.lastModified(),
+                "public, max-age=" + cacheMaxAgeSeconds + ", immutable");
+    }
+
+    // A render depends only on the original, the width and the format
+    public CacheHeaders resizedCacheHeaders(PhotoMetadata metadata, int width, ImageFormat format) {
+        if (metadata.storageKey() == null) throw new RuntimeException("no Data found");
+        return new CacheHeaders("\"" + metadata.photo().getContentHash() + "-w" + width + "-" + format.getExtension() + "\"",
+                metadata.lastModified(), "public, max-age=" + cacheMaxAgeSeconds + ", immutable");
+    }
+
+    private static String etag(String sha256, ImageVariant variant) {
+        return variant.isDerived()
+                ? "\"" + sha256 + "-" + variant.name().toLowerCase() + "\""
+                : "\"" + sha256 + "\"";
     }
 
 }
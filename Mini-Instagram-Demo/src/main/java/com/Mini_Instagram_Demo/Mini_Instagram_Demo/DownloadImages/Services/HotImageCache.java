@@ -0,0 +1,413 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Bytes of the most requested images, held off-heap in direct buffers and
+ * keyed by their ETag (content hash and variant), so an entry never goes
+ * stale. Hits are written to the socket straight from the buffer.
+ * <p>
+ * Size is bounded by {@code download.hot-cache.max-bytes}. Admission is
+ * TinyLFU: a count-min sketch estimates how often each image was asked for
+ * recently, and a new image only displaces the least recently used ones if
+ * it is asked for more often than each of them. A burst of images viewed
+ * once therefore cannot flush the popular ones.
+ * <p>
+ * Lookups take no lock. Each one is recorded in a small per-thread-stripe
+ * buffer, and the recorded keys are applied to the sketch and the LRU order
+ * later, under the lock that admission and eviction hold anyway.
+ * <p>
+ * The bound is on the images held, not on direct memory: an evicted buffer
+ * is only freed when the garbage collector gets to it, so under churn the
+ * JVM can hold more than {@code max-bytes} of direct memory for a while.
+ * Leave headroom when setting {@code -XX:MaxDirectMemorySize}.
+ */
+@Component
+public class HotImageCache {
+
+    private static final Logger log = LoggerFactory.getLogger(HotImageCache.class);
+
+    // Average image size assumed when sizing the frequency sketch
+    private static final int ASSUMED_IMAGE_BYTES = 32 * 1024;
+
+    private final ConcurrentHashMap<String, CachedImage> entries = new ConcurrentHashMap<>();
+    // Everything below is guarded by the lock
+    private final ReentrantLock lock = new ReentrantLock();
+    // Same images as entries, least recently used first
+    private final LinkedHashMap<String, CachedImage> recency = new LinkedHashMap<>(64, 0.75f, true);
+    private final Set<String> loading = new HashSet<>();
+    private final FrequencySketch sketch;
+    private final ReadBuffer reads = new ReadBuffer();
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private long admissions;
+    private long rejections;
+    private long evictions;
+
+    public HotImageCache(@Value("${download.hot-cache.enabled:true}") boolean enabled,
+                         @Value("${download.hot-cache.max-bytes:134217728}") long maxBytes,
+                         @Value("${download.hot-cache.max-entry-bytes:2097152}") long maxEntryBytes) {
+        if (maxEntryBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("download.hot-cache.max-entry-bytes must fit in a buffer");
+        this.enabled = enabled && maxBytes > 0;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.sketch = new FrequencySketch((int) Math.min(1 << 24, Math.max(1024, maxBytes / ASSUMED_IMAGE_BYTES)));
+    }
+
+    // 🔹 Cached image for this key, or null; every lookup counts towards the key's frequency once drained
+    public CachedImage get(String key) {
+        if (!enabled) return null;
+        CachedImage image = entries.get(key);
+        (image != null ? hits : misses).increment();
+        // Whoever finds the buffer filling up drains it, unless someone holds the lock already
+        if (reads.offer(key) && lock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Offers a resource that missed the cache. When it is small enough and
+     * asked for more often than what it would evict, it is read into a
+     * direct buffer and the cached copy is returned; otherwise the resource
+     * itself is.
+     */
+    public Resource admit(String key, Resource resource) {
+        if (!enabled) return resource;
+        long size;
+        try {
+            if (!resource.exists()) return resource;
+            size = resource.contentLength();
+        } catch (IOException e) {
+            return resource;
+        }
+        if (size <= 0 || size > maxEntryBytes) return resource;
+
+        lock.lock();
+        try {
+            CachedImage cached = entries.get(key);
+            if (cached != null) return cached;
+            // Someone else is already reading it in
+            if (loading.contains(key)) return resource;
+            // Frequencies must include the lookups still in the buffer
+            drainReads();
+            if (!makeRoom(key, size, false)) {
+                rejections++;
+                return resource;
+            }
+            loading.add(key);
+        } finally {
+            lock.unlock();
+        }
+
+        CachedImage image;
+        try {
+            image = load(resource, (int) size);
+        } catch (IOException e) {
+            log.debug("Could not cache {}", resource.getDescription(), e);
+            lock.lock();
+            try {
+                loading.remove(key);
+            } finally {
+                lock.unlock();
+            }
+            return resource;
+        }
+
+        lock.lock();
+        try {
+            loading.remove(key);
+            drainReads();
+            // Other images may have come in meanwhile; the bytes are served either way
+            if (makeRoom(key, size, true)) {
+                recency.put(key, image);
+                entries.put(key, image);
+                bytes += size;
+                admissions++;
+            } else {
+                rejections++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return image;
+    }
+
+    // Applies buffered lookups: frequency in the sketch, and recency for cached images
+    private void drainReads() {
+        reads.drainTo(key -> {
+            sketch.increment(key);
+            recency.get(key);
+        });
+    }
+
+    // Walks the LRU end: the candidate fits only if every image it displaces is less frequent
+    private boolean makeRoom(String key, long size, boolean evict) {
+        if (bytes + size <= maxBytes) return true;
+        int frequency = sketch.frequency(key);
+        long freed = 0;
+        for (Map.Entry<String, CachedImage> victim : recency.entrySet()) {
+            if (sketch.frequency(victim.getKey()) >= frequency) return false;
+            freed += victim.getValue().contentLength();
+            if (bytes - freed + size <= maxBytes) break;
+        }
+        if (bytes - freed + size > maxBytes) return false;
+        if (!evict) return true;
+
+        Iterator<Map.Entry<String, CachedImage>> it = recency.entrySet().iterator();
+        while (bytes + size > maxBytes && it.hasNext()) {
+            Map.Entry<String, CachedImage> victim = it.next();
+            bytes -= victim.getValue().contentLength();
+            entries.remove(victim.getKey());
+            it.remove();
+            evictions++;
+        }
+        return true;
+    }
+
+    private static CachedImage load(Resource resource, int size) throws IOException {
+        ByteBuffer data = ByteBuffer.allocateDirect(size);
+        // FileChannel for local files, so the bytes go from the file to the buffer without a heap copy
+        try (ReadableByteChannel channel = resource.readableChannel()) {
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+            }
+        }
+        if (data.hasRemaining()) throw new IOException("File shrank while being cached: " + resource.getDescription());
+        data.flip();
+        return new CachedImage(data.asReadOnlyBuffer(), resource.getFilename());
+    }
+
+    public Map<String, Object> getMetrics() {
+        long hitCount = hits.sum(), missCount = misses.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("hits", hitCount);
+        metrics.put("misses", missCount);
+        metrics.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        lock.lock();
+        try {
+            metrics.put("admissions", admissions);
+            metrics.put("rejections", rejections);
+            metrics.put("evictions", evictions);
+            metrics.put("entries", entries.size());
+            metrics.put("bytes", bytes);
+        } finally {
+            lock.unlock();
+        }
+        metrics.put("maxBytes", maxBytes);
+        return metrics;
+    }
+
+    /**
+     * An image held in the cache. {@link #data()} gives a private view of the
+     * shared read-only buffer, so concurrent responses do not interfere.
+     */
+    public static final class CachedImage extends AbstractResource {
+        private final ByteBuffer data;
+        private final String filename;
+
+        private CachedImage(ByteBuffer data, String filename) {
+            this.data = data;
+            this.filename = filename;
+        }
+
+        public ByteBuffer data() {
+            return data.duplicate();
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return data.capacity();
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Cached image [" + filename + "]";
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            ByteBuffer buffer = data();
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (!buffer.hasRemaining()) return len == 0 ? 0 : -1;
+                    int n = Math.min(len, buffer.remaining());
+                    buffer.get(b, off, n);
+                    return n;
+                }
+            };
+        }
+    }
+
+    /**
+     * Lookups waiting to be applied under the lock. Threads write to one of
+     * several small rings, picked by thread id, with a single CAS. A lookup
+     * that finds its ring full, or loses the CAS, is dropped: the frequency
+     * estimate only gets slightly less precise, and reads never wait.
+     */
+    private static final class ReadBuffer {
+        private static final int RING_SIZE = 16;
+        private static final int RING_MASK = RING_SIZE - 1;
+        private static final int DRAIN_THRESHOLD = RING_SIZE / 2;
+
+        private final int stripeMask;
+        private final AtomicReferenceArray<String> slots;
+        private final AtomicLongArray writeCounts;
+        // Only advanced by the drain, under the cache lock
+        private final AtomicLongArray readCounts;
+
+        ReadBuffer() {
+            int stripes = Math.min(64, Integer.highestOneBit(4 * Runtime.getRuntime().availableProcessors() - 1) << 1);
+            this.stripeMask = stripes - 1;
+            this.slots = new AtomicReferenceArray<>(stripes * RING_SIZE);
+            this.writeCounts = new AtomicLongArray(stripes);
+            this.readCounts = new AtomicLongArray(stripes);
+        }
+
+        // 🔹 Records a lookup; true when its ring is filling up and should be drained
+        boolean offer(String key) {
+            int stripe = (int) Thread.currentThread().threadId() & stripeMask;
+            long read = readCounts.get(stripe);
+            long write = writeCounts.get(stripe);
+            if (write - read >= RING_SIZE) return true;
+            if (!writeCounts.compareAndSet(stripe, write, write + 1)) return false;
+            slots.set(stripe * RING_SIZE + (int) (write & RING_MASK), key);
+            return write + 1 - read >= DRAIN_THRESHOLD;
+        }
+
+        void drainTo(Consumer<String> consumer) {
+            for (int stripe = 0; stripe <= stripeMask; stripe++) {
+                long read = readCounts.get(stripe);
+                long write = writeCounts.get(stripe);
+                for (; read < write; read++) {
+                    int slot = stripe * RING_SIZE + (int) (read & RING_MASK);
+                    String key = slots.get(slot);
+                    // Claimed but not written yet: left for the next drain
+                    if (key == null) break;
+                    slots.set(slot, null);
+                    consumer.accept(key);
+                }
+                readCounts.set(stripe, read);
+            }
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters in four rows, two counters packed
+     * per byte. After ten increments per counter all counters are halved, so
+     * popularity fades and an image that was hot yesterday does not stay
+     * cached forever.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] rows;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int width = Integer.highestOneBit(expectedEntries - 1) << 1;
+            this.rows = new byte[SEEDS.length][width / 2];
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+        }
+
+        void increment(String key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < rows.length; i++) {
+                int index = indexOf(hash, i);
+                int shift = (index & 1) << 2;
+                if (count(rows[i][index >>> 1], shift) < MAX_COUNT) {
+                    rows[i][index >>> 1] += (byte) (1 << shift);
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) halve();
+        }
+
+        int frequency(String key) {
+            int hash = spread(key.hashCode());
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < rows.length; i++) {
+                int index = indexOf(hash, i);
+                frequency = Math.min(frequency, count(rows[i][index >>> 1], (index & 1) << 2));
+            }
+            return frequency;
+        }
+
+        private static int count(byte pair, int shift) {
+            return (pair >>> shift) & 0xF;
+        }
+
+        // Both nibbles at once: the mask drops the bit the high one shifts into the low one
+        private void halve() {
+            for (byte[] row : rows) {
+                for (int i = 0; i < row.length; i++) row[i] = (byte) (((row[i] & 0xFF) >>> 1) & 0x77);
+            }
+            additions /= 2;
+        }
+
+        private int indexOf(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return (int) h & mask;
+        }
+
+        private static int spread(int x) {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.ImageFormat;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services.ImageCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Renders photos at any requested width and format, on demand. Each render
+ * is written once to a local disk cache under {@code <upload.dir>/.resized}
+ * and served from there afterwards; the least recently used files are
+ * deleted once the cache passes {@code download.resize.cache-max-bytes}.
+ * A file handed out within the last {@code eviction-grace-millis} is kept
+ * even over budget: sendfile opens it only after the request handler has
+ * returned its path.
+ * <p>
+ * Concurrent requests for the same render wait for the first one instead of
+ * rendering it again, and at most {@code max-concurrent-renders} renders run
+ * at a time. Widths are rounded up to a multiple of {@code width-step}, so
+ * arbitrary widths cannot fill the cache with near-identical files.
+ */
+@Service
+public class ImageResizer {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageResizer.class);
+
+    private final Path cacheRoot;
+    private final boolean webpAvailable;
+    private final Semaphore renderSlots;
+
+    // File name to its render, least recently used first
+    private final LinkedHashMap<String, CachedRender> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private final Map<String, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+
+    @Value("${download.resize.cache-max-bytes:1073741824}")
+    private long cacheMaxBytes;
+
+    @Value("${download.resize.eviction-grace-millis:10000}")
+    private long evictionGraceMillis;
+
+    @Value("${download.resize.width-step:32}")
+    private int widthStep;
+
+    @Value("${download.resize.max-width:4096}")
+    private int maxWidth;
+
+    @Value("${download.resize.quality:0.85}")
+    private float quality;
+
+    @Value("${upload.derivatives.max-pixels:50000000}")
+    private long maxPixels;
+
+    public ImageResizer(@Value("${upload.dir:uploads}") String uploadDir,
+                        @Value("${download.resize.max-concurrent-renders:2}") int maxConcurrentRenders) {
+        this.cacheRoot = Path.of(uploadDir).toAbsolutePath().normalize().resolve(".resized");
+        this.renderSlots = new Semaphore(Math.max(1, maxConcurrentRenders));
+        this.webpAvailable = ImageCodec.canWrite(ImageFormat.WEBP);
+        if (!webpAvailable) log.info("No WebP encoder available, resized images are served as JPEG or PNG");
+    }
+
+    // Renders kept from the last run, oldest first
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() throws IOException {
+        Files.createDirectories(cacheRoot);
+        record CachedFile(String name, long size, long modified) {
+        }
+        List<CachedFile> files = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(cacheRoot)) {
+            for (Path file : dir) {
+                String name = file.getFileName().toString();
+                // Leftovers of a render interrupted by the shutdown
+                if (name.endsWith(".part")) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                files.add(new CachedFile(name, attributes.size(), attributes.lastModifiedTime().toMillis()));
+            }
+        }
+        files.sort(Comparator.comparingLong(CachedFile::modified));
+        long found = files.stream().mapToLong(CachedFile::size).sum();
+        if (!files.isEmpty()) log.info("Found {} resized images ({} KB) in {}", files.size(), found / 1024, cacheRoot);
+        synchronized (this) {
+            // Not handed out yet in this run, so free to evict
+            long longAgo = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(evictionGraceMillis);
+            for (CachedFile file : files) {
+                if (index.putIfAbsent(file.name(), new CachedRender(file.size(), longAgo)) == null) bytes += file.size();
+            }
+            evictOverBudget();
+        }
+    }
+
+    /**
+     * Format to render: the one asked for, or with {@code auto} (or none)
+     * WebP when the client lists it in Accept and JPEG otherwise.
+     */
+    public ImageFormat negotiate(String format, String accept) {
+        if (format != null && !format.isBlank() && !format.equalsIgnoreCase("auto")) {
+            ImageFormat requested = ImageFormat.fromName(format);
+            if (requested == ImageFormat.WEBP && !webpAvailable)
+                throw new IllegalArgumentException("WebP is not supported by this server");
+            return requested;
+        }
+        return webpAvailable && acceptsWebp(accept) ? ImageFormat.WEBP : ImageFormat.JPEG;
+    }
+
+    // Only an explicit image/webp counts: image/* and */* are sent by clients that cannot decode it
+    private static boolean acceptsWebp(String accept) {
+        if (accept == null) return false;
+        try {
+            return MediaType.parseMediaTypes(accept).stream()
+                    .anyMatch(type -> type.getType().equals("image") && type.getSubtype().equals("webp")
+                            && type.getQualityValue() > 0);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+
+    // 🔹 Requested width rounded up to the step and capped; 0 keeps the original width
+    public int normalizeWidth(Integer width) {
+        if (width == null) return 0;
+        if (width <= 0) throw new IllegalArgumentException("Width must be a positive number");
+        int step = Math.max(1, widthStep);
+        return (int) Math.min(maxWidth, ((long) width + step - 1) / step * step);
+    }
+
+    /**
+     * Path of the photo rendered at this width and format, rendering it if
+     * it is not cached yet. Images are never scaled up.
+     *
+     * @param width normalized width, 0 for the original width
+     */
+    public Path resize(String sha256, Resource source, int width, ImageFormat format) throws IOException {
+        String name = sha256 + "_w" + width + "." + format.getExtension();
+        Path file = cacheRoot.resolve(name);
+        if (isCached(name, file)) {
+            hits.increment();
+            return file;
+        }
+
+        CompletableFuture<Path> render = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(name, render);
+        if (running != null) {
+            coalesced.increment();
+            return await(running);
+        }
+        try {
+            // Finished between the lookup and taking the render over
+            if (isCached(name, file)) {
+                hits.increment();
+            } else {
+                render(source, width, format, file);
+                long size = Files.size(file);
+                synchronized (this) {
+                    CachedRender previous = index.put(name, new CachedRender(size, System.nanoTime()));
+                    bytes += size - (previous == null ? 0 : previous.size());
+                    evictOverBudget();
+                }
+            }
+            render.complete(file);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            render.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(name, render);
+        }
+    }
+
+    // Marks the render as handed out, which also makes it the most recently used
+    private boolean isCached(String name, Path file) {
+        synchronized (this) {
+            CachedRender render = index.get(name);
+            if (render == null) return false;
+            render.handedOutAt = System.nanoTime();
+        }
+        if (Files.exists(file)) return true;
+        // Deleted behind our back
+        synchronized (this) {
+            CachedRender render = index.remove(name);
+            if (render != null) bytes -= render.size();
+        }
+        return false;
+    }
+
+    private static Path await(CompletableFuture<Path> render) throws IOException {
+        try {
+            return render.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw e;
+        }
+    }
+
+    private void render(Resource source, int width, ImageFormat format, Path target) throws IOException {
+        try {
+            renderSlots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to render", e);
+        }
+        long start = System.nanoTime();
+        Path part = cacheRoot.resolve(UUID.randomUUID() + ".part");
+        try {
+            int[] size = ImageCodec.readSize(source);
+            if ((long) size[0] * size[1] > maxPixels)
+                throw new IOException("Image is " + size[0] + "x" + size[1] + ", above the pixel limit");
+
+            BufferedImage image = ImageCodec.read(source);
+            int targetWidth = width == 0 ? image.getWidth() : Math.min(width, image.getWidth());
+            // Redrawn even at the same width, which also drops the alpha channel for JPEG
+            image = ImageCodec.scaleToWidth(image, targetWidth, format.hasAlpha());
+
+            Files.createDirectories(cacheRoot);
+            ImageCodec.write(image, format, quality, part);
+            try {
+                Files.move(part, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            renders.increment();
+            renderNanos.add(System.nanoTime() - start);
+        } finally {
+            Files.deleteIfExists(part);
+            renderSlots.release();
+        }
+    }
+
+    // The newest render is never evicted, even when it alone exceeds the budget
+    private void evictOverBudget() {
+        long graceStart = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(evictionGraceMillis);
+        Iterator<Map.Entry<String, CachedRender>> it = index.entrySet().iterator();
+        while (bytes > cacheMaxBytes && index.size() > 1 && it.hasNext()) {
+            Map.Entry<String, CachedRender> eldest = it.next();
+            // Handed out in access order, so every render after this one may still be about to be sent too
+            if (eldest.getValue().handedOutAt - graceStart > 0) {
+                deferred.increment();
+                break;
+            }
+            try {
+                Files.deleteIfExists(cacheRoot.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                log.warn("Could not delete resized image {}", eldest.getKey(), e);
+            }
+            bytes -= eldest.getValue().size();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        long rendered = renders.sum();
+        metrics.put("webpAvailable", webpAvailable);
+        metrics.put("hits", hits.sum());
+        metrics.put("renders", rendered);
+        metrics.put("coalesced", coalesced.sum());
+        metrics.put("evictions", evictions.sum());
+        metrics.put("deferredEvictions", deferred.sum());
+        metrics.put("avgRenderMillis", rendered == 0 ? 0 : renderNanos.sum() / rendered / 1_000_000);
+        synchronized (this) {
+            metrics.put("cachedFiles", index.size());
+            metrics.put("cachedBytes", bytes);
+        }
+        metrics.put("maxBytes", cacheMaxBytes);
+        return metrics;
+    }
+
+    private static final class CachedRender {
+        private final long size;
+        // System.nanoTime() of the last resize() that returned this file
+        private long handedOutAt;
+
+        private CachedRender(long size, long handedOutAt) {
+            this.size = size;
+            this.handedOutAt = handedOutAt;
+        }
+
+        private long size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Models.PhotoMetadata;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.PhotoBlob;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.PhotoChangedEvent;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoBlobRepo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read-through LRU cache of {@link PhotoMetadata}, so repeat downloads of a
+ * photo cost neither a photo nor a photo_blob query.
+ * <p>
+ * Rows that change are evicted on {@link PhotoChangedEvent}. New uploads need
+ * no event: photo ids are never reused and missing photos are not cached.
+ * A load that races with an eviction is not stored, so a reader can never
+ * put back the row as it was before the change.
+ */
+@Component
+public class PhotoMetadataCache {
+
+    private final PhotoRepo photoRepo;
+    private final PhotoBlobRepo photoBlobRepo;
+
+    // Least recently used first
+    private final LinkedHashMap<Integer, PhotoMetadata> entries = new LinkedHashMap<>(256, 0.75f, true);
+    // Bumped by every eviction; loads that started before one are not stored
+    private long generation;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    @Value("${download.metadata-cache.max-entries:100000}")
+    private int maxEntries;
+
+    public PhotoMetadataCache(PhotoRepo photoRepo, PhotoBlobRepo photoBlobRepo) {
+        this.photoRepo = photoRepo;
+        this.photoBlobRepo = photoBlobRepo;
+    }
+
+    // 🔹 Metadata of the photo, loaded on a miss; empty when there is no such photo
+    public Optional<PhotoMetadata> get(int photoId) {
+        long loadGeneration;
+        synchronized (this) {
+            PhotoMetadata cached = entries.get(photoId);
+            if (cached != null) {
+                hits++;
+                return Optional.of(cached);
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+
+        Optional<PhotoMetadata> loaded = photoRepo.findById(photoId).map(this::load);
+        if (loaded.isPresent() && maxEntries > 0) {
+            synchronized (this) {
+                if (generation == loadGeneration) {
+                    entries.put(photoId, loaded.get());
+                    if (entries.size() > maxEntries) {
+                        entries.pollFirstEntry();
+                        evictions++;
+                    }
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private PhotoMetadata load(Photo photo) {
+        if (photo.getContentHash() == null) return new PhotoMetadata(photo, null, -1, null);
+        return photoBlobRepo.findById(photo.getContentHash())
+                .map(blob -> metadata(photo, blob))
+                .orElseGet(() -> new PhotoMetadata(photo, null, -1, null));
+    }
+
+    private static PhotoMetadata metadata(Photo photo, PhotoBlob blob) {
+        return new PhotoMetadata(photo, blob.getStorageKey(), blob.getSizeBytes(), blob.getContentType());
+    }
+
+    @EventListener
+    public synchronized void onPhotoChanged(PhotoChangedEvent event) {
+        generation++;
+        if (event.photoIds() == null) {
+            entries.clear();
+        } else {
+            event.photoIds().forEach(entries::remove);
+        }
+    }
+
+    public synchronized Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("hits", hits);
+        metrics.put("misses", misses);
+        metrics.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        metrics.put("evictions", evictions);
+        metrics.put("entries", entries.size());
+        metrics.put("maxEntries", maxEntries);
+        return metrics;
+    }
+}
@@ -0,0 +1,234 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Models.CacheHeaders;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Storage.RangeReadable;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes a photo file to the response, whole or as the single byte range
+ * asked for with {@code Range}, honouring {@code If-Range} so a resumed
+ * download never mixes bytes of two different files.
+ * <p>
+ * Local files of at least {@code download.sendfile-min-bytes} are handed to
+ * Tomcat's sendfile, which copies them from the page cache to the socket
+ * without passing through the JVM. Smaller ones are read into a pooled
+ * direct buffer that Tomcat copies into its output buffer, so no heap array
+ * is involved (a plain transferTo into the response stream would copy
+ * through one). Images from the {@link HotImageCache} are written from
+ * their direct buffer the same way. Files in an object store are streamed,
+ * reading only the requested range.
+ * <p>
+ * Repeat views are answered with 304 by {@link #checkNotModified} before the
+ * file is looked at.
+ */
+@Component
+public class RangeDownloadWriter {
+
+    // Request attributes of Tomcat's sendfile support (see its DefaultServlet)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int DIRECT_BUFFER_POOL_SIZE = 32;
+
+    private final LongAdder notModifiedResponses = new LongAdder();
+    private final LongAdder fullResponses = new LongAdder();
+    private final LongAdder partialResponses = new LongAdder();
+    private final LongAdder unsatisfiable = new LongAdder();
+    private final LongAdder sendfileBytes = new LongAdder();
+    private final LongAdder directBufferBytes = new LongAdder();
+    // Spare direct buffers for small files; more are allocated under load and dropped afterwards
+    private final BlockingQueue<ByteBuffer> directBuffers = new ArrayBlockingQueue<>(DIRECT_BUFFER_POOL_SIZE);
+    private final LongAdder cachedBytes = new LongAdder();
+    private final LongAdder streamedBytes = new LongAdder();
+
+    @Value("${download.sendfile-min-bytes:49152}")
+    private long sendfileMinBytes;
+
+    // 🔹 true when If-None-Match / If-Modified-Since show the client's copy is current; the 304 is then set
+    public boolean checkNotModified(CacheHeaders cacheHeaders, HttpServletRequest request,
+                                    HttpServletResponse response) {
+        // Also sets ETag and Last-Modified, and 412 for a failed If-Match
+        boolean notModified = new ServletWebRequest(request, response)
+                .checkNotModified(cacheHeaders.etag(), cacheHeaders.lastModified());
+        if (!notModified) return false;
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheHeaders.cacheControl());
+        notModifiedResponses.increment();
+        return true;
+    }
+
+    public void write(Resource resource, String contentType, String contentDisposition, CacheHeaders cacheHeaders,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = resource.contentLength();
+        String etag = cacheHeaders.etag();
+        long lastModified = cacheHeaders.lastModified();
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(contentType);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (lastModified > 0) response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+
+        long start = 0, end = length - 1;
+        HttpRange range = requestedRange(request, etag, lastModified);
+        if (range != null) {
+            try {
+                start = range.getRangeStart(length);
+                end = range.getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                start = length;
+            }
+            if (start >= length || start > end) {
+                unsatisfiable.increment();
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            partialResponses.increment();
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheHeaders.cacheControl());
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        } else {
+            fullResponses.increment();
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheHeaders.cacheControl());
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) return;
+
+        if (resource instanceof HotImageCache.CachedImage cached) {
+            write(cached.data().slice((int) start, (int) count), response.getOutputStream());
+            cachedBytes.add(count);
+        } else if (resource.isFile()) {
+            Path file = resource.getFile().toPath();
+            if (count >= sendfileMinBytes && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+                // Tomcat sends the file once the handler returns
+                request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+                request.setAttribute(SENDFILE_START, start);
+                request.setAttribute(SENDFILE_END, end + 1);
+                sendfileBytes.add(count);
+                return;
+            }
+            writeFile(file, start, count, response.getOutputStream());
+            directBufferBytes.add(count);
+        } else {
+            stream(resource, start, count, response.getOutputStream());
+            streamedBytes.add(count);
+        }
+    }
+
+    // The single range to serve, or null for the whole file: several ranges,
+    // a malformed header or a stale If-Range all get the full 200 response
+    private static HttpRange requestedRange(HttpServletRequest request, String etag, long lastModified) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !ifRangeMatches(request, etag, lastModified)) return null;
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) return true;
+        ifRange = ifRange.trim();
+        // Only a strong entity tag can validate a range
+        if (ifRange.startsWith("\"")) return ifRange.equals(etag);
+        if (ifRange.startsWith("W/")) return false;
+        try {
+            long date = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return lastModified > 0 && date / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // File to direct buffer to Tomcat's output buffer; neither read nor write goes through a byte[]
+    private void writeFile(Path file, long start, long count, OutputStream out) throws IOException {
+        ByteBuffer buffer = directBuffers.poll();
+        if (buffer == null) buffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = start, end = start + count;
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                int n = channel.read(buffer, position);
+                if (n <= 0) throw new IOException("File shrank while being sent: " + file);
+                position += n;
+                write(buffer.flip(), out);
+            }
+        } finally {
+            directBuffers.offer(buffer.clear());
+        }
+    }
+
+    // Tomcat takes the buffer as is; other containers get it through a channel
+    private static void write(ByteBuffer data, OutputStream out) throws IOException {
+        if (out instanceof CoyoteOutputStream coyote) {
+            coyote.write(data);
+            return;
+        }
+        WritableByteChannel target = Channels.newChannel(out);
+        while (data.hasRemaining()) target.write(data);
+    }
+
+    private static void stream(Resource resource, long start, long count, OutputStream out) throws IOException {
+        if (resource instanceof RangeReadable ranged) {
+            try (InputStream in = ranged.getInputStream(start, count)) {
+                in.transferTo(out);
+            }
+            return;
+        }
+        try (InputStream in = resource.getInputStream()) {
+            in.skipNBytes(start);
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            for (long remaining = count; remaining > 0; ) {
+                int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (n < 0) throw new IOException("File shrank while being sent: " + resource.getDescription());
+                out.write(buffer, 0, n);
+                remaining -= n;
+            }
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("notModifiedResponses", notModifiedResponses.sum());
+        metrics.put("fullResponses", fullResponses.sum());
+        metrics.put("partialResponses", partialResponses.sum());
+        metrics.put("unsatisfiableRanges", unsatisfiable.sum());
+        metrics.put("sendfileBytes", sendfileBytes.sum());
+        metrics.put("directBufferBytes", directBufferBytes.sum());
+        metrics.put("cachedBytes", cachedBytes.sum());
+        metrics.put("streamedBytes", streamedBytes.sum());
+        return metrics;
+    }
+}
@@ -0,0 +1,11 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.ManageUsers.Models;
+
+/**
+ * The public part of a user shown in lists. {@code name} is null when no user row exists for the id.
+ */
+public record UserSummary(int userId, String name) {
+
+    public static UserSummary of(User user) {
+        return new UserSummary(user.getUserId(), user.getName());
+    }
+}
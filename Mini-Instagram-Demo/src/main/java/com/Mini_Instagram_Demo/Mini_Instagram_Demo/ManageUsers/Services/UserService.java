@@ -2,10 +2,14 @@ package com.Mini_Instagram_Demo.Mini_Instagram_Demo.ManageUsers.Services;
 
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.ManageUsers.Repositories.UserRepo;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.ManageUsers.Models.User;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.ManageUsers.Models.UserSummary;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class UserService {
@@ -52,5 +56,19 @@ public class UserService {
     public List<User> getAllUsers() {
         return userRepo.findAll();
     }
-}
 
+    // 🔹 ملخصات المستخدمين بنفس ترتيب الـ IDs، باستعلام واحد
+    public List<UserSummary> getUserSummaries(List<Integer> userIds) {
+        Map<Integer, User> usersById = new HashMap<>();
+        for (User user : userRepo.findAllById(userIds)) {
+            usersById.put(user.getUserId(), user);
+        }
+
+        List<UserSummary> summaries = new ArrayList<>(userIds.size());
+        for (Integer userId : userIds) {
+            User user = usersById.get(userId);
+            summaries.add(user != null ? UserSummary.of(user) : new UserSummary(userId, null));
+        }
+        return summaries;
+    }
+}
@@ -1,15 +1,27 @@
 package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Controllers;
 
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Inputs.FeedCursor;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Models.FeedItem;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Models.FeedPage;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services.NewsFeedService;
-import org.springframework.core.io.Resource;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services.NoFollowedUsersException;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.MalformedURLException;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -17,64 +29,110 @@ import java.util.Map;
 @RequestMapping("/api/newsfeed")
 public class NewsFeedController {
 
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final NewsFeedService newsFeedService;
+    private final ObjectMapper objectMapper;
 
-    public NewsFeedController(NewsFeedService newsFeedService) {
+    public NewsFeedController(NewsFeedService newsFeedService, ObjectMapper objectMapper) {
         this.newsFeedService = newsFeedService;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * Streams a feed page. Only the page's keys are computed before the
+     * response starts; photo rows are then loaded in small batches and each
+     * batch is flushed as soon as it is written. Clients sending
+     * {@code Accept: application/x-ndjson} get one {@link FeedItem} per line,
+     * everyone else a JSON object with the page metadata and a photos array.
+     * A database error after the first batch can only cut the response short.
+     */
     @GetMapping("/followed/{followerId}")
-    public ResponseEntity<?> getNewsFeedFollowedUsers(@PathVariable int followerId) {
+    public ResponseEntity<StreamingResponseBody> getNewsFeedFollowedUsers(
+            @PathVariable int followerId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "100") int limit,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         try {
             // Validate follower ID
             if (followerId < 0) {
-                return buildErrorResponse("Follower ID must be a positive number",
-                        HttpStatus.BAD_REQUEST);
+                return streamed(buildErrorResponse("Follower ID must be a positive number",
+                        HttpStatus.BAD_REQUEST));
             }
 
-            List<Resource> newsFeed = newsFeedService.getNewsFeedFollowedUsers(followerId);
+            // Validate page size
+            if (limit <= 0 || limit > NewsFeedService.FEED_SIZE) {
+                return streamed(buildErrorResponse("Limit must be between 1 and " + NewsFeedService.FEED_SIZE,
+                        HttpStatus.BAD_REQUEST));
+            }
+
+            FeedCursor feedCursor = cursor == null || cursor.isBlank() ? null : FeedCursor.decode(cursor);
+            FeedPage page = newsFeedService.getNewsFeedPage(followerId, feedCursor, limit);
+            String nextCursor = page.nextCursor() != null ? page.nextCursor().encode() : null;
+            String downloadBaseUrl = ServletUriComponentsBuilder.fromCurrentContextPath()
+                    .path("/api/download/image/")
+                    .toUriString();
+
+            if (accept != null && accept.contains(APPLICATION_NDJSON.toString())) {
+                return ResponseEntity.ok()
+                        .contentType(APPLICATION_NDJSON)
+                        .header(NEXT_CURSOR_HEADER, nextCursor != null ? nextCursor : "")
+                        .body(streamNdjson(page, downloadBaseUrl));
+            }
 
             // Check if news feed is empty
-            if (newsFeed == null || newsFeed.isEmpty()) {
+            if (page.entries().isEmpty()) {
                 Map<String, Object> response = new HashMap<>();
                 response.put("message", "No photos available in news feed");
                 response.put("followerId", followerId);
                 response.put("photoCount", 0);
-                return ResponseEntity.ok(response);
+                response.put("nextCursor", null);
+                return streamed(ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(response));
             }
 
-            // Prepare success response with metadata
-            Map<String, Object> response = new HashMap<>();
-            response.put("message", "News feed retrieved successfully");
-            response.put("followerId", followerId);
-            response.put("photoCount", newsFeed.size());
-            response.put("photos", newsFeed);
-            response.put("status", "success");
+            StreamingResponseBody body = out -> {
+                JsonGenerator json = objectMapper.createGenerator(out);
+                json.writeStartObject();
+                json.writeStringField("message", "News feed retrieved successfully");
+                json.writeNumberField("followerId", followerId);
+                json.writeNumberField("limit", limit);
+                json.writeStringField("nextCursor", nextCursor);
+                json.writeStringField("status", "success");
+                json.writeArrayFieldStart("photos");
+                int photoCount = 0;
+                Iterator<List<Photo>> batches = newsFeedService.loadPhotos(page);
+                while (batches.hasNext()) {
+                    for (Photo photo : batches.next()) {
+                        json.writeObject(FeedItem.of(photo, downloadBaseUrl));
+                        photoCount++;
+                    }
+                    json.flush();
+                }
+                json.writeEndArray();
+                // Known only once every batch is loaded: deleted photos are skipped
+                json.writeNumberField("photoCount", photoCount);
+                json.writeEndObject();
+                json.flush();
+            };
 
             return ResponseEntity.ok()
                     .contentType(MediaType.APPLICATION_JSON)
-                    .body(response);
+                    .header(NEXT_CURSOR_HEADER, nextCursor != null ? nextCursor : "")
+                    .body(body);
 
         } catch (IllegalArgumentException e) {
-            return buildErrorResponse("Invalid follower ID: " + e.getMessage(),
-                    HttpStatus.BAD_REQUEST);
-        } catch (NullPointerException e) {
-            return buildErrorResponse("No followed users found for this user",
-                    HttpStatus.NOT_FOUND);
-        } catch (MalformedURLException e) {
-            return buildErrorResponse("Invalid photo path encountered: " + e.getMessage(),
-                    HttpStatus.INTERNAL_SERVER_ERROR);
+            return streamed(buildErrorResponse("Invalid follower ID: " + e.getMessage(),
+                    HttpStatus.BAD_REQUEST));
+        } catch (NoFollowedUsersException e) {
+            return streamed(buildErrorResponse("No followed users found for this user",
+                    HttpStatus.NOT_FOUND));
         } catch (RuntimeException e) {
-            // This catches the RuntimeException thrown in the stream when converting photos
-            if (e.getMessage() != null && e.getMessage().contains("Invalid photo path")) {
-                return buildErrorResponse("Error loading photo: " + e.getMessage(),
-                        HttpStatus.INTERNAL_SERVER_ERROR);
-            }
-            return buildErrorResponse("Error loading photos: " + e.getMessage(),
-                    HttpStatus.INTERNAL_SERVER_ERROR);
+            return streamed(buildErrorResponse("Error loading photos: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR));
         } catch (Exception e) {
-            return buildErrorResponse("Unexpected error fetching news feed: " + e.getMessage(),
-                    HttpStatus.INTERNAL_SERVER_ERROR);
+            return streamed(buildErrorResponse("Unexpected error fetching news feed: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR));
         }
     }
 
@@ -86,11 +144,11 @@ public class NewsFeedController {
                         HttpStatus.BAD_REQUEST);
             }
 
-            List<Resource> newsFeed = newsFeedService.getNewsFeedFollowedUsers(followerId);
+            int photoCount = newsFeedService.countNewsFeed(followerId);
 
             Map<String, Object> response = new HashMap<>();
             response.put("followerId", followerId);
-            response.put("photoCount", newsFeed != null ? newsFeed.size() : 0);
+            response.put("photoCount", photoCount);
             response.put("message", "Photo count retrieved successfully");
 
             return ResponseEntity.ok(response);
@@ -98,7 +156,7 @@ public class NewsFeedController {
         } catch (IllegalArgumentException e) {
             return buildErrorResponse("Invalid follower ID: " + e.getMessage(),
                     HttpStatus.BAD_REQUEST);
-        } catch (NullPointerException e) {
+        } catch (NoFollowedUsersException e) {
             Map<String, Object> response = new HashMap<>();
             response.put("followerId", followerId);
             response.put("photoCount", 0);
@@ -118,21 +176,19 @@ public class NewsFeedController {
                         HttpStatus.BAD_REQUEST);
             }
 
-            List<Resource> newsFeed = newsFeedService.getNewsFeedFollowedUsers(followerId);
+            boolean hasPhotos = newsFeedService.hasNewsFeed(followerId);
 
             Map<String, Object> response = new HashMap<>();
             response.put("followerId", followerId);
-            response.put("hasPhotos", newsFeed != null && !newsFeed.isEmpty());
-            response.put("photoCount", newsFeed != null ? newsFeed.size() : 0);
+            response.put("hasPhotos", hasPhotos);
             response.put("message", "News feed availability checked");
 
             return ResponseEntity.ok(response);
 
-        } catch (NullPointerException e) {
+        } catch (NoFollowedUsersException e) {
             Map<String, Object> response = new HashMap<>();
             response.put("followerId", followerId);
             response.put("hasPhotos", false);
-            response.put("photoCount", 0);
             response.put("message", "User is not following anyone");
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -141,12 +197,79 @@ public class NewsFeedController {
         }
     }
 
+    @GetMapping("/metrics")
+    public ResponseEntity<?> getNewsFeedMetrics() {
+        try {
+            Map<String, Object> response = new HashMap<>(newsFeedService.getMetrics());
+            response.put("status", "success");
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return buildErrorResponse("Error fetching news feed metrics: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @PostMapping("/timeline/backfill")
+    public ResponseEntity<?> backfillTimelines() {
+        try {
+            int built = newsFeedService.backfillTimelines();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("timelinesBuilt", built);
+            response.put("message", "News feed timelines backfilled");
+            response.put("status", "success");
+
+            return ResponseEntity.ok(response);
+
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while backfilling timelines",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Error backfilling timelines: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Writes one feed item per line, each line complete before its batch is flushed.
+     */
+    private StreamingResponseBody streamNdjson(FeedPage page, String downloadBaseUrl) {
+        ObjectWriter writer = objectMapper.writerFor(FeedItem.class);
+        return out -> {
+            Iterator<List<Photo>> batches = newsFeedService.loadPhotos(page);
+            while (batches.hasNext()) {
+                for (Photo photo : batches.next()) {
+                    out.write(writer.writeValueAsBytes(FeedItem.of(photo, downloadBaseUrl)));
+                    out.write('\n');
+                }
+                out.flush();
+            }
+        };
+    }
+
+    /**
+     * Wraps a map response so the feed endpoint can keep a single streaming return type.
+     */
+    private ResponseEntity<StreamingResponseBody> streamed(ResponseEntity<?> response) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(response.getBody());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize news feed response", e);
+        }
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(response.getHeaders())
+                .body(out -> out.write(json));
+    }
+
     private ResponseEntity<Map<String, String>> buildErrorResponse(String message, HttpStatus status) {
         Map<String, String> error = new HashMap<>();
         error.put("error", message);
         error.put("status", String.valueOf(status.value()));
         error.put("timestamp", String.valueOf(System.currentTimeMillis()));
-        return ResponseEntity.status(status).body(error);
+        // Explicit type so errors still render when the client only accepts NDJSON
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(error);
     }
 
     // Global exception handlers for this controller
@@ -155,8 +278,8 @@ public class NewsFeedController {
         return buildErrorResponse("Invalid argument: " + e.getMessage(), HttpStatus.BAD_REQUEST);
     }
 
-    @ExceptionHandler(NullPointerException.class)
-    public ResponseEntity<Map<String, String>> handleNullPointer(NullPointerException e) {
+    @ExceptionHandler(NoFollowedUsersException.class)
+    public ResponseEntity<Map<String, String>> handleNoFollowedUsers(NoFollowedUsersException e) {
         return buildErrorResponse("User has no followed users or data not found",
                 HttpStatus.NOT_FOUND);
     }
@@ -0,0 +1,39 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Inputs;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset position in a news feed: the (creationDate, photoId) of the last
+ * photo a client has seen. The next page starts strictly after it.
+ */
+public record FeedCursor(long creationMillis, int photoId) {
+
+    public static FeedCursor of(Photo photo) {
+        return new FeedCursor(photo.getCreationDate().getTime(), photo.getPhotoId());
+    }
+
+    // 🔹 Is the given (creationMillis, photoId) older than this cursor?
+    public boolean isAfter(long otherMillis, int otherPhotoId) {
+        return otherMillis < creationMillis
+                || (otherMillis == creationMillis && otherPhotoId < photoId);
+    }
+
+    public String encode() {
+        String raw = creationMillis + ":" + photoId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static FeedCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new FeedCursor(Long.parseLong(raw.substring(0, separator)),
+                    Integer.parseInt(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed feed cursor");
+        }
+    }
+}
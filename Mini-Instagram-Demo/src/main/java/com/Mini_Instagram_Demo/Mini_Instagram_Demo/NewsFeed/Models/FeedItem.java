@@ -0,0 +1,30 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Models;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+
+import java.util.Date;
+
+/**
+ * Metadata-only view of a feed photo. Clients fetch the image bytes from {@code downloadUrl}.
+ */
+public record FeedItem(int photoId,
+                       int userId,
+                       Date creationDate,
+                       int photoLatitude,
+                       int photoLongitude,
+                       int userLatitude,
+                       int userLongitude,
+                       String downloadUrl) {
+
+    public static FeedItem of(Photo photo, String downloadBaseUrl) {
+        return new FeedItem(
+                photo.getPhotoId(),
+                photo.getUserId(),
+                photo.getCreationDate(),
+                photo.getPhotoLatitude(),
+                photo.getPhotoLongitude(),
+                (int) photo.getUserLatitude(),
+                photo.getUserLongitude(),
+                downloadBaseUrl + photo.getPhotoId());
+    }
+}
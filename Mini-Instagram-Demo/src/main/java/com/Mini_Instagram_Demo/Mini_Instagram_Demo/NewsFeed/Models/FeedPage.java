@@ -0,0 +1,19 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Models;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Inputs.FeedCursor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keys of one page of a news feed, newest first. {@code nextCursor} is null on the last page.
+ * The photo rows are not part of the page; they are loaded while the response is written.
+ */
+public record FeedPage(List<FeedCursor> entries, FeedCursor nextCursor) {
+
+    public List<Integer> photoIds() {
+        List<Integer> ids = new ArrayList<>(entries.size());
+        for (FeedCursor entry : entries) ids.add(entry.photoId());
+        return ids;
+    }
+}
@@ -0,0 +1,105 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Models;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Inputs.FeedCursor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Bounded ring of the most recent photo ids pushed to one follower.
+ * Once full, every push overwrites the oldest entry.
+ * Followed accounts above the celebrity threshold are not pushed; their
+ * ids are kept in {@code pulledUserIds} and merged in at read time.
+ */
+public class Timeline {
+
+    private final int[] photoIds;
+    private final long[] createdAt;
+    private final List<Integer> pulledUserIds;
+    private int head; // next slot to write
+    private int size;
+
+    public Timeline(int capacity, List<Integer> pulledUserIds) {
+        if (capacity <= 0) throw new IllegalArgumentException("Timeline capacity must be positive");
+        this.photoIds = new int[capacity];
+        this.createdAt = new long[capacity];
+        this.pulledUserIds = List.copyOf(pulledUserIds);
+    }
+
+    // A photo already in the ring is skipped: a rebuild may have read it before it was pushed
+    public synchronized void push(int photoId, long createdAtMillis) {
+        for (int i = 0; i < size; i++) {
+            if (photoIds[i] == photoId) return;
+        }
+        photoIds[head] = photoId;
+        createdAt[head] = createdAtMillis;
+        head = (head + 1) % photoIds.length;
+        if (size < photoIds.length) size++;
+    }
+
+    /**
+     * Returns up to {@code limit} (creationDate, photoId) keys older than {@code cursor}
+     * (or the newest ones when it is null) and created at or after {@code sinceMillis},
+     * ordered by (creationDate, photoId) descending.
+     */
+    public synchronized List<FeedCursor> getEntries(FeedCursor cursor, long sinceMillis, int limit) {
+        List<Integer> slots = new ArrayList<>();
+        for (int i = 1; i <= size; i++) {
+            int slot = Math.floorMod(head - i, photoIds.length);
+            if (createdAt[slot] >= sinceMillis
+                    && (cursor == null || cursor.isAfter(createdAt[slot], photoIds[slot]))) {
+                slots.add(slot);
+            }
+        }
+        // Concurrent uploads may be pushed slightly out of order
+        slots.sort(Comparator.<Integer>comparingLong(slot -> createdAt[slot])
+                .thenComparingInt(slot -> photoIds[slot])
+                .reversed());
+
+        List<FeedCursor> entries = new ArrayList<>(Math.min(limit, slots.size()));
+        for (int i = 0; i < slots.size() && i < limit; i++) {
+            int slot = slots.get(i);
+            entries.add(new FeedCursor(createdAt[slot], photoIds[slot]));
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the key of the oldest entry still held in the ring, or null when empty.
+     */
+    public synchronized FeedCursor oldest() {
+        FeedCursor oldest = null;
+        for (int i = 0; i < size; i++) {
+            if (oldest == null || oldest.isAfter(createdAt[i], photoIds[i])) {
+                oldest = new FeedCursor(createdAt[i], photoIds[i]);
+            }
+        }
+        return oldest;
+    }
+
+    // 🔹 Number of entries created at or after sinceMillis
+    public synchronized int countSince(long sinceMillis) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (createdAt[i] >= sinceMillis) count++;
+        }
+        return count;
+    }
+
+    public List<Integer> getPulledUserIds() {
+        return pulledUserIds;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized boolean isFull() {
+        return size == photoIds.length;
+    }
+
+    public int capacity() {
+        return photoIds.length;
+    }
+}
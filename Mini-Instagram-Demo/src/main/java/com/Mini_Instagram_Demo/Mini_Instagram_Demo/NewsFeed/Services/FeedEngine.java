@@ -0,0 +1,269 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Inputs.FeedCursor;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Builds feeds in memory from per-user photo indexes instead of sorting
+ * every followee's photos in the database.
+ * <p>
+ * Each index is a {@code long[]} of (epochMillis, photoId) pairs, newest
+ * first, holding at most {@code per-user-capacity} photos. A feed page is a
+ * heap-based k-way merge over the followees' indexes that stops after
+ * {@code limit} entries.
+ * <p>
+ * Uploads only patch indexes that are already loaded. An index whose
+ * owner uploaded while it was being read from the database may miss that
+ * photo, so it is used for the request that loaded it but not kept.
+ */
+@Service
+public class FeedEngine {
+
+    private static final long[] EMPTY = new long[0];
+    private static final int UPLOAD_STAMPS = 1024;
+
+    private final PhotoRepo photoRepo;
+    private final FeedWindow feedWindow;
+    private final Map<Integer, long[]> indexes = new ConcurrentHashMap<>();
+    // Upload counters, striped by user id; a collision only costs an extra reload
+    private final AtomicIntegerArray uploadStamps = new AtomicIntegerArray(UPLOAD_STAMPS);
+
+    @Value("${newsfeed.engine.enabled:true}")
+    private boolean enabled;
+
+    @Value("${newsfeed.engine.per-user-capacity:200}")
+    private int perUserCapacity;
+
+    @Value("${newsfeed.engine.max-users:100000}")
+    private int maxUsers;
+
+    public FeedEngine(PhotoRepo photoRepo, FeedWindow feedWindow) {
+        this.photoRepo = photoRepo;
+        this.feedWindow = feedWindow;
+    }
+
+    /**
+     * Result of a merge: {@code entries} holds {@code count} (epochMillis, photoId)
+     * pairs. When {@code complete} is false, a truncated index ran out and older
+     * photos must be fetched from the database after the last entry.
+     */
+    public record MergeResult(long[] entries, int count, boolean complete) {
+
+        public List<Integer> photoIds() {
+            List<Integer> ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) ids.add((int) entries[2 * i + 1]);
+            return ids;
+        }
+
+        public List<FeedCursor> keys() {
+            List<FeedCursor> keys = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) keys.add(new FeedCursor(entries[2 * i], (int) entries[2 * i + 1]));
+            return keys;
+        }
+
+        public FeedCursor last() {
+            return count == 0 ? null : new FeedCursor(entries[2 * count - 2], (int) entries[2 * count - 1]);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 🔹 K-way merge of the users' indexes, strictly after the cursor, stopping after limit photos
+    public MergeResult merge(List<Integer> userIds, FeedCursor cursor, int limit) {
+        long[][] lists = loadIndexes(userIds);
+        int k = lists.length;
+        int[] positions = new int[k];
+        int[] heap = new int[k];
+        int heapSize = 0;
+
+        for (int list = 0; list < k; list++) {
+            positions[list] = cursor == null ? 0 : firstAfter(lists[list], cursor);
+            if (positions[list] < lists[list].length / 2) {
+                heap[heapSize++] = list;
+            } else if (isTruncated(lists[list])) {
+                // The cursor is already older than everything this index holds
+                return new MergeResult(EMPTY, 0, false);
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) siftDown(heap, heapSize, i, lists, positions);
+
+        long[] entries = new long[2 * limit];
+        int count = 0;
+        boolean complete = true;
+        while (count < limit && heapSize > 0) {
+            int list = heap[0];
+            int at = 2 * positions[list];
+            entries[2 * count] = lists[list][at];
+            entries[2 * count + 1] = lists[list][at + 1];
+            count++;
+
+            if (++positions[list] < lists[list].length / 2) {
+                siftDown(heap, heapSize, 0, lists, positions);
+            } else {
+                // A full index may hide older photos, nothing after this point is trustworthy
+                // (unless the page is already full)
+                if (isTruncated(lists[list])) {
+                    complete = count == limit;
+                    break;
+                }
+                heap[0] = heap[--heapSize];
+                siftDown(heap, heapSize, 0, lists, positions);
+            }
+        }
+        return new MergeResult(entries, count, complete);
+    }
+
+    // 🔹 Keep a loaded index current when its owner uploads
+    public void onUpload(Photo photo) {
+        // Bumped first, so a load that misses this photo sees the change when it rechecks
+        uploadStamps.incrementAndGet(stampOf(photo.getUserId()));
+        indexes.computeIfPresent(photo.getUserId(), (userId, index) -> {
+            // Already read by a load that ran after the photo was saved
+            if (contains(index, photo.getPhotoId())) return index;
+            int kept = Math.min(index.length / 2, perUserCapacity - 1);
+            long[] updated = new long[2 * (kept + 1)];
+            updated[0] = photo.getCreationDate().getTime();
+            updated[1] = photo.getPhotoId();
+            System.arraycopy(index, 0, updated, 2, 2 * kept);
+            // Uploads are indexed in commit order, restore time order if two raced
+            if (kept > 0 && !isNewer(updated, 0, updated, 1)) sortNewestFirst(updated);
+            return updated;
+        });
+    }
+
+    public void invalidate(int userId) {
+        indexes.remove(userId);
+    }
+
+    public int size() {
+        return indexes.size();
+    }
+
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (long[] index : indexes.values()) bytes += 8L * index.length;
+        return bytes;
+    }
+
+    // 🔹 Load all missing indexes with a single windowed query
+    private long[][] loadIndexes(List<Integer> userIds) {
+        long[][] lists = new long[userIds.size()][];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = indexes.get(userIds.get(i));
+            if (lists[i] == null) missing.add(userIds.get(i));
+        }
+        if (missing.isEmpty()) return lists;
+
+        int[] stamps = new int[missing.size()];
+        for (int i = 0; i < stamps.length; i++) stamps[i] = uploadStamps.get(stampOf(missing.get(i)));
+
+        Map<Integer, long[]> loaded = new HashMap<>();
+        Map<Integer, Integer> filled = new HashMap<>();
+        for (Object[] row : photoRepo.findRecentPhotoKeysByUserIdIn(missing, feedWindow.since(), perUserCapacity)) {
+            int userId = ((Number) row[0]).intValue();
+            long[] index = loaded.computeIfAbsent(userId, id -> new long[2 * perUserCapacity]);
+            int n = filled.merge(userId, 1, Integer::sum) - 1;
+            index[2 * n] = ((Date) row[2]).getTime();
+            index[2 * n + 1] = ((Number) row[1]).intValue();
+        }
+
+        evictIfFull(missing.size());
+        Map<Integer, long[]> installed = new HashMap<>();
+        for (int i = 0; i < stamps.length; i++) {
+            Integer userId = missing.get(i);
+            long[] index = loaded.get(userId);
+            index = index == null ? EMPTY : Arrays.copyOf(index, 2 * filled.get(userId));
+            indexes.put(userId, index);
+            installed.put(userId, index);
+            // Install, then recheck: an upload that landed before the put never reached this index
+            if (uploadStamps.get(stampOf(userId)) != stamps[i]) indexes.remove(userId, index);
+        }
+        for (int i = 0; i < lists.length; i++) {
+            if (lists[i] == null) lists[i] = installed.get(userIds.get(i));
+        }
+        return lists;
+    }
+
+    private void evictIfFull(int incoming) {
+        Iterator<Integer> it = indexes.keySet().iterator();
+        while (indexes.size() + incoming > maxUsers && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static int stampOf(int userId) {
+        return Math.floorMod(userId, UPLOAD_STAMPS);
+    }
+
+    private static boolean contains(long[] index, int photoId) {
+        for (int i = 1; i < index.length; i += 2) {
+            if (index[i] == photoId) return true;
+        }
+        return false;
+    }
+
+    private boolean isTruncated(long[] index) {
+        return index.length / 2 >= perUserCapacity;
+    }
+
+    // First pair strictly older than the cursor (binary search over a newest-first index)
+    private static int firstAfter(long[] index, FeedCursor cursor) {
+        int low = 0, high = index.length / 2;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cursor.isAfter(index[2 * mid], (int) index[2 * mid + 1])) high = mid;
+            else low = mid + 1;
+        }
+        return low;
+    }
+
+    private static void siftDown(int[] heap, int size, int i, long[][] lists, int[] positions) {
+        while (true) {
+            int left = 2 * i + 1, right = left + 1, newest = i;
+            if (left < size && newer(heap[left], heap[newest], lists, positions)) newest = left;
+            if (right < size && newer(heap[right], heap[newest], lists, positions)) newest = right;
+            if (newest == i) return;
+            int tmp = heap[i];
+            heap[i] = heap[newest];
+            heap[newest] = tmp;
+            i = newest;
+        }
+    }
+
+    private static boolean newer(int a, int b, long[][] lists, int[] positions) {
+        return isNewer(lists[a], positions[a], lists[b], positions[b]);
+    }
+
+    private static boolean isNewer(long[] a, int i, long[] b, int j) {
+        long millisA = a[2 * i], millisB = b[2 * j];
+        return millisA > millisB || (millisA == millisB && a[2 * i + 1] > b[2 * j + 1]);
+    }
+
+    private static void sortNewestFirst(long[] index) {
+        // Insertion sort: only the head is out of place
+        for (int i = 1; i < index.length / 2 && isNewer(index, i, index, i - 1); i++) {
+            long millis = index[2 * i], id = index[2 * i + 1];
+            index[2 * i] = index[2 * i - 2];
+            index[2 * i + 1] = index[2 * i - 1];
+            index[2 * i - 2] = millis;
+            index[2 * i - 1] = id;
+        }
+    }
+}
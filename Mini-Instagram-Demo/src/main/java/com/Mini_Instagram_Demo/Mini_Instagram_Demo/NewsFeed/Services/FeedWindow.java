@@ -0,0 +1,35 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Oldest {@code CreationDate} the feed reads. The photo table is partitioned
+ * by month, so bounding every feed query from below lets Postgres prune all
+ * partitions older than the window.
+ */
+@Component
+public class FeedWindow {
+
+    // Used when the window is switched off; older than any stored photo
+    private static final LocalDate UNBOUNDED = LocalDate.of(1900, 1, 1);
+
+    @Value("${newsfeed.window-months:12}")
+    private int months;
+
+    // 🔹 Start of the oldest month in the window, on a partition boundary
+    public Date since() {
+        LocalDate start = months > 0
+                ? LocalDate.now().withDayOfMonth(1).minusMonths(months)
+                : UNBOUNDED;
+        return Date.from(start.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    public int getMonths() {
+        return months;
+    }
+}
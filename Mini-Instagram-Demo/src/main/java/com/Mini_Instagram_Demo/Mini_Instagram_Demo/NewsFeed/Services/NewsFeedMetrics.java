@@ -0,0 +1,52 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the hybrid push/pull news feed.
+ */
+@Component
+public class NewsFeedMetrics {
+
+    private final AtomicLong fanOutPushes = new AtomicLong();
+    private final AtomicLong fanOutsSkipped = new AtomicLong();
+    private final AtomicLong timelineRebuilds = new AtomicLong();
+    private final AtomicLong hybridReads = new AtomicLong();
+    private final AtomicLong pulledUsers = new AtomicLong();
+    private final AtomicLong mergeNanos = new AtomicLong();
+
+    public void recordFanOut(int pushes) {
+        fanOutPushes.addAndGet(pushes);
+    }
+
+    public void recordFanOutSkipped() {
+        fanOutsSkipped.incrementAndGet();
+    }
+
+    public void recordTimelineRebuild() {
+        timelineRebuilds.incrementAndGet();
+    }
+
+    public void recordHybridRead(int pulledUserCount, long nanos) {
+        hybridReads.incrementAndGet();
+        pulledUsers.addAndGet(pulledUserCount);
+        mergeNanos.addAndGet(nanos);
+    }
+
+    public Map<String, Object> snapshot() {
+        long reads = hybridReads.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("fanOutPushes", fanOutPushes.get());
+        metrics.put("fanOutsSkipped", fanOutsSkipped.get());
+        metrics.put("timelineRebuilds", timelineRebuilds.get());
+        metrics.put("hybridReads", reads);
+        metrics.put("avgPulledUsersPerRead", reads == 0 ? 0.0 : (double) pulledUsers.get() / reads);
+        metrics.put("avgMergeMicros", reads == 0 ? 0.0 : mergeNanos.get() / 1000.0 / reads);
+        metrics.put("totalMergeMillis", mergeNanos.get() / 1_000_000);
+        return metrics;
+    }
+}
@@ -1,68 +1,348 @@
 package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services;
 
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Inputs.FeedCursor;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Models.FeedPage;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Models.Timeline;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoRepo;
-import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models.UserFollow;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Repositories.UserFollowRepo;
-import jakarta.annotation.Resources;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Services.FollowingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Limit;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.net.MalformedURLException;
-import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class NewsFeedService {
 
+    private static final Logger log = LoggerFactory.getLogger(NewsFeedService.class);
+
+    public static final int FEED_SIZE = 100;
+    // Photo rows read per query while a page is written out
+    private static final int LOAD_BATCH = 20;
+
     private final UserFollowRepo userFollowRepo;
     private final PhotoRepo photoRepo;
+    private final TimelineService timelineService;
+    private final FollowingService followingService;
+    private final FeedEngine feedEngine;
+    private final NewsFeedMetrics metrics;
+    private final FeedWindow feedWindow;
 
-    public NewsFeedService(UserFollowRepo userFollowRepo, PhotoRepo photoRepo) {
+    @Value("${newsfeed.timeline.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    public NewsFeedService(UserFollowRepo userFollowRepo, PhotoRepo photoRepo, TimelineService timelineService,
+                           FollowingService followingService, FeedEngine feedEngine, NewsFeedMetrics metrics,
+                           FeedWindow feedWindow) {
         this.userFollowRepo = userFollowRepo;
         this.photoRepo = photoRepo;
+        this.timelineService = timelineService;
+        this.followingService = followingService;
+        this.feedEngine = feedEngine;
+        this.metrics = metrics;
+        this.feedWindow = feedWindow;
+    }
+
+    // 🔹 Keys of one keyset page of the feed, starting strictly after the cursor.
+    //    No photo row is read here, see loadPhotos.
+    public FeedPage getNewsFeedPage(int followerId, FeedCursor cursor, int limit) {
+        if (followerId < 0)
+            throw new IllegalArgumentException("Invalid followerId");
+        if (limit <= 0 || limit > FEED_SIZE)
+            throw new IllegalArgumentException("Limit must be between 1 and " + FEED_SIZE);
+
+        List<FeedCursor> keys = timelineService.isEnabled()
+                ? getTimelineKeys(followerId, cursor, limit)
+                : pullKeys(getFollowedUserIds(followerId), cursor, limit);
+
+        FeedCursor nextCursor = keys.size() == limit ? keys.get(keys.size() - 1) : null;
+        return new FeedPage(keys, nextCursor);
+    }
+
+    // 🔹 The page's photos in feed order, LOAD_BATCH rows per query, so the first
+    //    ones can be sent before the rest are read. Deleted photos are skipped.
+    public Iterator<List<Photo>> loadPhotos(FeedPage page) {
+        List<Integer> photoIds = page.photoIds();
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < photoIds.size();
+            }
+
+            @Override
+            public List<Photo> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                int end = Math.min(next + LOAD_BATCH, photoIds.size());
+                List<Photo> batch = findPhotosInOrder(photoIds.subList(next, end));
+                next = end;
+                return batch;
+            }
+        };
     }
 
-    public List<Resource> getNewsFeedFollowedUsers(int followerId) throws MalformedURLException {
+    // 🔹 Size of the first feed page, answered without loading any photo rows.
+    //    Ring entries older than the feed window are left out, as on the feed pages.
+    public int countNewsFeed(int followerId) {
         if (followerId < 0)
             throw new IllegalArgumentException("Invalid followerId");
 
-        // 1️⃣ جلب الأشخاص الذين يتابعهم المستخدم
-        List<UserFollow> followingList = userFollowRepo.findAllByUserId1(followerId);
-        if (followingList.isEmpty())
-            throw new NullPointerException("No followed users found");
+        if (!timelineService.isEnabled())
+            return countPhotos(getFollowedUserIds(followerId), FEED_SIZE);
+
+        Timeline timeline = timelineService.getTimeline(followerId);
+        if (timeline == null)
+            timeline = rebuildTimeline(followerId);
+
+        int count = Math.min(FEED_SIZE, timeline.countSince(feedWindow.since().getTime()));
+        if (count < FEED_SIZE && timeline.isFull())
+            return countPhotos(getFollowedUserIds(followerId), FEED_SIZE);
+
+        List<Integer> pulledUserIds = timeline.getPulledUserIds();
+        if (count < FEED_SIZE && !pulledUserIds.isEmpty()) {
+            FeedEngine.MergeResult pulled = feedEngine.isEnabled()
+                    ? feedEngine.merge(pulledUserIds, null, FEED_SIZE - count)
+                    : null;
+            count += pulled != null && pulled.complete()
+                    ? pulled.count()
+                    : countPhotos(pulledUserIds, FEED_SIZE - count);
+        }
+        return count;
+    }
+
+    // 🔹 Does the feed have at least one photo?
+    public boolean hasNewsFeed(int followerId) {
+        if (followerId < 0)
+            throw new IllegalArgumentException("Invalid followerId");
+
+        if (timelineService.isEnabled()) {
+            Timeline timeline = timelineService.getTimeline(followerId);
+            if (timeline != null && timeline.countSince(feedWindow.since().getTime()) > 0)
+                return true;
+        }
+        return !photoRepo.findPhotoIdsByUserIdInSince(getFollowedUserIds(followerId),
+                feedWindow.since(), Limit.of(1)).isEmpty();
+    }
+
+    private int countPhotos(List<Integer> userIds, int limit) {
+        return (int) Math.min(limit, photoRepo.countByUserIdInSince(userIds, feedWindow.since()));
+    }
+
+    // 🔹 Push path: a single lookup in the follower's precomputed timeline,
+    //    merged with the pulled photos of followed celebrities
+    private List<FeedCursor> getTimelineKeys(int followerId, FeedCursor cursor, int limit) {
+        Timeline timeline = timelineService.getTimeline(followerId);
+        if (timeline == null)
+            timeline = rebuildTimeline(followerId);
+
+        List<FeedCursor> keys = timeline.getEntries(cursor, feedWindow.since().getTime(), limit);
+        boolean ringExhausted = keys.size() < limit;
+
+        List<Integer> pulledUserIds = timeline.getPulledUserIds();
+        if (!pulledUserIds.isEmpty()) {
+            long start = System.nanoTime();
+            List<FeedCursor> pulled = pullKeys(pulledUserIds, cursor, limit);
+            keys = mergeNewestFirst(keys, pulled, limit);
+            metrics.recordHybridRead(pulledUserIds.size(), System.nanoTime() - start);
+        }
+
+        // Scrolled past the oldest photo kept in the ring: continue from the pull path
+        if (ringExhausted && timeline.isFull()) {
+            // Pulled photos older than the ring would skip pushed photos in between
+            FeedCursor oldest = timeline.oldest();
+            keys.removeIf(key -> oldest.isAfter(key.creationMillis(), key.photoId()));
+
+            if (keys.size() < limit) {
+                FeedCursor from = keys.isEmpty() ? cursor : keys.get(keys.size() - 1);
+                keys.addAll(pullKeys(getFollowedUserIds(followerId), from, limit - keys.size()));
+            }
+        }
+        return keys;
+    }
+
+    private List<Photo> findPhotosInOrder(List<Integer> photoIds) {
+        Map<Integer, Photo> photosById = photoRepo.findAllById(photoIds).stream()
+                .collect(Collectors.toMap(Photo::getPhotoId, Function.identity()));
+
+        return photoIds.stream()
+                .map(photosById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // 🔹 Merge two newest-first lists, dropping duplicates, keeping at most limit photos
+    private List<FeedCursor> mergeNewestFirst(List<FeedCursor> first, List<FeedCursor> second, int limit) {
+        List<FeedCursor> merged = new ArrayList<>(Math.min(limit, first.size() + second.size()));
+        int i = 0, j = 0;
+        while (merged.size() < limit && (i < first.size() || j < second.size())) {
+            FeedCursor next;
+            if (j >= second.size()) {
+                next = first.get(i++);
+            } else if (i >= first.size()) {
+                next = second.get(j++);
+            } else {
+                FeedCursor a = first.get(i), b = second.get(j);
+                next = a.isAfter(b.creationMillis(), b.photoId()) ? first.get(i++) : second.get(j++);
+            }
+            if (merged.isEmpty() || merged.get(merged.size() - 1).photoId() != next.photoId()) {
+                merged.add(next);
+            }
+        }
+        return merged;
+    }
+
+    // 1️⃣ جلب الأشخاص الذين يتابعهم المستخدم
+    private List<Integer> getFollowedUserIds(int followerId) {
+        int[] followingIds = followingService.getFollowingIds(followerId);
+        if (followingIds.length == 0)
+            throw new NoFollowedUsersException(followerId);
 
         // 2️⃣ استخراج الـ IDs للأشخاص الذين يتم متابعتهم
-        List<Integer> followedUserIds = followingList.stream()
-                .map(UserFollow::getUserId2)
+        return Arrays.stream(followingIds)
+                .boxed()
                 .collect(Collectors.toList());
+    }
 
-        // 3️⃣ جلب آخر 100 صورة لهؤلاء المستخدمين
-        Pageable top100 = PageRequest.of(0, 100);
-        List<Photo> photos = photoRepo.findTopByUserIdInOrderByCreationDateDesc(followedUserIds, top100);
-
-        // 4️⃣ تحويل كل صورة إلى Resource
-        List<Resource> resources = photos.stream()
-                .map(photo -> {
-                    try {
-                        return new UrlResource(photo.getPhotoPath());
-                    } catch (MalformedURLException e) {
-                        throw new RuntimeException("Invalid photo path: " + photo.getPhotoPath(), e);
-                    }
-                })
-                .collect(Collectors.toList());
+    // 🔹 Pull path: keys of the newest photos of the given users, strictly after the cursor
+    private List<FeedCursor> pullKeys(List<Integer> userIds, FeedCursor cursor, int limit) {
+        if (!feedEngine.isEnabled())
+            return queryKeys(userIds, cursor, limit);
+
+        FeedEngine.MergeResult merged = feedEngine.merge(userIds, cursor, limit);
+        List<FeedCursor> keys = merged.keys();
 
-        return resources;
+        // An index only keeps recent photos, older ones come from the database
+        if (!merged.complete() && merged.count() < limit) {
+            FeedCursor from = merged.count() == 0 ? cursor : merged.last();
+            keys.addAll(queryKeys(userIds, from, limit - merged.count()));
+        }
+        return keys;
     }
 
+    private List<FeedCursor> queryKeys(List<Integer> userIds, FeedCursor cursor, int limit) {
+        // 3️⃣ جلب آخر الصور لهؤلاء المستخدمين
+        List<Object[]> rows = cursor == null
+                ? photoRepo.findFeedKeys(userIds, feedWindow.since(), Limit.of(limit))
+                : photoRepo.findFeedKeysBefore(userIds, feedWindow.since(),
+                        new Date(cursor.creationMillis()), cursor.photoId(), Limit.of(limit));
 
+        List<FeedCursor> keys = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            keys.add(new FeedCursor(((Date) row[1]).getTime(), ((Number) row[0]).intValue()));
+        }
+        return keys;
+    }
+
+    // 🔹 Accounts at or above the follower threshold are pulled at read time
+    private boolean isCelebrity(int userId) {
+        boolean celebrity = timelineService.isCelebrity(followingService.getNumberOfFollowers(userId));
+        timelineService.updateCelebrity(userId, celebrity);
+        return celebrity;
+    }
+
+    // 🔹 Build a follower's timeline from the pull path and store it
+    public Timeline rebuildTimeline(int followerId) {
+        int stamp = timelineService.stamp(followerId);
+        return rebuildTimeline(followerId, getFollowedUserIds(followerId), stamp);
+    }
+
+    private Timeline rebuildTimeline(int followerId, List<Integer> followedUserIds, int stamp) {
+        List<Integer> pushedUserIds = new ArrayList<>();
+        List<Integer> pulledUserIds = new ArrayList<>();
+        for (Integer userId : followedUserIds) {
+            if (isCelebrity(userId)) pulledUserIds.add(userId);
+            else pushedUserIds.add(userId);
+        }
+
+        Timeline timeline = new Timeline(timelineService.getCapacity(), pulledUserIds);
+        if (!pushedUserIds.isEmpty()) {
+            List<FeedCursor> keys = pullKeys(pushedUserIds, null, timelineService.getCapacity());
+            for (int i = keys.size() - 1; i >= 0; i--) {
+                FeedCursor key = keys.get(i);
+                timeline.push(key.photoId(), key.creationMillis());
+            }
+        }
+        timelineService.putTimeline(followerId, timeline, stamp);
+        metrics.recordTimelineRebuild();
+        return timeline;
+    }
+
+    // 🔹 Called once a new photo is saved
+    public void onPhotoUploaded(Photo photo) {
+        feedEngine.onUpload(photo);
+        fanOut(photo);
+    }
+
+    // 🔹 Fan-out on write: push a freshly uploaded photo to every follower's timeline,
+    //    unless the uploader has so many followers that they are pulled instead
+    public void fanOut(Photo photo) {
+        if (!timelineService.isEnabled()) return;
+
+        if (isCelebrity(photo.getUserId())) {
+            metrics.recordFanOutSkipped();
+            return;
+        }
+
+        int[] followerIds = followingService.getFollowerIds(photo.getUserId());
+        for (int followerId : followerIds) {
+            timelineService.push(followerId, photo.getPhotoId(), photo.getCreationDate().getTime());
+        }
+        metrics.recordFanOut(followerIds.length);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> snapshot = new LinkedHashMap<>(metrics.snapshot());
+        snapshot.put("timelineEnabled", timelineService.isEnabled());
+        snapshot.put("celebrityThreshold", timelineService.getCelebrityThreshold());
+        snapshot.put("celebrities", timelineService.getCelebrityCount());
+        snapshot.put("timelines", timelineService.size());
+        snapshot.put("engineEnabled", feedEngine.isEnabled());
+        snapshot.put("engineIndexedUsers", feedEngine.size());
+        snapshot.put("engineIndexBytes", feedEngine.sizeInBytes());
+        return snapshot;
+    }
+
+    // 🔹 Backfill timelines for every user that follows someone
+    public int backfillTimelines() {
+        if (!timelineService.isEnabled()) return 0;
+
+        int built = 0;
+        for (Integer followerId : userFollowRepo.findDistinctFollowerIds()) {
+            int stamp = timelineService.stamp(followerId);
+            int[] followingIds = followingService.getFollowingIds(followerId);
+            // The user unfollowed everyone in the meantime
+            if (followingIds.length == 0) continue;
+
+            rebuildTimeline(followerId, Arrays.stream(followingIds).boxed().toList(), stamp);
+            built++;
+        }
+        return built;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (!backfillOnStartup || !timelineService.isEnabled()) return;
+
+        long start = System.currentTimeMillis();
+        int built = backfillTimelines();
+        log.info("Backfilled {} news feed timelines in {} ms", built, System.currentTimeMillis() - start);
+    }
 
 }
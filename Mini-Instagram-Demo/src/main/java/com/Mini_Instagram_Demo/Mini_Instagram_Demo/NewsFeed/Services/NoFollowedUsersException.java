@@ -0,0 +1,11 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services;
+
+/**
+ * Thrown when a feed is requested for a user who follows nobody.
+ */
+public class NoFollowedUsersException extends RuntimeException {
+
+    public NoFollowedUsersException(int followerId) {
+        super("No followed users found for user " + followerId);
+    }
+}
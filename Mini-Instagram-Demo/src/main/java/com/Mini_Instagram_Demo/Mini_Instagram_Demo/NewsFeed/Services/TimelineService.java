@@ -0,0 +1,118 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Models.Timeline;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * In-memory store of precomputed home timelines, keyed by follower id.
+ * Only timelines that have already been built receive pushes; a missing
+ * timeline is rebuilt from the pull path on the next feed read.
+ * <p>
+ * A rebuild reads the database before it stores its timeline, so a photo
+ * pushed in between would reach neither. Every push and invalidation bumps
+ * a per-follower stamp first; a rebuild takes the stamp before it reads and
+ * only keeps its timeline if the stamp has not moved once it is stored.
+ */
+@Service
+public class TimelineService {
+
+    private final Map<Integer, Timeline> timelines = new ConcurrentHashMap<>();
+    private final Map<Integer, Boolean> celebrityStatus = new ConcurrentHashMap<>();
+    // Pushes and invalidations, striped by follower id; a collision only costs an extra rebuild
+    private final AtomicIntegerArray changeStamps = new AtomicIntegerArray(CHANGE_STAMPS);
+
+    private static final int CHANGE_STAMPS = 1024;
+
+    @Value("${newsfeed.timeline.enabled:true}")
+    private boolean enabled;
+
+    @Value("${newsfeed.timeline.capacity:500}")
+    private int capacity;
+
+    @Value("${newsfeed.hybrid.celebrity-threshold:10000}")
+    private int celebrityThreshold;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getCelebrityThreshold() {
+        return celebrityThreshold;
+    }
+
+    public boolean isCelebrity(int followersCount) {
+        return followersCount >= celebrityThreshold;
+    }
+
+    /**
+     * Records whether a user is currently pulled at read time. Every built
+     * timeline embeds that decision, so a transition invalidates them all.
+     *
+     * @return true if the user crossed the threshold in either direction
+     */
+    public boolean updateCelebrity(int userId, boolean celebrity) {
+        Boolean previous = celebrityStatus.put(userId, celebrity);
+        boolean changed = previous != null && previous != celebrity;
+        if (changed) {
+            for (int i = 0; i < CHANGE_STAMPS; i++) changeStamps.incrementAndGet(i);
+            timelines.clear();
+        }
+        return changed;
+    }
+
+    public long getCelebrityCount() {
+        return celebrityStatus.values().stream().filter(Boolean::booleanValue).count();
+    }
+
+    public Timeline getTimeline(int followerId) {
+        return timelines.get(followerId);
+    }
+
+    // 🔹 Taken by a rebuild before it reads the follow set or any photo
+    public int stamp(int followerId) {
+        return changeStamps.get(stampOf(followerId));
+    }
+
+    /**
+     * Stores a rebuilt timeline, unless a push or an invalidation for this
+     * follower came in since {@code stamp} was taken: the rebuild may have
+     * missed it, so the timeline then only serves the request that built it.
+     */
+    public void putTimeline(int followerId, Timeline timeline, int stamp) {
+        timelines.put(followerId, timeline);
+        // Install, then recheck: a push that landed before the put never reached this timeline
+        if (changeStamps.get(stampOf(followerId)) != stamp) timelines.remove(followerId, timeline);
+    }
+
+    // 🔹 Push a new photo to a follower's timeline if it has been built
+    public void push(int followerId, int photoId, long createdAtMillis) {
+        changeStamps.incrementAndGet(stampOf(followerId));
+        timelines.computeIfPresent(followerId, (id, timeline) -> {
+            timeline.push(photoId, createdAtMillis);
+            return timeline;
+        });
+    }
+
+    // 🔹 Drop a timeline whose follow set changed, it is rebuilt on next read
+    public void invalidate(int followerId) {
+        changeStamps.incrementAndGet(stampOf(followerId));
+        timelines.remove(followerId);
+    }
+
+    public int size() {
+        return timelines.size();
+    }
+
+    private static int stampOf(int followerId) {
+        return Math.floorMod(followerId, CHANGE_STAMPS);
+    }
+}
@@ -0,0 +1,83 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.Suggestions.Controllers;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.Suggestions.Models.SuggestionResult;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.Suggestions.Services.SuggestionService;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/suggestions")
+public class SuggestionController {
+
+    private final SuggestionService suggestionService;
+
+    public SuggestionController(SuggestionService suggestionService) {
+        this.suggestionService = suggestionService;
+    }
+
+    @GetMapping("/{userId}")
+    public ResponseEntity<?> getSuggestions(
+            @PathVariable int userId,
+            @RequestParam(required = false, defaultValue = "20") int limit) {
+        try {
+            if (userId < 0) {
+                return buildErrorResponse("User ID must be a positive number", HttpStatus.BAD_REQUEST);
+            }
+
+            if (limit <= 0 || limit > SuggestionService.MAX_SUGGESTIONS) {
+                return buildErrorResponse("Limit must be between 1 and " + SuggestionService.MAX_SUGGESTIONS,
+                        HttpStatus.BAD_REQUEST);
+            }
+
+            SuggestionResult result = suggestionService.getSuggestions(userId, limit);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("userId", userId);
+            response.put("suggestions", result.suggestions());
+            response.put("count", result.suggestions().size());
+            response.put("sampled", result.sampled());
+            response.put("partial", result.partial());
+            response.put("computeMillis", result.computeMillis());
+            response.put("message", result.suggestions().isEmpty()
+                    ? "No suggestions available for this user"
+                    : "Suggestions retrieved successfully");
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return buildErrorResponse("Invalid input: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while computing suggestions",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/metrics")
+    public ResponseEntity<?> getSuggestionMetrics() {
+        try {
+            Map<String, Object> response = new HashMap<>(suggestionService.getMetrics());
+            response.put("status", "success");
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return buildErrorResponse("Error fetching suggestion metrics: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private ResponseEntity<Map<String, String>> buildErrorResponse(String message, HttpStatus status) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        error.put("status", String.valueOf(status.value()));
+        error.put("timestamp", String.valueOf(System.currentTimeMillis()));
+        return ResponseEntity.status(status).body(error);
+    }
+}
@@ -0,0 +1,7 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.Suggestions.Models;
+
+/**
+ * A suggested account and how many of the viewer's followees already follow it.
+ */
+public record Suggestion(int userId, int mutualCount) {
+}
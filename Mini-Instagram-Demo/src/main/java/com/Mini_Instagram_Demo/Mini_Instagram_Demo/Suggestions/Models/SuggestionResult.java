@@ -0,0 +1,12 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.Suggestions.Models;
+
+import java.util.List;
+
+/**
+ * Ranked suggestions for one user. {@code sampled} is set when only part of the
+ * followees were expanded, {@code partial} when the latency budget ran out and
+ * some mutual counts are estimates.
+ */
+public record SuggestionResult(List<Suggestion> suggestions, boolean sampled, boolean partial,
+                               long computeMillis, long computedAt) {
+}
@@ -0,0 +1,442 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.Suggestions.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.Suggestions.Models.Suggestion;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.Suggestions.Models.SuggestionResult;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models.FollowChangedEvent;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Services.FollowingService;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * "People you may know": accounts followed by the user's followees, ranked by
+ * how many followees follow them (the mutual count).
+ * <p>
+ * Candidates are counted in parallel over the followees' sorted following
+ * lists. Users with more followees than {@code sample-size} only expand a
+ * sample; the mutual counts of the best candidates are then made exact by
+ * intersecting the user's following list with each candidate's followers.
+ * Both phases stop at the latency budget and return what they have. The
+ * follow lists they need are read up front in one batch, so pool workers
+ * never wait on the database.
+ * <p>
+ * Results are kept in an LRU cache. Every follow change bumps a per-user
+ * stamp before it drops entries; a computation only stores its result if
+ * the user's stamp has not moved since it started.
+ */
+@Service
+public class SuggestionService {
+
+    public static final int MAX_SUGGESTIONS = 100;
+
+    private static final int COUNT_THRESHOLD = 32;
+    private static final int MUTUAL_THRESHOLD = 64;
+    private static final int GALLOP_RATIO = 16;
+    private static final int CHANGE_STAMPS = 1024;
+
+    private final FollowingService followingService;
+    private final ForkJoinPool pool;
+    // Least recently used first, guarded by this
+    private final LinkedHashMap<Integer, SuggestionResult> cache = new LinkedHashMap<>(256, 0.75f, true);
+    // Follow changes, striped by user id; a collision only costs an extra computation
+    private final AtomicIntegerArray changeStamps = new AtomicIntegerArray(CHANGE_STAMPS);
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong computations = new AtomicLong();
+    private final AtomicLong sampledComputations = new AtomicLong();
+    private final AtomicLong partialComputations = new AtomicLong();
+    private final AtomicLong computeNanos = new AtomicLong();
+
+    @Value("${suggestions.latency-budget-ms:200}")
+    private long latencyBudgetMs;
+
+    @Value("${suggestions.sample-size:1000}")
+    private int sampleSize;
+
+    @Value("${suggestions.max-candidates:2000}")
+    private int maxCandidates;
+
+    @Value("${suggestions.cache-ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    @Value("${suggestions.cache-max-users:100000}")
+    private int cacheMaxUsers;
+
+    public SuggestionService(FollowingService followingService,
+                             @Value("${suggestions.parallelism:0}") int parallelism) {
+        this.followingService = followingService;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // 🔹 Cached when fresh, otherwise computed within the latency budget
+    public SuggestionResult getSuggestions(int userId, int limit) {
+        if (userId < 0) throw new IllegalArgumentException("Invalid userId");
+        if (limit <= 0 || limit > MAX_SUGGESTIONS)
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_SUGGESTIONS);
+        requests.incrementAndGet();
+
+        SuggestionResult result;
+        synchronized (this) {
+            result = cache.get(userId);
+        }
+        if (result != null && System.currentTimeMillis() - result.computedAt() < cacheTtlSeconds * 1000) {
+            cacheHits.incrementAndGet();
+        } else {
+            int stamp = changeStamps.get(stampOf(userId));
+            result = compute(userId);
+            store(userId, result, stamp);
+        }
+
+        List<Suggestion> suggestions = result.suggestions();
+        return suggestions.size() <= limit ? result : new SuggestionResult(suggestions.subList(0, limit),
+                result.sampled(), result.partial(), result.computeMillis(), result.computedAt());
+    }
+
+    // 🔹 A follow change alters the friends-of-friends of the follower and of everyone following them
+    @EventListener
+    public void onFollowChanged(FollowChangedEvent event) {
+        int followerId = event.followerId();
+        int[] followers = followingService.getFollowerIds(followerId);
+
+        // Bumped first, so a computation that read the old graph does not store its result
+        changeStamps.incrementAndGet(stampOf(followerId));
+        if (followers.length >= CHANGE_STAMPS) {
+            for (int i = 0; i < CHANGE_STAMPS; i++) changeStamps.incrementAndGet(i);
+        } else {
+            for (int follower : followers) changeStamps.incrementAndGet(stampOf(follower));
+        }
+
+        synchronized (this) {
+            cache.remove(followerId);
+            if (followers.length <= cache.size()) {
+                for (int follower : followers) cache.remove(follower);
+            } else {
+                cache.keySet().removeIf(userId -> Arrays.binarySearch(followers, userId) >= 0);
+            }
+        }
+    }
+
+    public void invalidate(int userId) {
+        changeStamps.incrementAndGet(stampOf(userId));
+        synchronized (this) {
+            cache.remove(userId);
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        long computed = computations.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("requests", requests.get());
+        metrics.put("cacheHits", cacheHits.get());
+        synchronized (this) {
+            metrics.put("cachedUsers", cache.size());
+        }
+        metrics.put("computations", computed);
+        metrics.put("sampledComputations", sampledComputations.get());
+        metrics.put("partialComputations", partialComputations.get());
+        metrics.put("avgComputeMillis", computed == 0 ? 0.0 : computeNanos.get() / 1_000_000.0 / computed);
+        metrics.put("latencyBudgetMs", latencyBudgetMs);
+        metrics.put("sampleSize", sampleSize);
+        metrics.put("parallelism", pool.getParallelism());
+        return metrics;
+    }
+
+    private SuggestionResult compute(int userId) {
+        long start = System.nanoTime();
+        long deadline = start + latencyBudgetMs * 1_000_000;
+        AtomicBoolean overBudget = new AtomicBoolean();
+
+        int[] following = followingService.getFollowingIds(userId);
+        int[] expanded = following.length > sampleSize ? sample(following, sampleSize, userId) : following;
+        boolean sampled = expanded != following;
+
+        // 1️⃣ Count how many (expanded) followees follow each candidate
+        IntCounter counts = following.length == 0
+                ? new IntCounter()
+                : pool.invoke(new CountTask(userId, following, followingService.getFollowingIds(expanded),
+                        0, expanded.length, deadline, overBudget));
+
+        // 2️⃣ Keep the best candidates by that count
+        long[] ranked = counts.toRanked();
+        int kept = Math.min(ranked.length, sampled ? maxCandidates : MAX_SUGGESTIONS);
+        int[] candidates = new int[kept];
+        int[] mutual = new int[kept];
+        for (int i = 0; i < kept; i++) {
+            candidates[i] = rankedId(ranked[i]);
+            mutual[i] = rankedCount(ranked[i]);
+        }
+
+        // 3️⃣ A sample only gives estimates, intersect to get the exact mutual counts
+        if (sampled && kept > 0) {
+            double scale = (double) following.length / expanded.length;
+            for (int i = 0; i < kept; i++) mutual[i] = (int) Math.round(mutual[i] * scale);
+            int[][] candidateFollowers = followingService.getFollowerIds(candidates);
+            pool.invoke(new MutualTask(following, candidateFollowers, mutual, 0, kept, deadline, overBudget));
+        }
+
+        List<Suggestion> suggestions = rank(candidates, mutual);
+        long nanos = System.nanoTime() - start;
+        computations.incrementAndGet();
+        computeNanos.addAndGet(nanos);
+        if (sampled) sampledComputations.incrementAndGet();
+        if (overBudget.get()) partialComputations.incrementAndGet();
+        return new SuggestionResult(suggestions, sampled, overBudget.get(), nanos / 1_000_000,
+                System.currentTimeMillis());
+    }
+
+    private static List<Suggestion> rank(int[] candidates, int[] mutual) {
+        long[] ranked = new long[candidates.length];
+        for (int i = 0; i < candidates.length; i++) ranked[i] = rankKey(candidates[i], mutual[i]);
+        Arrays.sort(ranked);
+
+        List<Suggestion> suggestions = new ArrayList<>(Math.min(MAX_SUGGESTIONS, ranked.length));
+        for (int i = ranked.length - 1; i >= 0 && suggestions.size() < MAX_SUGGESTIONS; i--) {
+            suggestions.add(new Suggestion(rankedId(ranked[i]), rankedCount(ranked[i])));
+        }
+        return suggestions;
+    }
+
+    // Sorts by mutual count, then by lower id first
+    private static long rankKey(int userId, int count) {
+        return ((long) count << 32) | (Integer.MAX_VALUE - userId);
+    }
+
+    private static int rankedId(long key) {
+        return Integer.MAX_VALUE - (int) key;
+    }
+
+    private static int rankedCount(long key) {
+        return (int) (key >>> 32);
+    }
+
+    // Same user, same sample, so cached and recomputed results stay comparable
+    private static int[] sample(int[] ids, int size, int seed) {
+        int[] copy = ids.clone();
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < size; i++) {
+            int j = i + random.nextInt(copy.length - i);
+            int tmp = copy[i];
+            copy[i] = copy[j];
+            copy[j] = tmp;
+        }
+        int[] sample = Arrays.copyOf(copy, size);
+        Arrays.sort(sample);
+        return sample;
+    }
+
+    static int intersectionSize(int[] a, int[] b) {
+        if (a.length > b.length) {
+            int[] tmp = a;
+            a = b;
+            b = tmp;
+        }
+        if (a.length == 0) return 0;
+
+        int count = 0;
+        if (b.length / a.length >= GALLOP_RATIO) {
+            // Very different sizes: binary search the small list into the large one
+            int from = 0;
+            for (int value : a) {
+                int at = Arrays.binarySearch(b, from, b.length, value);
+                if (at >= 0) {
+                    count++;
+                    from = at + 1;
+                } else {
+                    from = -at - 1;
+                }
+                if (from >= b.length) break;
+            }
+        } else {
+            int i = 0, j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) i++;
+                else if (a[i] > b[j]) j++;
+                else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // 🔹 Cache a result unless the user's follow graph changed while it was computed
+    private synchronized void store(int userId, SuggestionResult result, int stamp) {
+        if (changeStamps.get(stampOf(userId)) != stamp) return;
+        cache.put(userId, result);
+        if (cache.size() > cacheMaxUsers) cache.pollFirstEntry();
+    }
+
+    private static int stampOf(int userId) {
+        return Math.floorMod(userId, CHANGE_STAMPS);
+    }
+
+    // Counts candidates over a range of followees' following lists, splitting until the range is small
+    private static final class CountTask extends RecursiveTask<IntCounter> {
+        private final int userId;
+        private final int[] following;
+        private final int[][] followeeLists;
+        private final int from, to;
+        private final long deadline;
+        private final AtomicBoolean overBudget;
+
+        CountTask(int userId, int[] following, int[][] followeeLists, int from, int to,
+                  long deadline, AtomicBoolean overBudget) {
+            this.userId = userId;
+            this.following = following;
+            this.followeeLists = followeeLists;
+            this.from = from;
+            this.to = to;
+            this.deadline = deadline;
+            this.overBudget = overBudget;
+        }
+
+        @Override
+        protected IntCounter compute() {
+            if (to - from > COUNT_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                CountTask left = new CountTask(userId, following, followeeLists, from, mid, deadline, overBudget);
+                left.fork();
+                IntCounter right = new CountTask(userId, following, followeeLists, mid, to, deadline, overBudget)
+                        .compute();
+                return right.mergeFrom(left.join());
+            }
+
+            IntCounter counter = new IntCounter();
+            for (int i = from; i < to; i++) {
+                if (System.nanoTime() > deadline) {
+                    overBudget.set(true);
+                    break;
+                }
+                for (int candidate : followeeLists[i]) {
+                    if (candidate != userId && Arrays.binarySearch(following, candidate) < 0) {
+                        counter.increment(candidate);
+                    }
+                }
+            }
+            return counter;
+        }
+    }
+
+    // Replaces estimated mutual counts with |following ∩ followers(candidate)|
+    private static final class MutualTask extends RecursiveAction {
+        private final int[] following;
+        private final int[][] candidateFollowers;
+        private final int[] mutual;
+        private final int from, to;
+        private final long deadline;
+        private final AtomicBoolean overBudget;
+
+        MutualTask(int[] following, int[][] candidateFollowers, int[] mutual, int from, int to,
+                   long deadline, AtomicBoolean overBudget) {
+            this.following = following;
+            this.candidateFollowers = candidateFollowers;
+            this.mutual = mutual;
+            this.from = from;
+            this.to = to;
+            this.deadline = deadline;
+            this.overBudget = overBudget;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > MUTUAL_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new MutualTask(following, candidateFollowers, mutual, from, mid, deadline, overBudget),
+                        new MutualTask(following, candidateFollowers, mutual, mid, to, deadline, overBudget));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                if (System.nanoTime() > deadline) {
+                    // Remaining candidates keep their scaled estimate
+                    overBudget.set(true);
+                    return;
+                }
+                mutual[i] = intersectionSize(following, candidateFollowers[i]);
+            }
+        }
+    }
+
+    // Open-addressing int -> count map, avoids boxing while counting
+    static final class IntCounter {
+        private int[] keys = new int[64];
+        private int[] counts = new int[64];
+        private int size;
+
+        void increment(int key) {
+            add(key, 1);
+        }
+
+        void add(int key, int count) {
+            if (2 * (size + 1) > keys.length) grow();
+            int mask = keys.length - 1;
+            int slot = mix(key) & mask;
+            while (counts[slot] != 0 && keys[slot] != key) slot = (slot + 1) & mask;
+            if (counts[slot] == 0) {
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot] += count;
+        }
+
+        IntCounter mergeFrom(IntCounter other) {
+            if (other.size > size) return other.mergeFrom(this);
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.counts[i] != 0) add(other.keys[i], other.counts[i]);
+            }
+            return this;
+        }
+
+        // Packed (count, id) keys, best first
+        long[] toRanked() {
+            long[] ranked = new long[size];
+            int n = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (counts[i] != 0) ranked[n++] = rankKey(keys[i], counts[i]);
+            }
+            Arrays.sort(ranked);
+            for (int i = 0, j = n - 1; i < j; i++, j--) {
+                long tmp = ranked[i];
+                ranked[i] = ranked[j];
+                ranked[j] = tmp;
+            }
+            return ranked;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys, oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldCounts[i] != 0) add(oldKeys[i], oldCounts[i]);
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Controllers;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services.PhotoPartitionService;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/photos/partitions")
+public class PhotoPartitionController {
+
+    private final PhotoPartitionService photoPartitionService;
+
+    public PhotoPartitionController(PhotoPartitionService photoPartitionService) {
+        this.photoPartitionService = photoPartitionService;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> getPartitions() {
+        try {
+            List<PhotoPartitionService.PartitionInfo> partitions = photoPartitionService.getPartitions();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("partitions", partitions);
+            response.put("count", partitions.size());
+            response.put("status", "success");
+
+            return ResponseEntity.ok(response);
+
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while listing photo partitions",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @PostMapping("/maintain")
+    public ResponseEntity<?> maintainPartitions() {
+        try {
+            Map<String, List<String>> result = photoPartitionService.maintainPartitions();
+
+            Map<String, Object> response = new HashMap<>(result);
+            response.put("message", "Photo partitions maintained");
+            response.put("status", "success");
+
+            return ResponseEntity.ok(response);
+
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while maintaining photo partitions",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Month as yyyy-MM, e.g. /api/photos/partitions/2024-01/detach
+    @PostMapping("/{month}/detach")
+    public ResponseEntity<?> detachPartition(@PathVariable String month) {
+        try {
+            String detached = photoPartitionService.detachPartition(month);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("partition", detached);
+            response.put("message", "Partition detached; it remains as a standalone table for archival");
+            response.put("status", "success");
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return buildErrorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (EmptyResultDataAccessException e) {
+            return buildErrorResponse(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while detaching photo partition",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private ResponseEntity<Map<String, String>> buildErrorResponse(String message, HttpStatus status) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        error.put("status", String.valueOf(status.value()));
+        error.put("timestamp", String.valueOf(System.currentTimeMillis()));
+        return ResponseEntity.status(status).body(error);
+    }
+}
@@ -1,12 +1,16 @@
 package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Controllers;
 
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Inputs.LanLonInput;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.BatchUploadItem;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services.DerivativePipeline;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services.UploadService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
@@ -15,7 +19,10 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.FileAlreadyExistsException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -23,13 +30,17 @@ import java.util.Map;
 public class UploadController {
 
     private final UploadService uploadService;
+    private final DerivativePipeline derivativePipeline;
 
     // Allowed image types
     private static final String[] ALLOWED_TYPES = {"image/jpeg", "image/jpg", "image/png", "image/gif", "image/webp"};
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB
+    // Room for boundaries, part headers and the coordinate fields around the image
+    private static final long MULTIPART_OVERHEAD = 64 * 1024;
 
-    public UploadController(UploadService uploadService) {
+    public UploadController(UploadService uploadService, DerivativePipeline derivativePipeline) {
         this.uploadService = uploadService;
+        this.derivativePipeline = derivativePipeline;
     }
 
     @PostMapping(value = "/image/{userId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -149,6 +160,146 @@ public class UploadController {
         }
     }
 
+    /**
+     * Several "images" parts sharing one set of coordinates, for carousel posts.
+     * Every image gets its own result; the response is 201 when all of them
+     * were saved and 207 when some were rejected.
+     */
+    @PostMapping(value = "/images/{userId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadImages(
+            @PathVariable int userId,
+            @RequestParam("images") List<MultipartFile> images,
+            @RequestParam("photoLan") int photoLan,
+            @RequestParam("photoLon") int photoLon,
+            @RequestParam("userLan") int userLan,
+            @RequestParam("userLon") int userLon) {
+
+        try {
+            // Validate user ID
+            if (userId < 0) {
+                return buildErrorResponse("User ID must be a positive number", HttpStatus.BAD_REQUEST);
+            }
+
+            // Validate coordinates
+            ResponseEntity<?> coordinateError = validateCoordinates(photoLan, photoLon, userLan, userLon);
+            if (coordinateError != null) {
+                return coordinateError;
+            }
+
+            LanLonInput lanLonInput = new LanLonInput(userLan, userLon, photoLan, photoLon);
+            List<BatchUploadItem> items = uploadService.uploadImages(userId, images, lanLonInput, MAX_FILE_SIZE);
+
+            List<Map<String, Object>> results = new ArrayList<>();
+            int uploaded = 0;
+            for (BatchUploadItem item : items) {
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("index", item.index());
+                result.put("filename", item.filename());
+                if (item.isSuccess()) {
+                    uploaded++;
+                    result.put("status", "success");
+                    result.put("photo", item.photo());
+                } else {
+                    HttpStatus status = batchItemStatus(item.failure());
+                    result.put("status", "error");
+                    result.put("code", status.value());
+                    result.put("error", item.failure().getMessage());
+                }
+                results.add(result);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", uploaded == items.size()
+                    ? "Images uploaded successfully"
+                    : uploaded + " of " + items.size() + " images uploaded");
+            response.put("requestedCount", items.size());
+            response.put("uploadedCount", uploaded);
+            response.put("results", results);
+            response.put("status", uploaded == items.size() ? "success" : "partial");
+
+            return ResponseEntity.status(uploaded == items.size() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS)
+                    .body(response);
+
+        } catch (IllegalArgumentException e) {
+            return buildErrorResponse("Invalid input: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return buildErrorResponse("Upload was interrupted", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while saving photo metadata",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error during upload: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Same form fields as /image/{userId}, but the body is parsed as it streams in
+     * and the image is written directly to disk (multipart resolution is lazy, so
+     * the servlet layer never buffers it).
+     */
+    @PostMapping(value = "/image/{userId}/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> uploadImageStream(@PathVariable int userId, HttpServletRequest request) {
+
+        try {
+            // Validate user ID
+            if (userId < 0) {
+                return buildErrorResponse("User ID must be a positive number", HttpStatus.BAD_REQUEST);
+            }
+
+            // Reject oversized bodies before reading them when the client announces the length
+            if (request.getContentLengthLong() > MAX_FILE_SIZE + MULTIPART_OVERHEAD) {
+                return buildErrorResponse("File size exceeds maximum allowed size of 10MB",
+                        HttpStatus.PAYLOAD_TOO_LARGE);
+            }
+
+            Photo uploadedPhoto = uploadService.uploadImageStream(userId, request.getContentType(),
+                    request.getInputStream(), MAX_FILE_SIZE);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Image uploaded successfully");
+            response.put("photo", uploadedPhoto);
+            response.put("status", "success");
+
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+
+        } catch (MaxUploadSizeExceededException e) {
+            return buildErrorResponse("File size exceeds maximum allowed size of 10MB",
+                    HttpStatus.PAYLOAD_TOO_LARGE);
+        } catch (HttpMediaTypeNotSupportedException e) {
+            return buildErrorResponse(e.getMessage(), HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+        } catch (IllegalArgumentException e) {
+            return buildErrorResponse("Invalid input: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (AccessDeniedException e) {
+            return buildErrorResponse("Access denied: Cannot write to upload directory",
+                    HttpStatus.FORBIDDEN);
+        } catch (IOException e) {
+            return buildErrorResponse("Error saving image file: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while saving photo metadata",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error during upload: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Queue depth, per-stage latency and failures of the thumbnail/feed-size pipeline
+    @GetMapping("/derivatives/metrics")
+    public ResponseEntity<?> getDerivativeMetrics() {
+        try {
+            Map<String, Object> response = new HashMap<>(derivativePipeline.getMetrics());
+            response.put("status", "success");
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return buildErrorResponse("Error fetching derivative metrics: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     /**
      * Validates the uploaded image file
      */
@@ -185,6 +336,17 @@ public class UploadController {
         return null; // Validation passed
     }
 
+    /**
+     * Status of a rejected image in a batch, matching what the single upload returns
+     */
+    private HttpStatus batchItemStatus(Exception failure) {
+        if (failure instanceof MaxUploadSizeExceededException) return HttpStatus.PAYLOAD_TOO_LARGE;
+        if (failure instanceof HttpMediaTypeNotSupportedException) return HttpStatus.UNSUPPORTED_MEDIA_TYPE;
+        if (failure instanceof IllegalArgumentException) return HttpStatus.BAD_REQUEST;
+        if (failure instanceof AccessDeniedException) return HttpStatus.FORBIDDEN;
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
     /**
      * Validates coordinate values
      */
@@ -0,0 +1,227 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Controllers;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Inputs.LanLonInput;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.UploadSession;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services.UploadSessionService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resumable uploads for flaky connections:
+ * <ol>
+ *   <li>POST /api/upload/sessions opens a session for a file of sizeBytes</li>
+ *   <li>PUT /api/upload/sessions/{sessionId}?offset=N sends chunkSize bytes starting at N</li>
+ *   <li>GET /api/upload/sessions/{sessionId} tells where to resume after a dropped connection</li>
+ *   <li>POST /api/upload/sessions/{sessionId}/complete creates the photo</li>
+ * </ol>
+ */
+@RestController
+@RequestMapping("/api/upload/sessions")
+public class UploadSessionController {
+
+    private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB, same as the other upload endpoints
+
+    private final UploadSessionService uploadSessionService;
+
+    public UploadSessionController(UploadSessionService uploadSessionService) {
+        this.uploadSessionService = uploadSessionService;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> openSession(
+            @RequestParam("userId") int userId,
+            @RequestParam("filename") String filename,
+            @RequestParam("contentType") String contentType,
+            @RequestParam("sizeBytes") long sizeBytes) {
+
+        try {
+            UploadSession session = uploadSessionService.open(userId, filename, contentType, sizeBytes, MAX_FILE_SIZE);
+
+            Map<String, Object> response = sessionResponse(session);
+            response.put("message", "Upload session opened");
+            response.put("status", "success");
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+
+        } catch (MaxUploadSizeExceededException e) {
+            return buildErrorResponse("File size exceeds maximum allowed size of 10MB", HttpStatus.PAYLOAD_TOO_LARGE);
+        } catch (HttpMediaTypeNotSupportedException e) {
+            return buildErrorResponse(e.getMessage(), HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+        } catch (IllegalArgumentException e) {
+            return buildErrorResponse("Invalid input: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while opening the upload session",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<?> getSession(@PathVariable String sessionId) {
+        try {
+            Map<String, Object> response = sessionResponse(uploadSessionService.get(sessionId));
+            response.put("status", "success");
+            return ResponseEntity.ok(response);
+
+        } catch (EmptyResultDataAccessException e) {
+            return buildErrorResponse(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Raw chunk bytes as the body; the Content-Length must be given
+    @PutMapping("/{sessionId}")
+    public ResponseEntity<?> uploadChunk(@PathVariable String sessionId,
+                                         @RequestParam("offset") long offset,
+                                         HttpServletRequest request) {
+        try {
+            long length = request.getContentLengthLong();
+            if (length < 0) {
+                return buildErrorResponse("Content-Length is required", HttpStatus.LENGTH_REQUIRED);
+            }
+
+            long committedOffset = uploadSessionService.writeChunk(sessionId, offset, length, request.getInputStream());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("sessionId", sessionId);
+            response.put("committedOffset", committedOffset);
+            response.put("status", "success");
+            return ResponseEntity.ok(response);
+
+        } catch (EmptyResultDataAccessException e) {
+            return buildErrorResponse(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (IllegalArgumentException e) {
+            return buildErrorResponse("Invalid input: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (IllegalStateException e) {
+            return conflictResponse(sessionId, e.getMessage());
+        } catch (EOFException e) {
+            return buildErrorResponse("Chunk body ended early, resend it: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (IOException e) {
+            return buildErrorResponse("Error writing chunk: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while saving upload progress",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @PostMapping("/{sessionId}/complete")
+    public ResponseEntity<?> completeSession(
+            @PathVariable String sessionId,
+            @RequestParam("photoLan") int photoLan,
+            @RequestParam("photoLon") int photoLon,
+            @RequestParam("userLan") int userLan,
+            @RequestParam("userLon") int userLon) {
+
+        try {
+            if (photoLan < -90 || photoLan > 90 || userLan < -90 || userLan > 90) {
+                return buildErrorResponse("Latitude must be between -90 and 90", HttpStatus.BAD_REQUEST);
+            }
+            if (photoLon < -180 || photoLon > 180 || userLon < -180 || userLon > 180) {
+                return buildErrorResponse("Longitude must be between -180 and 180", HttpStatus.BAD_REQUEST);
+            }
+
+            Photo photo = uploadSessionService.complete(sessionId,
+                    new LanLonInput(userLan, userLon, photoLan, photoLon));
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Image uploaded successfully");
+            response.put("photo", photo);
+            response.put("status", "success");
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+
+        } catch (EmptyResultDataAccessException e) {
+            return buildErrorResponse(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (IllegalStateException e) {
+            return conflictResponse(sessionId, e.getMessage());
+        } catch (IOException e) {
+            return buildErrorResponse("Error saving image file: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while saving photo metadata",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error during upload: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<?> abortSession(@PathVariable String sessionId) {
+        try {
+            uploadSessionService.abort(sessionId);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Upload session aborted");
+            response.put("sessionId", sessionId);
+            response.put("status", "success");
+            return ResponseEntity.ok(response);
+
+        } catch (EmptyResultDataAccessException e) {
+            return buildErrorResponse(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Sessions, chunks and bytes sent again for chunks that were already received
+    @GetMapping("/metrics")
+    public ResponseEntity<?> getMetrics() {
+        try {
+            Map<String, Object> response = new HashMap<>(uploadSessionService.getMetrics());
+            response.put("status", "success");
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return buildErrorResponse("Error fetching upload session metrics: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private Map<String, Object> sessionResponse(UploadSession session) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("sessionId", session.getSessionId());
+        response.put("userId", session.getUserId());
+        response.put("filename", session.getFilename());
+        response.put("sizeBytes", session.getSizeBytes());
+        response.put("committedOffset", session.getCommittedOffset());
+        response.put("chunkSize", uploadSessionService.getChunkSize());
+        response.put("expiresAt", uploadSessionService.expiresAt(session));
+        return response;
+    }
+
+    // 409 with the offset the client should resume from
+    private ResponseEntity<?> conflictResponse(String sessionId, String message) {
+        Map<String, Object> error = new HashMap<>();
+        error.put("error", message);
+        error.put("status", String.valueOf(HttpStatus.CONFLICT.value()));
+        error.put("timestamp", String.valueOf(System.currentTimeMillis()));
+        try {
+            error.put("committedOffset", uploadSessionService.get(sessionId).getCommittedOffset());
+        } catch (EmptyResultDataAccessException e) {
+            return buildErrorResponse(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+
+    private ResponseEntity<Map<String, String>> buildErrorResponse(String message, HttpStatus status) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        error.put("status", String.valueOf(status.value()));
+        error.put("timestamp", String.valueOf(System.currentTimeMillis()));
+        return ResponseEntity.status(status).body(error);
+    }
+}
@@ -0,0 +1,12 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models;
+
+/**
+ * Outcome of one image of a batch upload: the saved photo, or why the image
+ * was rejected. {@code index} is the image's position in the request.
+ */
+public record BatchUploadItem(int index, String filename, Photo photo, Exception failure) {
+
+    public boolean isSuccess() {
+        return failure == null;
+    }
+}
@@ -0,0 +1,48 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models;
+
+import java.util.Locale;
+
+/**
+ * Encodings a photo can be rendered in on request.
+ */
+public enum ImageFormat {
+
+    JPEG("image/jpeg", "jpg"),
+    PNG("image/png", "png"),
+    WEBP("image/webp", "webp");
+
+    private final String mimeType;
+    private final String extension;
+
+    ImageFormat(String mimeType, String extension) {
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    // Name of the ImageIO writer
+    public String getFormatName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public boolean hasAlpha() {
+        return this != JPEG;
+    }
+
+    // 🔹 jpeg, jpg, png or webp, in any case
+    public static ImageFormat fromName(String name) {
+        String lower = name.trim().toLowerCase(Locale.ROOT);
+        if (lower.equals("jpg")) return JPEG;
+        for (ImageFormat format : values()) {
+            if (format.getFormatName().equals(lower)) return format;
+        }
+        throw new IllegalArgumentException("Unknown image format " + name + ", expected jpeg, png or webp");
+    }
+}
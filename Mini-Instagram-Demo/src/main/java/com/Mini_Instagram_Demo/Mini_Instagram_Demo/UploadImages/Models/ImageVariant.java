@@ -0,0 +1,45 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models;
+
+/**
+ * Sizes a photo is served in. Derived variants are JPEGs scaled to
+ * {@code width} and are only produced for originals wider than that.
+ */
+public enum ImageVariant {
+
+    THUMBNAIL(150),
+    FEED(1080),
+    ORIGINAL(0);
+
+    private final int width;
+
+    ImageVariant(int width) {
+        this.width = width;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public boolean isDerived() {
+        return this != ORIGINAL;
+    }
+
+    // 🔹 Smallest variant at least as wide as the requested display width
+    public static ImageVariant forWidth(int width) {
+        if (width <= THUMBNAIL.width) return THUMBNAIL;
+        if (width <= FEED.width) return FEED;
+        return ORIGINAL;
+    }
+
+    // 🔹 The derived variant stored at exactly this width, or null
+    public static ImageVariant storedAt(int width) {
+        if (width == THUMBNAIL.width) return THUMBNAIL;
+        if (width == FEED.width) return FEED;
+        return null;
+    }
+
+    // 🔹 The next larger variant to fall back on when this one is missing
+    public ImageVariant larger() {
+        return this == THUMBNAIL ? FEED : ORIGINAL;
+    }
+}
@@ -1,6 +1,8 @@
 package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -21,6 +23,17 @@ public class Photo {
     private int photoLatitude;
     private int photoLongitude;
     private Date CreationDate;
+    // SHA-256 of the file, see PhotoBlob; null for photos stored before content addressing
+    private String contentHash;
+    // Progress of the thumbnail and feed-size variants; null when none are made
+    @Enumerated(EnumType.STRING)
+    private DerivativeState derivativeState;
+
+    public enum DerivativeState {
+        PENDING,
+        READY,
+        FAILED
+    }
 
     public int getPhotoId() {
         return PhotoId;
@@ -85,4 +98,20 @@ public class Photo {
     public void setCreationDate(Date creationDate) {
         CreationDate = creationDate;
     }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public DerivativeState getDerivativeState() {
+        return derivativeState;
+    }
+
+    public void setDerivativeState(DerivativeState derivativeState) {
+        this.derivativeState = derivativeState;
+    }
 }
@@ -0,0 +1,71 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+import java.util.Date;
+
+/**
+ * One stored image file, shared by every photo with the same content.
+ * The file is stored under {@code storageKey}; {@code refCount} photos point at it.
+ */
+@Entity
+public class PhotoBlob {
+
+    @Id
+    private String sha256;
+
+    private String storageKey;
+    private long sizeBytes;
+    private String contentType;
+    private int refCount;
+    private Date creationDate;
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public String getStorageKey() {
+        return storageKey;
+    }
+
+    public void setStorageKey(String storageKey) {
+        this.storageKey = storageKey;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+
+    public Date getCreationDate() {
+        return creationDate;
+    }
+
+    public void setCreationDate(Date creationDate) {
+        this.creationDate = creationDate;
+    }
+}
@@ -0,0 +1,19 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models;
+
+import java.util.List;
+
+/**
+ * Published after existing photo rows are updated or removed, for caches of
+ * photo data. {@code photoIds} is null when a bulk change may have touched
+ * any photo, such as detaching a partition.
+ */
+public record PhotoChangedEvent(List<Integer> photoIds) {
+
+    public static PhotoChangedEvent of(int photoId) {
+        return new PhotoChangedEvent(List.of(photoId));
+    }
+
+    public static PhotoChangedEvent all() {
+        return new PhotoChangedEvent(null);
+    }
+}
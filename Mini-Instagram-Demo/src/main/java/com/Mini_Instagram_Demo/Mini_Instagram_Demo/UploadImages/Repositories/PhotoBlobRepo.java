@@ -0,0 +1,38 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.PhotoBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PhotoBlobRepo extends JpaRepository<PhotoBlob, String> {
+
+    // Creates the blob with one reference or adds one; returns the new count.
+    // A count of 1 means the caller must put the file in place
+    @Query(value = """
+            insert into photo_blob (sha256, storage_key, size_bytes, content_type, ref_count, creation_date)
+            values (:sha256, :storageKey, :sizeBytes, :contentType, 1, localtimestamp)
+            on conflict (sha256) do update
+            set ref_count = photo_blob.ref_count + 1
+            returning ref_count
+            """, nativeQuery = true)
+    int acquire(@Param("sha256") String sha256,
+                @Param("storageKey") String storageKey,
+                @Param("sizeBytes") long sizeBytes,
+                @Param("contentType") String contentType);
+
+    @Modifying
+    @Query(value = "update photo_blob set ref_count = greatest(ref_count - 1, 0) where sha256 = :sha256",
+            nativeQuery = true)
+    int release(@Param("sha256") String sha256);
+
+    // Row locks keep a concurrent acquire waiting until the file is gone
+    @Query(value = "select * from photo_blob where ref_count = 0 limit :limit for update skip locked",
+            nativeQuery = true)
+    List<PhotoBlob> lockUnreferenced(@Param("limit") int limit);
+}
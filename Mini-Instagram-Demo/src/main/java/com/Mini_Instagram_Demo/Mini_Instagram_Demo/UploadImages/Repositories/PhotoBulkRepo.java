@@ -0,0 +1,63 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Set-based inserts for batch uploads: a whole batch of photos is written by
+ * one statement whatever its size, and joins the caller's transaction.
+ */
+@Repository
+public class PhotoBulkRepo {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PhotoBulkRepo(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Inserts every photo and sets its generated id. Ids are drawn from the
+    // sequence first, so each row is matched to its photo without relying on
+    // the order of RETURNING
+    public void insertPhotos(List<Photo> photos) {
+        if (photos.isEmpty()) return;
+        List<Integer> ids = jdbcTemplate.queryForList(
+                "select nextval('photo_id_seq')::int from generate_series(1, ?)", Integer.class, photos.size());
+
+        int n = photos.size();
+        Integer[] photoIds = ids.toArray(new Integer[0]);
+        Integer[] userIds = new Integer[n];
+        String[] paths = new String[n];
+        String[] hashes = new String[n];
+        String[] states = new String[n];
+        Timestamp[] creationDates = new Timestamp[n];
+        Integer[] userLatitudes = new Integer[n], userLongitudes = new Integer[n];
+        Integer[] photoLatitudes = new Integer[n], photoLongitudes = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            Photo photo = photos.get(i);
+            userIds[i] = photo.getUserId();
+            paths[i] = photo.getPhotoPath();
+            hashes[i] = photo.getContentHash();
+            states[i] = photo.getDerivativeState() == null ? null : photo.getDerivativeState().name();
+            creationDates[i] = new Timestamp(photo.getCreationDate().getTime());
+            userLatitudes[i] = (int) photo.getUserLatitude();
+            userLongitudes[i] = photo.getUserLongitude();
+            photoLatitudes[i] = photo.getPhotoLatitude();
+            photoLongitudes[i] = photo.getPhotoLongitude();
+        }
+
+        jdbcTemplate.update("""
+                insert into photo (photo_id, user_id, photo_path, content_hash, derivative_state, creation_date,
+                                   user_latitude, user_longitude, photo_latitude, photo_longitude)
+                select * from unnest(?::int[], ?::int[], ?::varchar[], ?::varchar[], ?::varchar[], ?::timestamp[],
+                                     ?::int[], ?::int[], ?::int[], ?::int[])
+                """, photoIds, userIds, paths, hashes, states, creationDates,
+                userLatitudes, userLongitudes, photoLatitudes, photoLongitudes);
+
+        for (int i = 0; i < n; i++) photos.get(i).setPhotoId(photoIds[i]);
+    }
+}
@@ -2,11 +2,15 @@ package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories;
 
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
 import org.springframework.data.domain.Limit;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 @Repository
@@ -15,5 +19,63 @@ public interface PhotoRepo extends JpaRepository<Photo , Integer> {
 
     List<Photo> findAllByUserIdIn(List<Integer> userIds);
 
-    List<Photo> findTopByUserIdInOrderByCreationDateDesc(List<Integer> userIds, Pageable limit);
+    // Feed queries below are bounded by "since" so that only recent monthly partitions are scanned
+
+    @Query("select count(p) from Photo p where p.userId in :userIds and p.CreationDate >= :since")
+    long countByUserIdInSince(@Param("userIds") List<Integer> userIds, @Param("since") Date since);
+
+    @Query("select p.PhotoId from Photo p where p.userId in :userIds and p.CreationDate >= :since")
+    List<Integer> findPhotoIdsByUserIdInSince(@Param("userIds") List<Integer> userIds,
+                                              @Param("since") Date since,
+                                              Limit limit);
+
+    // Newest (photoId, creationDate) keys; the rows themselves are loaded by id once the page is known
+    @Query("select p.PhotoId, p.CreationDate from Photo p where p.userId in :userIds and p.CreationDate >= :since"
+            + " order by p.CreationDate desc, p.PhotoId desc")
+    List<Object[]> findFeedKeys(@Param("userIds") List<Integer> userIds,
+                                @Param("since") Date since,
+                                Limit limit);
+
+    // Keyset page: keys strictly older than (before, photoId), newest first
+    @Query("select p.PhotoId, p.CreationDate from Photo p where p.userId in :userIds and p.CreationDate >= :since"
+            + " and (p.CreationDate < :before or (p.CreationDate = :before and p.PhotoId < :photoId))"
+            + " order by p.CreationDate desc, p.PhotoId desc")
+    List<Object[]> findFeedKeysBefore(@Param("userIds") List<Integer> userIds,
+                                      @Param("since") Date since,
+                                      @Param("before") Date before,
+                                      @Param("photoId") int photoId,
+                                      Limit limit);
+
+    // Newest perUser (userId, photoId, creationDate) keys of each user, grouped by user
+    @Query(value = "select user_id, photo_id, creation_date from ("
+            + " select p.user_id, p.photo_id, p.creation_date,"
+            + " row_number() over (partition by p.user_id order by p.creation_date desc, p.photo_id desc) as rn"
+            + " from photo p where p.user_id in (:userIds) and p.creation_date >= :since) ranked"
+            + " where rn <= :perUser order by user_id, creation_date desc, photo_id desc",
+            nativeQuery = true)
+    List<Object[]> findRecentPhotoKeysByUserIdIn(@Param("userIds") List<Integer> userIds,
+                                                 @Param("since") Date since,
+                                                 @Param("perUser") int perUser);
+
+    @Modifying
+    @Transactional
+    @Query("update Photo p set p.derivativeState = :state where p.PhotoId = :photoId")
+    int updateDerivativeState(@Param("photoId") int photoId, @Param("state") Photo.DerivativeState state);
+
+    // Served by the partial index on pending photos
+    @Query("select p from Photo p where p.derivativeState = :state order by p.PhotoId")
+    List<Photo> findByDerivativeState(@Param("state") Photo.DerivativeState state, Limit limit);
+
+    // Photos uploaded before content addressing, in id order
+    @Query("select p from Photo p where p.contentHash is null and p.PhotoId > :afterId order by p.PhotoId")
+    List<Photo> findWithoutContentHashAfter(@Param("afterId") int afterId, Limit limit);
+
+    @Modifying
+    @Transactional
+    @Query("update Photo p set p.contentHash = :sha256, p.photoPath = :storageKey, p.derivativeState = :state"
+            + " where p.PhotoId = :photoId")
+    int attachBlob(@Param("photoId") int photoId,
+                   @Param("sha256") String sha256,
+                   @Param("storageKey") String storageKey,
+                   @Param("state") Photo.DerivativeState state);
 }
@@ -0,0 +1,30 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.UploadSession;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepo extends JpaRepository<UploadSession, String> {
+
+    // Moves the offset forward only from the expected value; 0 means another request got there first
+    @Modifying
+    @Transactional
+    @Query("update UploadSession s set s.committedOffset = :offset, s.updatedDate = :now"
+            + " where s.sessionId = :sessionId and s.committedOffset = :expected")
+    int advance(@Param("sessionId") String sessionId,
+                @Param("expected") long expected,
+                @Param("offset") long offset,
+                @Param("now") Date now);
+
+    @Query("select s from UploadSession s where s.updatedDate < :cutoff order by s.updatedDate")
+    List<UploadSession> findIdleSince(@Param("cutoff") Date cutoff, Limit limit);
+}
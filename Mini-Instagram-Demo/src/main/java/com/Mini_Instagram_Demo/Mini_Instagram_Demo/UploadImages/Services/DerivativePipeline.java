@@ -0,0 +1,251 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.ImageFormat;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.ImageVariant;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.PhotoChangedEvent;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoRepo;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Makes the thumbnail and feed-size variants of uploaded photos in the
+ * background, so previews and feeds do not ship full-size originals.
+ * <p>
+ * Uploads put a job on a bounded queue drained by a fixed set of workers.
+ * When the queue is full the upload waits up to {@code enqueue-timeout-ms}
+ * and then gives up; the photo stays PENDING and the sweeper queues it again
+ * once there is room, which also picks up photos left over from a restart.
+ * <p>
+ * Variants are keyed by content hash, so duplicate uploads reuse them.
+ */
+@Service
+public class DerivativePipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(DerivativePipeline.class);
+
+    private static final List<ImageVariant> VARIANTS = List.of(ImageVariant.FEED, ImageVariant.THUMBNAIL);
+
+    private record Job(int photoId, String sha256, long enqueuedNanos) {
+    }
+
+    private final PhotoRepo photoRepo;
+    private final PhotoBlobStore photoBlobStore;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BlockingQueue<Job> queue;
+    private final Set<Integer> queued = ConcurrentHashMap.newKeySet();
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+
+    @Value("${upload.derivatives.enabled:true}")
+    private boolean enabled;
+
+    @Value("${upload.derivatives.enqueue-timeout-ms:100}")
+    private long enqueueTimeoutMs;
+
+    @Value("${upload.derivatives.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    @Value("${upload.derivatives.max-pixels:50000000}")
+    private long maxPixels;
+
+    @Value("${upload.derivatives.sweep-batch-size:500}")
+    private int sweepBatchSize;
+
+    public DerivativePipeline(PhotoRepo photoRepo, PhotoBlobStore photoBlobStore,
+                              ApplicationEventPublisher eventPublisher,
+                              @Value("${upload.derivatives.workers:2}") int workerCount,
+                              @Value("${upload.derivatives.queue-capacity:1000}") int queueCapacity) {
+        this.photoRepo = photoRepo;
+        this.photoBlobStore = photoBlobStore;
+        this.eventPublisher = eventPublisher;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        for (String stage : List.of("queueWait", "decode", "feed", "thumbnail", "total")) stages.put(stage, new Stage());
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofPlatform().name("photo-derivatives-" + i).daemon().start(this::work));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.forEach(Thread::interrupt);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 🔹 Queue a freshly uploaded photo; false when the queue stayed full, the sweeper retries it
+    public boolean submit(Photo photo) {
+        if (!enabled || photo.getContentHash() == null) return false;
+        return enqueue(photo.getPhotoId(), photo.getContentHash(), enqueueTimeoutMs);
+    }
+
+    // Picks up pending photos the queue had no room for, or that were queued before a restart
+    @Scheduled(initialDelayString = "${upload.derivatives.sweep-interval-ms:60000}",
+            fixedDelayString = "${upload.derivatives.sweep-interval-ms:60000}")
+    public void sweepPending() {
+        if (!enabled) return;
+        int room = Math.min(sweepBatchSize, queue.remainingCapacity());
+        if (room == 0) return;
+
+        int requeued = 0;
+        for (Photo photo : photoRepo.findByDerivativeState(Photo.DerivativeState.PENDING, Limit.of(room))) {
+            if (photo.getContentHash() == null) {
+                photoRepo.updateDerivativeState(photo.getPhotoId(), null);
+                eventPublisher.publishEvent(PhotoChangedEvent.of(photo.getPhotoId()));
+            } else if (!queued.contains(photo.getPhotoId()) && enqueue(photo.getPhotoId(), photo.getContentHash(), 0)) {
+                requeued++;
+            }
+        }
+        if (requeued > 0) log.info("Queued {} pending photos for derivatives", requeued);
+    }
+
+    private boolean enqueue(int photoId, String sha256, long timeoutMs) {
+        if (!queued.add(photoId)) return true;
+        boolean accepted;
+        try {
+            accepted = queue.offer(new Job(photoId, sha256, System.nanoTime()), timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            accepted = false;
+        }
+        if (accepted) {
+            submitted.increment();
+        } else {
+            queued.remove(photoId);
+            rejected.increment();
+        }
+        return accepted;
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Job job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long start = System.nanoTime();
+            stages.get("queueWait").record(start - job.enqueuedNanos());
+            try {
+                generate(job.sha256());
+                photoRepo.updateDerivativeState(job.photoId(), Photo.DerivativeState.READY);
+                eventPublisher.publishEvent(PhotoChangedEvent.of(job.photoId()));
+                completed.increment();
+            } catch (Exception e) {
+                failed.increment();
+                log.warn("Could not make derivatives of photo {}: {}", job.photoId(), e.toString());
+                try {
+                    photoRepo.updateDerivativeState(job.photoId(), Photo.DerivativeState.FAILED);
+                    eventPublisher.publishEvent(PhotoChangedEvent.of(job.photoId()));
+                } catch (RuntimeException stateError) {
+                    log.warn("Could not mark photo {} as failed", job.photoId(), stateError);
+                }
+            } finally {
+                queued.remove(job.photoId());
+                stages.get("total").record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    // 🔹 Store every variant narrower than the original that is not stored yet
+    private void generate(String sha256) throws IOException {
+        Resource source = photoBlobStore.resolve(sha256);
+        List<ImageVariant> missing = new ArrayList<>();
+        int[] size = ImageCodec.readSize(source);
+        for (ImageVariant variant : VARIANTS) {
+            if (size[0] > variant.getWidth() && !photoBlobStore.hasDerivative(sha256, variant))
+                missing.add(variant);
+        }
+        if (missing.isEmpty()) return;
+        if ((long) size[0] * size[1] > maxPixels)
+            throw new IOException("Image is " + size[0] + "x" + size[1] + ", above the pixel limit");
+
+        long decodeStart = System.nanoTime();
+        BufferedImage image = ImageCodec.read(source);
+        stages.get("decode").record(System.nanoTime() - decodeStart);
+
+        // Largest first, so each smaller variant scales down from the previous one
+        for (ImageVariant variant : missing) {
+            long stageStart = System.nanoTime();
+            image = ImageCodec.scaleToWidth(image, variant.getWidth(), false);
+            Path encoded = photoBlobStore.newIncomingFile();
+            try {
+                ImageCodec.write(image, ImageFormat.JPEG, jpegQuality, encoded);
+                photoBlobStore.putDerivative(sha256, variant, encoded);
+            } finally {
+                Files.deleteIfExists(encoded);
+            }
+            stages.get(variant.name().toLowerCase()).record(System.nanoTime() - stageStart);
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", enabled);
+        metrics.put("workers", workers.size());
+        metrics.put("queueDepth", queue.size());
+        metrics.put("queueCapacity", queue.size() + queue.remainingCapacity());
+        metrics.put("submitted", submitted.sum());
+        metrics.put("completed", completed.sum());
+        metrics.put("failed", failed.sum());
+        metrics.put("rejected", rejected.sum());
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        stages.forEach((name, stage) -> latency.put(name, stage.snapshot()));
+        metrics.put("stages", latency);
+        return metrics;
+    }
+
+    // Count, mean and max latency of one pipeline stage
+    private static final class Stage {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long elapsedNanos) {
+            count.increment();
+            nanos.add(elapsedNanos);
+            maxNanos.accumulateAndGet(elapsedNanos, Math::max);
+        }
+
+        Map<String, Object> snapshot() {
+            long n = count.sum();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("count", n);
+            snapshot.put("avgMillis", n == 0 ? 0.0 : nanos.sum() / 1_000_000.0 / n);
+            snapshot.put("maxMillis", maxNanos.get() / 1_000_000.0);
+            return snapshot;
+        }
+    }
+}
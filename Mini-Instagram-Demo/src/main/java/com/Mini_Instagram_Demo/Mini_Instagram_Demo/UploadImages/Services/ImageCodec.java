@@ -0,0 +1,125 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.ImageFormat;
+import org.springframework.core.io.Resource;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Decoding, scaling and encoding shared by the derivative pipeline and
+ * on-the-fly resizing.
+ */
+public final class ImageCodec {
+
+    private ImageCodec() {
+    }
+
+    // 🔹 Dimensions from the header only, without decoding pixels
+    public static int[] readSize(Resource source) throws IOException {
+        try (InputStream stream = source.getInputStream();
+             ImageInputStream in = ImageIO.createImageInputStream(stream)) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext())
+                throw new IOException("No image reader for " + source.getFilename());
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    public static BufferedImage read(Resource source) throws IOException {
+        BufferedImage image;
+        try (InputStream in = source.getInputStream()) {
+            image = ImageIO.read(in);
+        }
+        if (image == null) throw new IOException("No image reader for " + source.getFilename());
+        return image;
+    }
+
+    /**
+     * Halves in steps before the last bilinear pass, which keeps large
+     * reductions smooth. Without {@code keepAlpha} transparent areas become
+     * white, as for JPEG.
+     */
+    public static BufferedImage scaleToWidth(BufferedImage image, int width, boolean keepAlpha) {
+        int targetHeight = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+        boolean alpha = keepAlpha && image.getColorModel().hasAlpha();
+        BufferedImage current = image;
+        int w = image.getWidth(), h = image.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(targetHeight, h / 2);
+            BufferedImage next = new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                if (!alpha) {
+                    g.setColor(Color.WHITE);
+                    g.fillRect(0, 0, w, h);
+                }
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (w != width || h != targetHeight);
+        return current;
+    }
+
+    // 🔹 Encode with the given quality (ignored by lossless PNG)
+    public static void write(BufferedImage image, ImageFormat format, float quality, Path target) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(format.getMimeType());
+        if (!writers.hasNext()) throw new IOException("No image writer for " + format.getMimeType());
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(target.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (format != ImageFormat.PNG && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                // WebP offers Lossy and Lossless; JPEG has a single type
+                if (param.getCompressionTypes() != null && param.getCompressionType() == null)
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                param.setCompressionQuality(quality);
+            }
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // 🔹 Whether this JVM can encode the format: WebP needs a plugin with a native encoder
+    public static boolean canWrite(ImageFormat format) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(format.getMimeType());
+        if (!writers.hasNext()) return false;
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(OutputStream.nullOutputStream())) {
+            writer.setOutput(out);
+            writer.write(new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+            return true;
+        } catch (IOException | RuntimeException | LinkageError e) {
+            return false;
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.PhotoBlob;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.PhotoChangedEvent;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Copies photos uploaded before content addressing, which still point at an
+ * absolute file path, into the configured PhotoStorage once at startup, so
+ * every download goes through the storage. The original files are left alone;
+ * photos whose file is missing are logged and skipped.
+ */
+@Service
+public class LegacyPhotoImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(LegacyPhotoImporter.class);
+
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            ".jpg", "image/jpeg", ".jpeg", "image/jpeg", ".png", "image/png",
+            ".gif", "image/gif", ".webp", "image/webp");
+    private static final int BATCH_SIZE = 500;
+
+    private final PhotoRepo photoRepo;
+    private final PhotoBlobStore photoBlobStore;
+    private final DerivativePipeline derivativePipeline;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${upload.import-legacy:true}")
+    private boolean enabled;
+
+    public LegacyPhotoImporter(PhotoRepo photoRepo, PhotoBlobStore photoBlobStore,
+                               DerivativePipeline derivativePipeline, ApplicationEventPublisher eventPublisher) {
+        this.photoRepo = photoRepo;
+        this.photoBlobStore = photoBlobStore;
+        this.derivativePipeline = derivativePipeline;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void importOnStartup() {
+        if (enabled) importLegacyPhotos();
+    }
+
+    /**
+     * @return number of photos moved into the storage
+     */
+    public int importLegacyPhotos() {
+        int imported = 0, skipped = 0, afterId = 0;
+        List<Photo> batch;
+        do {
+            batch = photoRepo.findWithoutContentHashAfter(afterId, Limit.of(BATCH_SIZE));
+            for (Photo photo : batch) {
+                afterId = photo.getPhotoId();
+                try {
+                    if (importPhoto(photo)) imported++;
+                    else skipped++;
+                } catch (IOException | RuntimeException e) {
+                    skipped++;
+                    log.warn("Could not import photo {} from {}: {}", photo.getPhotoId(), photo.getPhotoPath(), e.toString());
+                }
+            }
+        } while (batch.size() == BATCH_SIZE);
+
+        if (imported > 0 || skipped > 0)
+            log.info("Imported {} legacy photos into the photo storage, {} skipped", imported, skipped);
+        return imported;
+    }
+
+    private boolean importPhoto(Photo photo) throws IOException {
+        Path file;
+        try {
+            file = Path.of(photo.getPhotoPath());
+        } catch (InvalidPathException e) {
+            file = null;
+        }
+        if (file == null || !Files.isRegularFile(file)) {
+            log.warn("Photo {} points at a missing file {}", photo.getPhotoId(), photo.getPhotoPath());
+            return false;
+        }
+
+        String sha256;
+        try (InputStream in = Files.newInputStream(file)) {
+            sha256 = photoBlobStore.sha256(in);
+        }
+        long size = Files.size(file);
+        PhotoBlob blob = photoBlobStore.store(sha256, size, contentTypeOf(file),
+                PhotoBlobStore.copyFrom(new FileSystemResource(file), size));
+        Photo.DerivativeState state = derivativePipeline.isEnabled() ? Photo.DerivativeState.PENDING : null;
+        try {
+            photoRepo.attachBlob(photo.getPhotoId(), sha256, blob.getStorageKey(), state);
+        } catch (RuntimeException e) {
+            photoBlobStore.release(sha256);
+            throw e;
+        }
+        eventPublisher.publishEvent(PhotoChangedEvent.of(photo.getPhotoId()));
+        // 🔹 Pending photos are queued for derivatives by the pipeline's sweeper
+        return true;
+    }
+
+    private static String contentTypeOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? null : CONTENT_TYPES.get(name.substring(dot));
+    }
+}
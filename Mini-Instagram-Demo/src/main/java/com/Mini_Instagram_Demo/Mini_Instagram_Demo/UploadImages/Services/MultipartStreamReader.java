@@ -0,0 +1,251 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services;
+
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Forward-only reader over a multipart/form-data body. Part contents are
+ * handed out straight from one fixed read buffer, so a file part can be
+ * written to its destination without being buffered in memory or spooled
+ * to a temp file first.
+ * <p>
+ * Usage: {@link #nextPart()}, then either {@link #readString(int)} or
+ * {@link #transferTo(WritableByteChannel, long)}; unread parts are skipped.
+ */
+class MultipartStreamReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 8 * 1024;
+
+    private final InputStream in;
+    // CRLF "--" boundary: ends every part body
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int pos;
+    private int limit;
+
+    private boolean started;
+    private boolean inBody;
+    private boolean finished;
+
+    private String name;
+    private String filename;
+    private String contentType;
+
+    MultipartStreamReader(InputStream in, String boundary) {
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70)
+            throw new IllegalArgumentException("Missing or invalid multipart boundary");
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        this.buffer = new byte[Math.max(BUFFER_SIZE, 4 * delimiter.length)];
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getFilename() {
+        return filename;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    // 🔹 Move to the next part and read its headers; false once the closing boundary is reached
+    boolean nextPart() throws IOException {
+        if (finished) return false;
+        if (!started) {
+            skipPreamble();
+            started = true;
+        } else if (inBody) {
+            drainBody();
+        }
+        if (finished) return false;
+
+        readHeaders();
+        inBody = true;
+        return true;
+    }
+
+    // 🔹 Body of a small text field
+    String readString(int maxBytes) throws IOException {
+        byte[] value = new byte[maxBytes];
+        int[] length = {0};
+        readBody(chunk -> {
+            int n = chunk.remaining();
+            if (length[0] + n > maxBytes)
+                throw new IllegalArgumentException("Field " + name + " is longer than " + maxBytes + " bytes");
+            chunk.get(value, length[0], n);
+            length[0] += n;
+        });
+        return new String(value, 0, length[0], StandardCharsets.UTF_8);
+    }
+
+    // 🔹 Stream the part body into the channel, failing as soon as it passes maxBytes
+    long transferTo(WritableByteChannel channel, long maxBytes) throws IOException {
+        long[] written = {0};
+        readBody(chunk -> {
+            written[0] += chunk.remaining();
+            if (written[0] > maxBytes) throw new MaxUploadSizeExceededException(maxBytes);
+            while (chunk.hasRemaining()) channel.write(chunk);
+        });
+        return written[0];
+    }
+
+    @FunctionalInterface
+    private interface ChunkConsumer {
+        void accept(ByteBuffer chunk) throws IOException;
+    }
+
+    // Hands out the body in place; bytes that could start a delimiter are held back until more is read
+    private void readBody(ChunkConsumer consumer) throws IOException {
+        if (!inBody) throw new IllegalStateException("No part to read");
+        while (true) {
+            int at = indexOf(delimiter, pos, limit);
+            if (at >= 0) {
+                if (at > pos) consumer.accept(ByteBuffer.wrap(buffer, pos, at - pos));
+                pos = at + delimiter.length;
+                afterDelimiter();
+                return;
+            }
+            int safe = limit - delimiter.length + 1;
+            if (safe > pos) {
+                consumer.accept(ByteBuffer.wrap(buffer, pos, safe - pos));
+                pos = safe;
+            }
+            if (!fill()) throw new EOFException("Multipart body ended inside a part");
+        }
+    }
+
+    private void drainBody() throws IOException {
+        readBody(chunk -> { });
+    }
+
+    // After a delimiter comes CRLF (another part) or "--" (end of the body)
+    private void afterDelimiter() throws IOException {
+        inBody = false;
+        ensure(2);
+        if (buffer[pos] == '-' && buffer[pos + 1] == '-') {
+            finished = true;
+            return;
+        }
+        if (buffer[pos] != '\r' || buffer[pos + 1] != '\n')
+            throw new IllegalArgumentException("Malformed multipart boundary");
+        pos += 2;
+    }
+
+    // The first boundary has no leading CRLF; match it against "--boundary" instead
+    private void skipPreamble() throws IOException {
+        ensure(delimiter.length - 2);
+        if (startsWith(pos, delimiter, 2)) {
+            pos += delimiter.length - 2;
+        } else {
+            while (true) {
+                int at = indexOf(delimiter, pos, limit);
+                if (at >= 0) {
+                    pos = at + delimiter.length;
+                    break;
+                }
+                pos = Math.max(pos, limit - delimiter.length + 1);
+                if (!fill()) throw new IllegalArgumentException("Multipart boundary not found");
+            }
+        }
+        afterDelimiter();
+    }
+
+    private void readHeaders() throws IOException {
+        name = null;
+        filename = null;
+        contentType = null;
+        int read = 0;
+        while (true) {
+            String line = readLine();
+            read += line.length() + 2;
+            if (read > MAX_HEADER_BYTES) throw new IllegalArgumentException("Multipart headers too large");
+            if (line.isEmpty()) return;
+
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String header = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (header.equals("content-disposition")) {
+                name = parameter(value, "name");
+                filename = parameter(value, "filename");
+            } else if (header.equals("content-type")) {
+                contentType = value;
+            }
+        }
+    }
+
+    private String readLine() throws IOException {
+        while (true) {
+            for (int i = pos; i + 1 < limit; i++) {
+                if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+                    String line = new String(buffer, pos, i - pos, StandardCharsets.UTF_8);
+                    pos = i + 2;
+                    return line;
+                }
+            }
+            if (limit - pos >= MAX_HEADER_BYTES) throw new IllegalArgumentException("Multipart headers too large");
+            if (!fill()) throw new EOFException("Multipart body ended inside part headers");
+        }
+    }
+
+    // name="value" parameter of a Content-Disposition header
+    private static String parameter(String header, String parameter) {
+        for (String token : header.split(";")) {
+            String trimmed = token.trim();
+            int eq = trimmed.indexOf('=');
+            if (eq < 0 || !trimmed.substring(0, eq).trim().equalsIgnoreCase(parameter)) continue;
+            String value = trimmed.substring(eq + 1).trim();
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\""))
+                value = value.substring(1, value.length() - 1);
+            return value;
+        }
+        return null;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        while (limit - pos < bytes) {
+            if (!fill()) throw new EOFException("Multipart body ended early");
+        }
+    }
+
+    // Compact the unread bytes to the front and read more; false at end of stream
+    private boolean fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buffer.length) throw new IllegalStateException("Multipart read buffer is full");
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n < 0) return false;
+        limit += n;
+        return true;
+    }
+
+    private int indexOf(byte[] pattern, int from, int to) {
+        byte first = pattern[0];
+        for (int i = from; i <= to - pattern.length; i++) {
+            if (buffer[i] == first && startsWith(i, pattern, 0)) return i;
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int at, byte[] pattern, int patternFrom) {
+        if (limit - at < pattern.length - patternFrom) return false;
+        for (int j = patternFrom; j < pattern.length; j++) {
+            if (buffer[at + j - patternFrom] != pattern[j]) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,290 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.ImageVariant;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.PhotoBlob;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoBlobRepo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Storage.PhotoStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Content-addressed storage for photo files. Each distinct content is stored
+ * once in the {@link PhotoStorage} under {@code blobs/<sha256>.<ext>} and
+ * counted in photo_blob; uploads of bytes that are already stored only add a
+ * reference. Scaled variants of a blob are kept under {@code derivatives/}.
+ * <p>
+ * A blob whose count drops to zero keeps its file until the cleanup job
+ * deletes both under a row lock, so a concurrent upload of the same content
+ * either waits for the cleanup or revives the blob and writes the file again.
+ * <p>
+ * Files are written outside any transaction: a slow write must not hold a
+ * pooled connection or the blob's row lock. Keys derive from the hash, so
+ * writing the same bytes twice is harmless.
+ */
+@Service
+public class PhotoBlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PhotoBlobStore.class);
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final Map<String, String> EXTENSIONS = Map.of(
+            "image/jpeg", ".jpg", "image/jpg", ".jpg", "image/png", ".png",
+            "image/gif", ".gif", "image/webp", ".webp");
+
+    private final PhotoBlobRepo photoBlobRepo;
+    private final PhotoStorage photoStorage;
+    // Only around the reference count update, never around a file write
+    private final TransactionTemplate transaction;
+    // Streamed uploads and generated variants are spooled here before they go to the storage
+    private final Path incomingRoot;
+
+    @Value("${upload.blobs.cleanup-batch-size:1000}")
+    private int cleanupBatchSize;
+
+    @Value("${upload.blobs.incoming-max-age-minutes:60}")
+    private long incomingMaxAgeMinutes;
+
+    public PhotoBlobStore(PhotoBlobRepo photoBlobRepo, PhotoStorage photoStorage,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${upload.dir:uploads}") String uploadDir) {
+        this.photoBlobRepo = photoBlobRepo;
+        this.photoStorage = photoStorage;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.incomingRoot = Path.of(uploadDir).toAbsolutePath().normalize().resolve(".incoming");
+    }
+
+    // May be put more than once, when the cleanup job deleted the first copy
+    @FunctionalInterface
+    public interface BlobContent {
+        void putInto(PhotoStorage storage, String key, String contentType) throws IOException;
+    }
+
+    /**
+     * Adds a reference to the blob with this hash. Only when the content is new
+     * (or nobody references it, so the cleanup job may be deleting it) is
+     * {@code content} put into the storage; duplicates of a referenced blob cost
+     * one upsert and no write.
+     */
+    public PhotoBlob store(String sha256, long sizeBytes, String contentType, BlobContent content) throws IOException {
+        PhotoBlob existing = photoBlobRepo.findById(sha256).orElse(null);
+        String key = existing != null ? existing.getStorageKey() : blobKey(sha256, contentType);
+        // Written before the row counts it, so nobody sees the blob until the file is in place
+        if (existing == null || existing.getRefCount() == 0) content.putInto(photoStorage, key, contentType);
+
+        int refs = transaction.execute(status -> photoBlobRepo.acquire(sha256, key, sizeBytes, contentType));
+        PhotoBlob blob = photoBlobRepo.findById(sha256).orElseThrow();
+        // First reference: the cleanup job may have deleted the file (and the old row) since it was checked
+        if (refs == 1 && !photoStorage.exists(blob.getStorageKey())) {
+            try {
+                content.putInto(photoStorage, blob.getStorageKey(), contentType);
+            } catch (IOException | RuntimeException e) {
+                release(sha256);
+                throw e;
+            }
+        }
+        return blob;
+    }
+
+    public void release(String sha256) {
+        transaction.executeWithoutResult(status -> photoBlobRepo.release(sha256));
+    }
+
+    // 🔹 File of a stored blob, resolved from its hash
+    public Resource resolve(String sha256) {
+        return photoBlobRepo.findById(sha256)
+                .map(blob -> photoStorage.get(blob.getStorageKey()))
+                .orElseThrow(() -> new RuntimeException("no Data found"));
+    }
+
+    // 🔹 File of a stored blob whose storage key is already known
+    public Resource resolveKey(String storageKey) {
+        return photoStorage.get(storageKey);
+    }
+
+    // 🔹 Scaled variant of a blob (exists() is false until it has been made)
+    public Resource derivative(String sha256, ImageVariant variant) {
+        return photoStorage.get(derivativeKey(sha256, variant));
+    }
+
+    public boolean hasDerivative(String sha256, ImageVariant variant) throws IOException {
+        return photoStorage.exists(derivativeKey(sha256, variant));
+    }
+
+    // 🔹 Store a generated variant from a spooled file, which is consumed
+    public void putDerivative(String sha256, ImageVariant variant, Path file) throws IOException {
+        photoStorage.put(derivativeKey(sha256, variant), file, "image/jpeg");
+    }
+
+    // 🔹 Fresh temp file for a streamed upload
+    public Path newIncomingFile() throws IOException {
+        Files.createDirectories(incomingRoot);
+        return incomingRoot.resolve(UUID.randomUUID() + ".part");
+    }
+
+    // 🔹 Hand over a local file that must survive the store: the storage consumes a hard link
+    //    to it (or a copy, across file systems) in the incoming area instead
+    public BlobContent linkFrom(Path file) {
+        return (storage, key, contentType) -> {
+            Path incoming = newIncomingFile();
+            try {
+                Files.createLink(incoming, file);
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                Files.copy(file, incoming);
+            }
+            try {
+                storage.put(key, incoming, contentType);
+            } finally {
+                Files.deleteIfExists(incoming);
+            }
+        };
+    }
+
+    // 🔹 Copy an upload the servlet layer already holds
+    public static BlobContent copyFrom(InputStreamSource source, long size) {
+        return (storage, key, contentType) -> {
+            try (InputStream in = source.getInputStream()) {
+                storage.put(key, in, size, contentType);
+            }
+        };
+    }
+
+    // 🔹 Hash of an upload that is already buffered, read without writing anything
+    public String sha256(InputStream in) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        for (int n; (n = in.read(buffer)) > 0; ) digest.update(buffer, 0, n);
+        return HEX.formatHex(digest.digest());
+    }
+
+    public DigestChannel digesting(WritableByteChannel channel) {
+        return new DigestChannel(channel, newDigest());
+    }
+
+    /**
+     * Deletes files and rows of blobs nobody references any more, and temp
+     * files of uploads that were abandoned midway.
+     *
+     * @return number of blobs removed
+     */
+    @Scheduled(initialDelayString = "${upload.blobs.cleanup-interval-ms:600000}",
+            fixedDelayString = "${upload.blobs.cleanup-interval-ms:600000}")
+    @Transactional
+    public int collectUnreferencedBlobs() {
+        List<PhotoBlob> unreferenced = photoBlobRepo.lockUnreferenced(cleanupBatchSize);
+        for (PhotoBlob blob : unreferenced) {
+            try {
+                photoStorage.delete(blob.getStorageKey());
+                for (ImageVariant variant : ImageVariant.values()) {
+                    if (variant.isDerived()) photoStorage.delete(derivativeKey(blob.getSha256(), variant));
+                }
+            } catch (IOException e) {
+                log.warn("Could not delete blob file {}", blob.getStorageKey(), e);
+            }
+        }
+        photoBlobRepo.deleteAll(unreferenced);
+
+        int abandoned = deleteAbandonedIncoming();
+        if (!unreferenced.isEmpty() || abandoned > 0)
+            log.info("Removed {} unreferenced photo blobs and {} abandoned uploads", unreferenced.size(), abandoned);
+        return unreferenced.size();
+    }
+
+    private int deleteAbandonedIncoming() {
+        if (!Files.isDirectory(incomingRoot)) return 0;
+        FileTime cutoff = FileTime.from(Instant.now().minus(incomingMaxAgeMinutes, ChronoUnit.MINUTES));
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(incomingRoot)) {
+            for (Path file : files) {
+                try {
+                    if (Files.getLastModifiedTime(file).compareTo(cutoff) < 0 && Files.deleteIfExists(file)) deleted++;
+                } catch (NoSuchFileException e) {
+                    // Moved into place or removed by its upload meanwhile
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not clean up {}", incomingRoot, e);
+        }
+        return deleted;
+    }
+
+    private static String blobKey(String sha256, String contentType) {
+        String extension = contentType == null ? "" : EXTENSIONS.getOrDefault(contentType.toLowerCase(), "");
+        return "blobs/" + sha256 + extension;
+    }
+
+    private static String derivativeKey(String sha256, ImageVariant variant) {
+        return "derivatives/" + sha256 + "_" + variant.name().toLowerCase() + ".jpg";
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Channel wrapper that hashes every byte written through it, so a streamed
+     * upload is hashed in the same pass that writes it.
+     */
+    public static final class DigestChannel implements WritableByteChannel {
+        private final WritableByteChannel channel;
+        private final MessageDigest digest;
+
+        private DigestChannel(WritableByteChannel channel, MessageDigest digest) {
+            this.channel = channel;
+            this.digest = digest;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            ByteBuffer written = src.duplicate();
+            int n = channel.write(src);
+            written.limit(written.position() + n);
+            digest.update(written);
+            return n;
+        }
+
+        public String sha256() {
+            return HEX.formatHex(digest.digest());
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services.FeedWindow;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.PhotoChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the monthly partitions of the photo table in shape: creates the
+ * coming months ahead of time and detaches months that fell out of the
+ * retention period. A detached partition stays in the database as a plain
+ * table (same name) until it is archived and dropped by hand.
+ * <p>
+ * Months inside the feed window are never detached, the feed still reads them.
+ * Rows that landed in the default partition before their month existed are
+ * moved into it when the month is created.
+ */
+@Service
+public class PhotoPartitionService {
+
+    private static final Logger log = LoggerFactory.getLogger(PhotoPartitionService.class);
+
+    private static final String PREFIX = "photo_p";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    // Moving rows out of the default partition detaches and re-attaches it, all or nothing
+    private final TransactionTemplate transaction;
+    private final FeedWindow feedWindow;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${photo.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${photo.partitions.detach-after-months:0}")
+    private int detachAfterMonths;
+
+    public PhotoPartitionService(DataSource dataSource, PlatformTransactionManager transactionManager,
+                                 FeedWindow feedWindow, ApplicationEventPublisher eventPublisher) {
+        // DDL runs in autocommit, one statement per partition
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.feedWindow = feedWindow;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public record PartitionInfo(String name, String bounds, long estimatedRows) {
+    }
+
+    // 🔹 Attached partitions, oldest month first (the default partition last)
+    public List<PartitionInfo> getPartitions() {
+        return jdbcTemplate.query("""
+                        select c.relname, pg_get_expr(c.relpartbound, c.oid), greatest(c.reltuples, 0)::bigint
+                        from pg_inherits i join pg_class c on c.oid = i.inhrelid
+                        where i.inhparent = 'photo'::regclass
+                        order by c.relname like 'photo_p%' desc, c.relname
+                        """,
+                (rs, row) -> new PartitionInfo(rs.getString(1), rs.getString(2), rs.getLong(3)));
+    }
+
+    /**
+     * Creates missing partitions up to {@code months-ahead} months from now and,
+     * when {@code detach-after-months} is set, detaches the ones older than that.
+     *
+     * @return names of the partitions created, detached and that could not be created
+     */
+    @Scheduled(initialDelayString = "${photo.partitions.maintenance-initial-delay-ms:0}",
+            fixedDelayString = "${photo.partitions.maintenance-interval-ms:86400000}")
+    public Map<String, List<String>> maintainPartitions() {
+        List<String> created = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        YearMonth now = YearMonth.now();
+        for (YearMonth month = now; !month.isAfter(now.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            String name = partitionName(month);
+            try {
+                if (createPartition(month)) created.add(name);
+            } catch (DataAccessException e) {
+                // Retried on the next run; the month's photos stay readable in photo_default meanwhile
+                log.warn("Could not create photo partition {}: {}", name, e.getMostSpecificCause().getMessage());
+                failed.add(name);
+            }
+        }
+
+        List<String> detached = new ArrayList<>();
+        if (detachAfterMonths > 0) {
+            YearMonth keepFrom = now.minusMonths(detachAfterMonths);
+            if (keepFrom.isAfter(windowStart())) keepFrom = windowStart();
+            for (PartitionInfo partition : getPartitions()) {
+                YearMonth month = monthOf(partition.name());
+                if (month != null && month.isBefore(keepFrom)) {
+                    detach(partition.name());
+                    detached.add(partition.name());
+                }
+            }
+        }
+
+        if (!created.isEmpty() || !detached.isEmpty())
+            log.info("Photo partitions: created {}, detached {}", created, detached);
+
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        result.put("created", created);
+        result.put("detached", detached);
+        result.put("failed", failed);
+        return result;
+    }
+
+    // 🔹 Detach one month for archival; it must be older than the feed window
+    public String detachPartition(String month) {
+        YearMonth yearMonth;
+        try {
+            yearMonth = YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Month must look like 2024-01");
+        }
+        if (!yearMonth.isBefore(windowStart()))
+            throw new IllegalArgumentException("Month " + month + " is still inside the feed window");
+
+        String name = partitionName(yearMonth);
+        boolean attached = getPartitions().stream().anyMatch(p -> p.name().equals(name));
+        if (!attached)
+            throw new EmptyResultDataAccessException("No attached photo partition for " + month, 1);
+
+        detach(name);
+        log.info("Detached photo partition {}", name);
+        return name;
+    }
+
+    private boolean createPartition(YearMonth month) {
+        String name = partitionName(month);
+        Boolean exists = jdbcTemplate.queryForObject("select to_regclass(?) is not null", Boolean.class, name);
+        if (Boolean.TRUE.equals(exists)) return false;
+
+        String from = month.atDay(1).toString(), to = month.plusMonths(1).atDay(1).toString();
+        String create = "create table " + name + " partition of photo for values from ('" + from + "') to ('" + to + "')";
+        Boolean strayRows = jdbcTemplate.queryForObject(
+                "select exists (select 1 from photo_default where creation_date >= ?::timestamp and creation_date < ?::timestamp)",
+                Boolean.class, from, to);
+        if (!Boolean.TRUE.equals(strayRows)) {
+            jdbcTemplate.execute(create);
+            return true;
+        }
+
+        // Postgres refuses a new partition while the default one holds rows of
+        // its range, so the default steps aside until they are moved over
+        Integer moved = transaction.execute(status -> {
+            jdbcTemplate.execute("alter table photo detach partition photo_default");
+            jdbcTemplate.execute(create);
+            int rows = jdbcTemplate.update("""
+                    with moved as (
+                        delete from photo_default
+                        where creation_date >= ?::timestamp and creation_date < ?::timestamp
+                        returning *
+                    )
+                    insert into photo select * from moved
+                    """, from, to);
+            jdbcTemplate.execute("alter table photo attach partition photo_default default");
+            return rows;
+        });
+        log.info("Created photo partition {} and moved {} photos into it from photo_default", name, moved);
+        return true;
+    }
+
+    // Plain DETACH: CONCURRENTLY is not allowed while a default partition exists
+    private void detach(String name) {
+        jdbcTemplate.execute("alter table photo detach partition " + name);
+        // Its photos are gone from photo, and caches of them must not keep serving them
+        eventPublisher.publishEvent(PhotoChangedEvent.all());
+    }
+
+    private YearMonth windowStart() {
+        return YearMonth.from(feedWindow.since().toInstant().atZone(ZoneId.systemDefault()));
+    }
+
+    private static String partitionName(YearMonth month) {
+        return PREFIX + month.format(SUFFIX);
+    }
+
+    private static YearMonth monthOf(String name) {
+        if (!name.startsWith(PREFIX)) return null;
+        try {
+            return YearMonth.parse(name.substring(PREFIX.length()), SUFFIX);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
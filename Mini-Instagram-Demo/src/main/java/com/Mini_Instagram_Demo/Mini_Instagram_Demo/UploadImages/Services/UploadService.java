@@ -1,50 +1,311 @@
 package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services;
 
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services.NewsFeedService;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Inputs.LanLonInput;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.BatchUploadItem;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.PhotoBlob;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoBulkRepo;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 @Service
 public class UploadService {
 
     private final PhotoRepo photoRepo;
+    private final PhotoBulkRepo photoBulkRepo;
+    private final NewsFeedService newsFeedService;
+    private final PhotoBlobStore photoBlobStore;
+    private final DerivativePipeline derivativePipeline;
+    // Shared by every batch, so concurrent carousels cannot drain the connection pool
+    private final Semaphore storeSlots;
 
-    private static final String PARENT_PATH="C:\\Users\\Hp\\Desktop\\TestUploadInsta";
+    private static final Set<String> ALLOWED_TYPES = Set.of("image/jpeg", "image/jpg", "image/png", "image/gif", "image/webp");
+    private static final Set<String> DANGEROUS_EXTENSIONS = Set.of(".exe", ".bat", ".cmd", ".sh", ".php", ".jsp", ".asp");
+    private static final int MAX_FIELD_BYTES = 64;
 
-    public UploadService(PhotoRepo photoRepo) {
+    @Value("${upload.batch.max-images:10}")
+    private int maxBatchImages;
+
+    public UploadService(PhotoRepo photoRepo, PhotoBulkRepo photoBulkRepo, NewsFeedService newsFeedService,
+                         PhotoBlobStore photoBlobStore, DerivativePipeline derivativePipeline,
+                         @Value("${upload.batch.max-concurrent-stores:4}") int maxConcurrentStores) {
         this.photoRepo = photoRepo;
+        this.photoBulkRepo = photoBulkRepo;
+        this.newsFeedService = newsFeedService;
+        this.photoBlobStore = photoBlobStore;
+        this.derivativePipeline = derivativePipeline;
+        this.storeSlots = new Semaphore(maxConcurrentStores);
     }
 
 
     public Photo uploadImage(int userId , MultipartFile img , LanLonInput lanLonInput) throws IOException {
         if(userId<0 ||img.isEmpty() || lanLonInput==null) throw new IllegalArgumentException();
+        checkFilename(img.getOriginalFilename());
+
+        // The part is already buffered by the servlet layer: hash it first, write only new content
+        String sha256;
+        try (InputStream in = img.getInputStream()) {
+            sha256 = photoBlobStore.sha256(in);
+        }
+        PhotoBlob blob = photoBlobStore.store(sha256, img.getSize(), img.getContentType(),
+                PhotoBlobStore.copyFrom(img, img.getSize()));
+        return savePhoto(userId, blob, lanLonInput);
+
+    }
+
+    /**
+     * Upload straight from the request body: the multipart stream is parsed as it
+     * arrives and the image part goes through a FileChannel to disk, hashed on the
+     * way, with no servlet-side copy in memory or in a temp file. The size limit is
+     * checked while streaming; a rejected or broken upload leaves no file behind.
+     * <p>
+     * The hash is only known at the end, so the file is streamed to a temp name and
+     * then linked into its blob location (unless it is a duplicate) and deleted.
+     * <p>
+     * Expects an "image" file part and the photoLan, photoLon, userLan and userLon
+     * fields, in any order.
+     */
+    public Photo uploadImageStream(int userId, String contentType, InputStream body, long maxFileSize)
+            throws IOException, HttpMediaTypeNotSupportedException {
+        if (userId < 0) throw new IllegalArgumentException("Invalid userId");
+
+        MultipartStreamReader reader = new MultipartStreamReader(body, boundaryOf(contentType));
+        Map<String, Integer> fields = new HashMap<>();
+        Path incoming = null;
+        String sha256 = null, imageType = null;
+        long size = 0;
+        try {
+            while (reader.nextPart()) {
+                if ("image".equals(reader.getName()) && reader.getFilename() != null) {
+                    if (incoming != null) throw new IllegalArgumentException("Only one image per request");
+                    // 🔹 Check the part headers before a single byte hits the disk
+                    imageType = reader.getContentType();
+                    if (!isAllowedType(imageType))
+                        throw new HttpMediaTypeNotSupportedException("Invalid file type. Allowed types: JPEG, PNG, GIF, WEBP");
+                    checkFilename(reader.getFilename());
+
+                    incoming = photoBlobStore.newIncomingFile();
+                    try (FileChannel channel = FileChannel.open(incoming,
+                            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                        PhotoBlobStore.DigestChannel digesting = photoBlobStore.digesting(channel);
+                        size = reader.transferTo(digesting, maxFileSize);
+                        if (size == 0)
+                            throw new IllegalArgumentException("Image file is required and cannot be empty");
+                        sha256 = digesting.sha256();
+                    }
+                } else if (reader.getName() != null && reader.getFilename() == null) {
+                    String value = reader.readString(MAX_FIELD_BYTES).trim();
+                    try {
+                        fields.put(reader.getName(), Integer.parseInt(value));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Field " + reader.getName() + " must be a number");
+                    }
+                }
+            }
+
+            if (incoming == null) throw new IllegalArgumentException("Image file is required and cannot be empty");
+            LanLonInput lanLonInput = new LanLonInput(
+                    coordinate(fields, "userLan", 90), coordinate(fields, "userLon", 180),
+                    coordinate(fields, "photoLan", 90), coordinate(fields, "photoLon", 180));
+
+            PhotoBlob blob = photoBlobStore.store(sha256, size, imageType, photoBlobStore.linkFrom(incoming));
+            return savePhoto(userId, blob, lanLonInput);
+
+        } finally {
+            // Its blob holds a link of its own; the temp name is always dropped here
+            if (incoming != null) Files.deleteIfExists(incoming);
+        }
+    }
+
+    /**
+     * Several images with one location, e.g. a carousel post. Each image is
+     * checked, hashed and stored on its own virtual thread, so the batch takes
+     * about as long as its slowest image; the photos of every image that made
+     * it are then inserted with a single statement. At most
+     * {@code upload.batch.max-concurrent-stores} stores run at once across all batches.
+     * <p>
+     * A rejected image does not fail the batch: its item carries the reason.
+     * Only a failed insert or an interrupt fails the whole batch, releasing every stored blob.
+     */
+    public List<BatchUploadItem> uploadImages(int userId, List<MultipartFile> images, LanLonInput lanLonInput,
+                                              long maxFileSize) throws InterruptedException {
+        if (userId < 0 || lanLonInput == null) throw new IllegalArgumentException();
+        if (images == null || images.isEmpty()) throw new IllegalArgumentException("At least one image is required");
+        if (images.size() > maxBatchImages)
+            throw new IllegalArgumentException("At most " + maxBatchImages + " images per batch");
+
+        List<Future<PhotoBlob>> stored = new ArrayList<>(images.size());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (MultipartFile image : images) stored.add(executor.submit(() -> storeImage(image, maxFileSize)));
+        }
+
+        BatchUploadItem[] items = new BatchUploadItem[images.size()];
+        List<Photo> photos = new ArrayList<>();
+        List<Integer> photoIndexes = new ArrayList<>();
+        Date creationDate = new Date();
+        try {
+            for (int i = 0; i < images.size(); i++) {
+                String filename = images.get(i).getOriginalFilename();
+                try {
+                    photos.add(newPhoto(userId, stored.get(i).get(), lanLonInput, creationDate));
+                    photoIndexes.add(i);
+                } catch (ExecutionException e) {
+                    Exception failure = e.getCause() instanceof Exception cause ? cause : e;
+                    items[i] = new BatchUploadItem(i, filename, null, failure);
+                }
+            }
+        } catch (InterruptedException | CancellationException e) {
+            // Nothing gets inserted: drop the references every finished store() took
+            for (Future<PhotoBlob> future : stored) {
+                if (future.state() == Future.State.SUCCESS) photoBlobStore.release(future.resultNow().getSha256());
+            }
+            Thread.currentThread().interrupt();
+            throw e instanceof InterruptedException interrupted
+                    ? interrupted
+                    : new InterruptedException("Batch upload was interrupted");
+        }
+
+        try {
+            photoBulkRepo.insertPhotos(photos);
+        } catch (RuntimeException e) {
+            // The references taken in store() have no photos behind them
+            for (Photo photo : photos) photoBlobStore.release(photo.getContentHash());
+            throw e;
+        }
+        for (int j = 0; j < photos.size(); j++) {
+            Photo photo = photos.get(j);
+            int i = photoIndexes.get(j);
+            newsFeedService.onPhotoUploaded(photo);
+            derivativePipeline.submit(photo);
+            items[i] = new BatchUploadItem(i, images.get(i).getOriginalFilename(), photo, null);
+        }
+        return List.of(items);
+    }
+
+    // 🔹 One image of a batch: the same checks as the single upload, then hash and store
+    private PhotoBlob storeImage(MultipartFile image, long maxFileSize)
+            throws IOException, HttpMediaTypeNotSupportedException, InterruptedException {
+        if (image.isEmpty()) throw new IllegalArgumentException("Image file is required and cannot be empty");
+        if (image.getSize() > maxFileSize) throw new MaxUploadSizeExceededException(maxFileSize);
+        String contentType = image.getContentType();
+        if (!isAllowedType(contentType))
+            throw new HttpMediaTypeNotSupportedException("Invalid file type. Allowed types: JPEG, PNG, GIF, WEBP");
+        checkFilename(image.getOriginalFilename());
+
+        String sha256;
+        try (InputStream in = image.getInputStream()) {
+            sha256 = photoBlobStore.sha256(in);
+        }
+        // Hashing runs on every image at once; only the store, which uses the database, waits for a slot
+        storeSlots.acquire();
+        try {
+            return photoBlobStore.store(sha256, image.getSize(), contentType,
+                    PhotoBlobStore.copyFrom(image, image.getSize()));
+        } finally {
+            storeSlots.release();
+        }
+    }
 
-        File directory = new File(PARENT_PATH);
-        if (!directory.exists()) {
-            directory.mkdirs();
+    // 🔹 A file already assembled on local disk, e.g. a finished upload session; the file is left
+    //    in place, so the caller can try again when this fails and deletes it once it succeeds
+    public Photo uploadFile(int userId, Path file, String contentType, LanLonInput lanLonInput) throws IOException {
+        String sha256;
+        try (InputStream in = Files.newInputStream(file)) {
+            sha256 = photoBlobStore.sha256(in);
         }
+        PhotoBlob blob = photoBlobStore.store(sha256, Files.size(file), contentType, photoBlobStore.linkFrom(file));
+        return savePhoto(userId, blob, lanLonInput);
+    }
 
-        String fileName = userId+"_"+img.getOriginalFilename();
-        File file = new File(PARENT_PATH+File.separator+fileName);
+    private Photo savePhoto(int userId, PhotoBlob blob, LanLonInput lanLonInput) {
+        Photo photo = newPhoto(userId, blob, lanLonInput, new Date());
 
-        img.transferTo(file);
+        Photo saved;
+        try {
+            saved = photoRepo.save(photo);
+        } catch (RuntimeException e) {
+            // The reference taken in store() has no photo behind it
+            photoBlobStore.release(blob.getSha256());
+            throw e;
+        }
+        newsFeedService.onPhotoUploaded(saved);
+        derivativePipeline.submit(saved);
+        return saved;
+    }
+
+    private Photo newPhoto(int userId, PhotoBlob blob, LanLonInput lanLonInput, Date creationDate) {
         Photo photo = new Photo();
         photo.setUserId(userId);
         photo.setPhotoLatitude(lanLonInput.photoLan());
         photo.setPhotoLongitude(lanLonInput.photoLon());
         photo.setUserLatitude(lanLonInput.userLan());
         photo.setUserLongitude(lanLonInput.userLon());
-        photo.setCreationDate(new Date());
-        photo.setPhotoPath(file.getAbsolutePath());
+        photo.setCreationDate(creationDate);
+        photo.setPhotoPath(blob.getStorageKey());
+        photo.setContentHash(blob.getSha256());
+        if (derivativePipeline.isEnabled()) photo.setDerivativeState(Photo.DerivativeState.PENDING);
+        return photo;
+    }
+
+    static boolean isAllowedType(String contentType) {
+        return contentType != null && ALLOWED_TYPES.contains(contentType.toLowerCase());
+    }
 
-        return photoRepo.save(photo);
+    // 🔹 Only the name is checked; stored files are named by their hash
+    static void checkFilename(String originalFilename) {
+        if (originalFilename == null || originalFilename.isBlank())
+            throw new IllegalArgumentException("Invalid file name");
+        String lowerName = originalFilename.toLowerCase();
+        if (DANGEROUS_EXTENSIONS.stream().anyMatch(lowerName::endsWith))
+            throw new IllegalArgumentException("File name contains invalid characters or extension");
+    }
+
+    private static String boundaryOf(String contentType) {
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            if (!MediaType.MULTIPART_FORM_DATA.includes(mediaType))
+                throw new IllegalArgumentException("Expected a multipart/form-data body");
+            String boundary = mediaType.getParameter("boundary");
+            return boundary != null && boundary.length() >= 2 && boundary.startsWith("\"")
+                    ? boundary.substring(1, boundary.length() - 1)
+                    : boundary;
+        } catch (InvalidMediaTypeException e) {
+            throw new IllegalArgumentException("Invalid Content-Type header");
+        }
+    }
 
+    private static int coordinate(Map<String, Integer> fields, String name, int bound) {
+        Integer value = fields.get(name);
+        if (value == null) throw new IllegalArgumentException("Field " + name + " is required");
+        if (value < -bound || value > bound)
+            throw new IllegalArgumentException(name + " must be between -" + bound + " and " + bound);
+        return value;
     }
 
 
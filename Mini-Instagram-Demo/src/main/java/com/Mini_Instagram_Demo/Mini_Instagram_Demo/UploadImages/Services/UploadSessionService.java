@@ -0,0 +1,295 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Inputs.LanLonInput;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.UploadSession;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.UploadSessionRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resumable uploads. A client opens a session with the file's size, sends it
+ * in fixed-size chunks, each written at its offset through a positioned
+ * FileChannel, and completes the session to create the photo. After a dropped
+ * connection it asks for the committed offset and carries on from there, so
+ * at most one chunk is sent twice instead of the whole file.
+ * <p>
+ * Chunks must arrive in order: a chunk at the committed offset is written and
+ * synced before the offset moves; one below it was already received and is
+ * acknowledged without writing; one above it is a conflict. Sessions idle for
+ * longer than {@code expire-after-minutes} are removed with their file.
+ */
+@Service
+public class UploadSessionService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionService.class);
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final UploadSessionRepo uploadSessionRepo;
+    private final UploadService uploadService;
+    private final Path sessionRoot;
+    // Sessions with a chunk or completion in progress on this instance
+    private final Set<String> busy = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder chunksWritten = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder duplicateChunks = new LongAdder();
+    private final LongAdder duplicateBytes = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+
+    @Value("${upload.sessions.chunk-size:1048576}")
+    private int chunkSize;
+
+    @Value("${upload.sessions.expire-after-minutes:1440}")
+    private long expireAfterMinutes;
+
+    @Value("${upload.sessions.cleanup-batch-size:500}")
+    private int cleanupBatchSize;
+
+    public UploadSessionService(UploadSessionRepo uploadSessionRepo, UploadService uploadService,
+                                @Value("${upload.dir:uploads}") String uploadDir) {
+        this.uploadSessionRepo = uploadSessionRepo;
+        this.uploadService = uploadService;
+        this.sessionRoot = Path.of(uploadDir).toAbsolutePath().normalize().resolve(".sessions");
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public Date expiresAt(UploadSession session) {
+        return Date.from(session.getUpdatedDate().toInstant().plus(expireAfterMinutes, ChronoUnit.MINUTES));
+    }
+
+    // 🔹 Check the file up front and reserve its session; nothing is written yet
+    public UploadSession open(int userId, String filename, String contentType, long sizeBytes, long maxFileSize)
+            throws IOException, HttpMediaTypeNotSupportedException {
+        if (userId < 0) throw new IllegalArgumentException("Invalid userId");
+        if (sizeBytes <= 0) throw new IllegalArgumentException("sizeBytes must be a positive number");
+        if (sizeBytes > maxFileSize) throw new MaxUploadSizeExceededException(maxFileSize);
+        if (!UploadService.isAllowedType(contentType))
+            throw new HttpMediaTypeNotSupportedException("Invalid file type. Allowed types: JPEG, PNG, GIF, WEBP");
+        UploadService.checkFilename(filename);
+
+        Date now = new Date();
+        UploadSession session = new UploadSession();
+        session.setSessionId(UUID.randomUUID().toString());
+        session.setUserId(userId);
+        session.setFilename(filename);
+        session.setContentType(contentType.toLowerCase());
+        session.setSizeBytes(sizeBytes);
+        session.setCommittedOffset(0);
+        session.setCreationDate(now);
+        session.setUpdatedDate(now);
+
+        Files.createDirectories(sessionRoot);
+        Files.createFile(fileOf(session.getSessionId()));
+        opened.increment();
+        return uploadSessionRepo.save(session);
+    }
+
+    public UploadSession get(String sessionId) {
+        return uploadSessionRepo.findById(sessionId)
+                .orElseThrow(() -> new EmptyResultDataAccessException("Upload session " + sessionId + " not found", 1));
+    }
+
+    /**
+     * Writes one chunk of {@code length} bytes at {@code offset}. Every chunk
+     * but the last must be exactly the chunk size.
+     *
+     * @return the committed offset afterwards
+     */
+    public long writeChunk(String sessionId, long offset, long length, InputStream body) throws IOException {
+        if (!busy.add(sessionId)) {
+            conflicts.increment();
+            throw new IllegalStateException("Another request for this upload is in progress");
+        }
+        try {
+            UploadSession session = get(sessionId);
+            long committed = session.getCommittedOffset();
+            if (offset < 0 || offset % chunkSize != 0)
+                throw new IllegalArgumentException("offset must be a multiple of the chunk size " + chunkSize);
+            if (offset < committed) {
+                // A retransmission of a chunk we already have: acknowledge it, nothing to write
+                duplicateChunks.increment();
+                duplicateBytes.add(Math.max(length, 0));
+                return committed;
+            }
+            if (offset > committed) {
+                conflicts.increment();
+                throw new IllegalStateException("Chunk at " + offset + " does not follow the committed offset " + committed);
+            }
+            long expected = Math.min(chunkSize, session.getSizeBytes() - offset);
+            if (expected == 0)
+                throw new IllegalStateException("All " + session.getSizeBytes() + " bytes were already received");
+            if (length != expected)
+                throw new IllegalArgumentException("Chunk at " + offset + " must be " + expected + " bytes, got " + length);
+
+            write(sessionId, offset, expected, body);
+
+            long next = offset + expected;
+            if (uploadSessionRepo.advance(sessionId, offset, next, new Date()) == 0) {
+                conflicts.increment();
+                throw new IllegalStateException("Upload session " + sessionId + " moved on concurrently");
+            }
+            chunksWritten.increment();
+            return next;
+        } finally {
+            busy.remove(sessionId);
+        }
+    }
+
+    // Positioned writes leave the channel's own position alone; a short body fails the chunk
+    private void write(String sessionId, long offset, long length, InputStream body) throws IOException {
+        ReadableByteChannel source = Channels.newChannel(body);
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(fileOf(sessionId), StandardOpenOption.WRITE)) {
+            long position = offset, end = offset + length;
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                if (source.read(buffer) < 0)
+                    throw new EOFException("Chunk ended after " + (position - offset) + " of " + length + " bytes");
+                buffer.flip();
+                while (buffer.hasRemaining()) position += channel.write(buffer, position);
+            }
+            // On disk before the offset says so: a crash never leaves a committed hole
+            channel.force(false);
+        }
+        bytesWritten.add(length);
+    }
+
+    // 🔹 All bytes are in: create the photo from the assembled file and end the session
+    public Photo complete(String sessionId, LanLonInput lanLonInput) throws IOException {
+        if (!busy.add(sessionId)) throw new IllegalStateException("Another request for this upload is in progress");
+        try {
+            UploadSession session = get(sessionId);
+            if (session.getCommittedOffset() != session.getSizeBytes())
+                throw new IllegalStateException("Upload incomplete: " + session.getCommittedOffset()
+                        + " of " + session.getSizeBytes() + " bytes received");
+            // On failure the session and its file stay, so completing can be retried
+            Photo photo = uploadService.uploadFile(session.getUserId(), fileOf(sessionId),
+                    session.getContentType(), lanLonInput);
+            uploadSessionRepo.deleteById(sessionId);
+            // A file left behind here is removed by the orphan cleanup
+            Files.deleteIfExists(fileOf(sessionId));
+            completed.increment();
+            return photo;
+        } finally {
+            busy.remove(sessionId);
+        }
+    }
+
+    public void abort(String sessionId) throws IOException {
+        UploadSession session = get(sessionId);
+        uploadSessionRepo.delete(session);
+        Files.deleteIfExists(fileOf(sessionId));
+    }
+
+    /**
+     * Removes sessions nobody has written to within the expiry, and session
+     * files whose row is gone (a crash between completing and deleting).
+     *
+     * @return number of sessions removed
+     */
+    @Scheduled(initialDelayString = "${upload.sessions.cleanup-interval-ms:600000}",
+            fixedDelayString = "${upload.sessions.cleanup-interval-ms:600000}")
+    public int expireIdleSessions() {
+        Instant cutoff = Instant.now().minus(expireAfterMinutes, ChronoUnit.MINUTES);
+        int removed = 0;
+        for (UploadSession session : uploadSessionRepo.findIdleSince(Date.from(cutoff), Limit.of(cleanupBatchSize))) {
+            if (busy.contains(session.getSessionId())) continue;
+            try {
+                uploadSessionRepo.delete(session);
+                Files.deleteIfExists(fileOf(session.getSessionId()));
+                removed++;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not remove upload session {}", session.getSessionId(), e);
+            }
+        }
+        expired.add(removed);
+
+        int orphans = deleteOrphanFiles(FileTime.from(cutoff));
+        if (removed > 0 || orphans > 0)
+            log.info("Removed {} expired upload sessions and {} orphaned session files", removed, orphans);
+        return removed;
+    }
+
+    private int deleteOrphanFiles(FileTime cutoff) {
+        if (!Files.isDirectory(sessionRoot)) return 0;
+        int deleted = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(sessionRoot, "*.part")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String sessionId = name.substring(0, name.length() - ".part".length());
+                try {
+                    if (Files.getLastModifiedTime(file).compareTo(cutoff) < 0
+                            && !uploadSessionRepo.existsById(sessionId) && Files.deleteIfExists(file)) deleted++;
+                } catch (NoSuchFileException e) {
+                    // Completed or aborted meanwhile
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not clean up {}", sessionRoot, e);
+        }
+        return deleted;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("chunkSize", chunkSize);
+        metrics.put("opened", opened.sum());
+        metrics.put("completed", completed.sum());
+        metrics.put("expired", expired.sum());
+        metrics.put("chunksWritten", chunksWritten.sum());
+        metrics.put("bytesWritten", bytesWritten.sum());
+        // Bytes clients sent again for chunks that were already committed
+        metrics.put("duplicateChunks", duplicateChunks.sum());
+        metrics.put("duplicateBytes", duplicateBytes.sum());
+        metrics.put("conflicts", conflicts.sum());
+        return metrics;
+    }
+
+    private Path fileOf(String sessionId) {
+        // Ids come from clients: only a UUID names a file
+        try {
+            return sessionRoot.resolve(UUID.fromString(sessionId) + ".part");
+        } catch (IllegalArgumentException e) {
+            throw new EmptyResultDataAccessException("Upload session " + sessionId + " not found", 1);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * Photo files on the local file system under {@code upload.dir}. Every key
+ * {@code dir/name} is stored at {@code dir/<2 chars>/<2 chars>/name}, taken
+ * from the hash at the front of the name, so no directory grows past a few
+ * thousand entries even with millions of photos.
+ * <p>
+ * Files are written under a temp name and moved into place, so readers never
+ * see a partly written file.
+ */
+@Component
+@ConditionalOnProperty(name = "upload.storage", havingValue = "local", matchIfMissing = true)
+public class LocalPhotoStorage implements PhotoStorage {
+
+    private final Path root;
+
+    public LocalPhotoStorage(@Value("${upload.dir:uploads}") String uploadDir) {
+        this.root = Path.of(uploadDir).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void put(String key, Path file, String contentType) throws IOException {
+        Path target = pathOf(key);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // The file is on another file system: copy it next to the target first
+            try (InputStream in = Files.newInputStream(file)) {
+                write(in, target);
+            }
+            Files.delete(file);
+        }
+    }
+
+    @Override
+    public void put(String key, InputStream in, long size, String contentType) throws IOException {
+        Path target = pathOf(key);
+        Files.createDirectories(target.getParent());
+        write(in, target);
+    }
+
+    @Override
+    public Resource get(String key) {
+        return new FileSystemResource(pathOf(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(pathOf(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(pathOf(key));
+    }
+
+    // 🔹 dir/name → <root>/dir/ab/cd/name
+    Path pathOf(String key) {
+        int slash = key.lastIndexOf('/');
+        String name = key.substring(slash + 1);
+        if (name.length() < 4 || name.startsWith("."))
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        Path dir = slash < 0 ? root : root.resolve(key.substring(0, slash));
+        Path path = dir.resolve(name.substring(0, 2)).resolve(name.substring(2, 4)).resolve(name).normalize();
+        if (!path.startsWith(root)) throw new IllegalArgumentException("Invalid storage key: " + key);
+        return path;
+    }
+
+    private static void write(InputStream in, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.copy(in, temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Where photo files are kept. Keys are relative names such as
+ * {@code blobs/<sha256>.png}; their last segment always starts with the
+ * content hash, which backends may use to spread files out.
+ * <p>
+ * The backend is picked with {@code upload.storage}: {@code local} (default)
+ * or {@code s3} for any S3-compatible object store.
+ */
+public interface PhotoStorage {
+
+    // 🔹 Store a finished local file under key; the file is consumed (moved or uploaded, then deleted)
+    void put(String key, Path file, String contentType) throws IOException;
+
+    // 🔹 Store exactly size bytes read from in
+    void put(String key, InputStream in, long size, String contentType) throws IOException;
+
+    // 🔹 Readable handle for a key; exists() is false when nothing is stored there
+    Resource get(String key);
+
+    boolean exists(String key) throws IOException;
+
+    // 🔹 No-op when the key is not stored
+    void delete(String key) throws IOException;
+}
@@ -0,0 +1,13 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A stored file that can be read from an offset without fetching the bytes
+ * before it, e.g. an object read with a ranged GET.
+ */
+public interface RangeReadable {
+
+    InputStream getInputStream(long start, long length) throws IOException;
+}
@@ -0,0 +1,251 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Storage;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.core.checksums.ResponseChecksumValidation;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchBucketException;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Photo files in a bucket of an S3-compatible object store (AWS S3, MinIO,
+ * Ceph, ...). Keys are used as object names under {@code upload.s3.prefix};
+ * set {@code upload.s3.endpoint} and path-style access for non-AWS stores.
+ * <p>
+ * Credentials come from {@code upload.s3.access-key}/{@code secret-key}, or
+ * from the default AWS provider chain when those are empty.
+ */
+@Component
+@ConditionalOnProperty(name = "upload.storage", havingValue = "s3")
+public class S3PhotoStorage implements PhotoStorage {
+
+    private final S3Client s3;
+    private final String bucket;
+    private final String prefix;
+
+    @Autowired
+    public S3PhotoStorage(@Value("${upload.s3.bucket}") String bucket,
+                          @Value("${upload.s3.prefix:}") String prefix,
+                          @Value("${upload.s3.endpoint:}") String endpoint,
+                          @Value("${upload.s3.region:us-east-1}") String region,
+                          @Value("${upload.s3.access-key:}") String accessKey,
+                          @Value("${upload.s3.secret-key:}") String secretKey,
+                          @Value("${upload.s3.path-style-access:true}") boolean pathStyleAccess,
+                          @Value("${upload.s3.create-bucket:false}") boolean createBucket) {
+        // The bucket is created on the client, before this bean exists
+        this(withBucket(client(endpoint, region, accessKey, secretKey, pathStyleAccess), bucket, createBucket),
+                bucket, prefix);
+    }
+
+    public S3PhotoStorage(S3Client s3, String bucket, String prefix) {
+        this.s3 = s3;
+        this.bucket = bucket;
+        this.prefix = prefix == null || prefix.isEmpty() || prefix.endsWith("/") ? prefix : prefix + "/";
+    }
+
+    private static S3Client client(String endpoint, String region, String accessKey, String secretKey,
+                                   boolean pathStyleAccess) {
+        AwsCredentialsProvider credentials = accessKey.isEmpty()
+                ? DefaultCredentialsProvider.builder().build()
+                : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .forcePathStyle(pathStyleAccess)
+                // Many S3-compatible stores reject the SDK's default trailing checksums
+                .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED)
+                .responseChecksumValidation(ResponseChecksumValidation.WHEN_REQUIRED);
+        if (!endpoint.isEmpty()) builder.endpointOverride(URI.create(endpoint));
+        return builder.build();
+    }
+
+    private static S3Client withBucket(S3Client s3, String bucket, boolean createBucket) {
+        if (createBucket) createBucketIfMissing(s3, bucket);
+        return s3;
+    }
+
+    private static void createBucketIfMissing(S3Client s3, String bucket) {
+        try {
+            s3.headBucket(b -> b.bucket(bucket));
+        } catch (NoSuchBucketException e) {
+            s3.createBucket(b -> b.bucket(bucket));
+        }
+    }
+
+    public void createBucketIfMissing() {
+        createBucketIfMissing(s3, bucket);
+    }
+
+    @PreDestroy
+    public void close() {
+        s3.close();
+    }
+
+    @Override
+    public void put(String key, Path file, String contentType) throws IOException {
+        call(() -> s3.putObject(b -> b.bucket(bucket).key(objectKey(key)).contentType(contentType),
+                RequestBody.fromFile(file)));
+        Files.delete(file);
+    }
+
+    @Override
+    public void put(String key, InputStream in, long size, String contentType) throws IOException {
+        call(() -> s3.putObject(b -> b.bucket(bucket).key(objectKey(key)).contentType(contentType),
+                RequestBody.fromInputStream(in, size)));
+    }
+
+    @Override
+    public Resource get(String key) {
+        return new ObjectResource(key);
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        return head(key) != null;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        // S3 deletes are idempotent: a missing key is not an error
+        call(() -> s3.deleteObject(b -> b.bucket(bucket).key(objectKey(key))));
+    }
+
+    private String objectKey(String key) {
+        return prefix == null ? key : prefix + key;
+    }
+
+    // Metadata of the object, or null when it is not stored
+    private HeadObjectResponse head(String key) throws IOException {
+        try {
+            return s3.headObject(b -> b.bucket(bucket).key(objectKey(key)));
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) return null;
+            throw new IOException("Object store error for " + key + ": " + e.getMessage(), e);
+        } catch (SdkException e) {
+            throw new IOException("Object store error for " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    // SDK failures surface as IOException, like file system errors of the local backend
+    private static void call(Runnable request) throws IOException {
+        try {
+            request.run();
+        } catch (SdkException e) {
+            throw new IOException("Object store error: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * One object as a Spring Resource. Its metadata is fetched once, on the
+     * first exists() or contentLength(); the body is streamed on each
+     * getInputStream(), or just a byte range of it.
+     */
+    private final class ObjectResource extends AbstractResource implements RangeReadable {
+        private final String key;
+        private HeadObjectResponse head;
+        private boolean headLoaded;
+
+        ObjectResource(String key) {
+            this.key = key;
+        }
+
+        private HeadObjectResponse head() throws IOException {
+            if (!headLoaded) {
+                head = S3PhotoStorage.this.head(key);
+                headLoaded = true;
+            }
+            return head;
+        }
+
+        @Override
+        public boolean exists() {
+            try {
+                return head() != null;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            HeadObjectResponse response = head();
+            if (response == null) throw new FileNotFoundException(getDescription() + " not found");
+            return response.contentLength();
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            HeadObjectResponse response = head();
+            if (response == null) throw new FileNotFoundException(getDescription() + " not found");
+            return response.lastModified().toEpochMilli();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            try {
+                return s3.getObject(b -> b.bucket(bucket).key(objectKey(key)));
+            } catch (NoSuchKeyException e) {
+                throw new FileNotFoundException(getDescription() + " not found");
+            } catch (SdkException e) {
+                throw new IOException("Object store error for " + key + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public InputStream getInputStream(long start, long length) throws IOException {
+            String range = "bytes=" + start + "-" + (start + length - 1);
+            try {
+                return s3.getObject(b -> b.bucket(bucket).key(objectKey(key)).range(range));
+            } catch (NoSuchKeyException e) {
+                throw new FileNotFoundException(getDescription() + " not found");
+            } catch (SdkException e) {
+                throw new IOException("Object store error for " + key + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public String getFilename() {
+            return key.substring(key.lastIndexOf('/') + 1);
+        }
+
+        @Override
+        public String getDescription() {
+            return "s3://" + bucket + "/" + objectKey(key);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof ObjectResource that && that.getDescription().equals(getDescription());
+        }
+
+        @Override
+        public int hashCode() {
+            return getDescription().hashCode();
+        }
+    }
+}
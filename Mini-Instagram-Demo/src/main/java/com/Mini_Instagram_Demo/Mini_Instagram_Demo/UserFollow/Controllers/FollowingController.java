@@ -1,5 +1,6 @@
 package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Controllers;
 
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models.FollowPage;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Services.FollowingService;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -9,6 +10,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -75,6 +77,68 @@ public class FollowingController {
         }
     }
 
+    @GetMapping("/{userId}/followers")
+    public ResponseEntity<?> getFollowers(
+            @PathVariable int userId,
+            @RequestParam(required = false) Integer cursor,
+            @RequestParam(required = false, defaultValue = "50") int limit) {
+        try {
+            ResponseEntity<?> invalid = validatePageRequest(userId, cursor, limit);
+            if (invalid != null) return invalid;
+
+            FollowPage page = followingService.getFollowersPage(userId, cursor, limit);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("userId", userId);
+            response.put("followers", page.users());
+            response.put("count", page.users().size());
+            response.put("nextCursor", page.nextCursor());
+            response.put("message", "Followers retrieved successfully");
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return buildErrorResponse("Invalid input: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while fetching followers",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @GetMapping("/{userId}/following")
+    public ResponseEntity<?> getFollowing(
+            @PathVariable int userId,
+            @RequestParam(required = false) Integer cursor,
+            @RequestParam(required = false, defaultValue = "50") int limit) {
+        try {
+            ResponseEntity<?> invalid = validatePageRequest(userId, cursor, limit);
+            if (invalid != null) return invalid;
+
+            FollowPage page = followingService.getFollowingPage(userId, cursor, limit);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("userId", userId);
+            response.put("following", page.users());
+            response.put("count", page.users().size());
+            response.put("nextCursor", page.nextCursor());
+            response.put("message", "Following retrieved successfully");
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return buildErrorResponse("Invalid input: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while fetching following",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @PostMapping("/{followerId}/follow/{followingId}")
     public ResponseEntity<?> followUser(
             @PathVariable int followerId,
@@ -150,6 +214,68 @@ public class FollowingController {
         }
     }
 
+    @PostMapping("/{followerId}/follow/bulk")
+    public ResponseEntity<?> followUsers(
+            @PathVariable int followerId,
+            @RequestBody List<Integer> followingIds) {
+        try {
+            ResponseEntity<?> invalid = validateBulkRequest(followerId, followingIds);
+            if (invalid != null) return invalid;
+
+            List<Integer> followed = followingService.followUsers(followerId, followingIds);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Users followed successfully");
+            response.put("followerId", followerId);
+            response.put("requestedCount", followingIds.size());
+            response.put("followedCount", followed.size());
+            response.put("followedIds", followed);
+            response.put("status", "success");
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return buildErrorResponse("Invalid input: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while creating follow relationships",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @PostMapping("/{followerId}/unfollow/bulk")
+    public ResponseEntity<?> unfollowUsers(
+            @PathVariable int followerId,
+            @RequestBody List<Integer> unfollowingIds) {
+        try {
+            ResponseEntity<?> invalid = validateBulkRequest(followerId, unfollowingIds);
+            if (invalid != null) return invalid;
+
+            List<Integer> unfollowed = followingService.unfollowUsers(followerId, unfollowingIds);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Users unfollowed successfully");
+            response.put("userId", followerId);
+            response.put("requestedCount", unfollowingIds.size());
+            response.put("unfollowedCount", unfollowed.size());
+            response.put("unfollowedIds", unfollowed);
+            response.put("status", "success");
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return buildErrorResponse("Invalid input: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while removing follow relationships",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @GetMapping("/status/{followerId}/{followingId}")
     public ResponseEntity<?> checkFollowStatus(
             @PathVariable int followerId,
@@ -159,20 +285,126 @@ public class FollowingController {
                 return buildErrorResponse("User IDs must be positive numbers", HttpStatus.BAD_REQUEST);
             }
 
-            // This would require adding a method in the service to check if a follow exists
+            boolean following = followingService.isFollowing(followerId, followingId);
+
             Map<String, Object> response = new HashMap<>();
             response.put("followerId", followerId);
             response.put("followingId", followingId);
-            response.put("message", "Use this endpoint to check follow status");
+            response.put("isFollowing", following);
+            response.put("message", "Follow status retrieved successfully");
 
             return ResponseEntity.ok(response);
 
+        } catch (IllegalArgumentException e) {
+            return buildErrorResponse("Invalid input: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while checking follow status",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Error checking follow status: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Batch variant for profile grids: one follower against up to 1000 users
+    @PostMapping("/status/{followerId}")
+    public ResponseEntity<?> checkFollowStatuses(
+            @PathVariable int followerId,
+            @RequestBody List<Integer> userIds) {
+        try {
+            if (followerId < 0) {
+                return buildErrorResponse("User IDs must be positive numbers", HttpStatus.BAD_REQUEST);
+            }
+
+            if (userIds == null || userIds.isEmpty()) {
+                return buildErrorResponse("At least one user ID is required", HttpStatus.BAD_REQUEST);
+            }
+
+            if (userIds.size() > FollowingService.MAX_STATUS_BATCH) {
+                return buildErrorResponse("At most " + FollowingService.MAX_STATUS_BATCH + " user IDs per request",
+                        HttpStatus.BAD_REQUEST);
+            }
+
+            Map<Integer, Boolean> statuses = followingService.getFollowStatuses(followerId, userIds);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("followerId", followerId);
+            response.put("statuses", statuses);
+            response.put("followingCount", statuses.values().stream().filter(Boolean::booleanValue).count());
+            response.put("message", "Follow statuses retrieved successfully");
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            return buildErrorResponse("Invalid input: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while checking follow status",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
         } catch (Exception e) {
             return buildErrorResponse("Error checking follow status: " + e.getMessage(),
                     HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    @GetMapping("/graph/stats")
+    public ResponseEntity<?> getGraphStats() {
+        try {
+            Map<String, Object> response = new HashMap<>(followingService.getGraphStats());
+            response.put("status", "success");
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            return buildErrorResponse("Error fetching follow graph stats: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    @PostMapping("/stats/reconcile")
+    public ResponseEntity<?> reconcileFollowCounts() {
+        try {
+            int repaired = followingService.reconcileFollowCounts();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("rowsRepaired", repaired);
+            response.put("message", "Follow counters reconciled");
+            response.put("status", "success");
+
+            return ResponseEntity.ok(response);
+
+        } catch (DataAccessException e) {
+            return buildErrorResponse("Database error while reconciling follow counters",
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (Exception e) {
+            return buildErrorResponse("Unexpected error: " + e.getMessage(),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private ResponseEntity<?> validatePageRequest(int userId, Integer cursor, int limit) {
+        if (userId < 0 || (cursor != null && cursor < 0)) {
+            return buildErrorResponse("User IDs must be positive numbers", HttpStatus.BAD_REQUEST);
+        }
+        if (limit <= 0 || limit > FollowingService.MAX_PAGE_SIZE) {
+            return buildErrorResponse("Limit must be between 1 and " + FollowingService.MAX_PAGE_SIZE,
+                    HttpStatus.BAD_REQUEST);
+        }
+        return null;
+    }
+
+    private ResponseEntity<?> validateBulkRequest(int followerId, List<Integer> userIds) {
+        if (followerId < 0) {
+            return buildErrorResponse("User IDs must be positive numbers", HttpStatus.BAD_REQUEST);
+        }
+        if (userIds == null || userIds.isEmpty()) {
+            return buildErrorResponse("At least one user ID is required", HttpStatus.BAD_REQUEST);
+        }
+        if (userIds.size() > FollowingService.MAX_BULK_SIZE) {
+            return buildErrorResponse("At most " + FollowingService.MAX_BULK_SIZE + " user IDs per request",
+                    HttpStatus.BAD_REQUEST);
+        }
+        return null;
+    }
+
     private ResponseEntity<Map<String, String>> buildErrorResponse(String message, HttpStatus status) {
         Map<String, String> error = new HashMap<>();
         error.put("error", message);
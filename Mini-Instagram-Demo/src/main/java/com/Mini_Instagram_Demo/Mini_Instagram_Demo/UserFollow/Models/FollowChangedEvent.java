@@ -0,0 +1,9 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models;
+
+import java.util.List;
+
+/**
+ * Published after a follow or unfollow commits, for caches derived from the follow graph.
+ */
+public record FollowChangedEvent(int followerId, List<Integer> followingIds, boolean followed) {
+}
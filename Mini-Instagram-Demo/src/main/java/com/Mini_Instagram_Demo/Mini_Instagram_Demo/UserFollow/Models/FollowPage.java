@@ -0,0 +1,12 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.ManageUsers.Models.UserSummary;
+
+import java.util.List;
+
+/**
+ * One page of a follower or following list, ordered by user id.
+ * {@code nextCursor} is the last id of the page, or null on the last page.
+ */
+public record FollowPage(List<UserSummary> users, Integer nextCursor) {
+}
@@ -8,6 +8,14 @@ public class UserFollowIds implements Serializable {
     private int userId1;
     private int userId2;
 
+    public UserFollowIds() {
+    }
+
+    public UserFollowIds(int userId1, int userId2) {
+        this.userId1 = userId1;
+        this.userId2 = userId2;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
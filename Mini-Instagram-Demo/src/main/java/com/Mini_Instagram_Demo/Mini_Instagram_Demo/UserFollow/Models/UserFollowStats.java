@@ -0,0 +1,42 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * Denormalized follow counts for one user, maintained alongside user_follow
+ * so that count lookups read a single row.
+ */
+@Entity
+public class UserFollowStats {
+
+    @Id
+    private int userId;
+
+    private int followersCount;
+    private int followingCount;
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public int getFollowersCount() {
+        return followersCount;
+    }
+
+    public void setFollowersCount(int followersCount) {
+        this.followersCount = followersCount;
+    }
+
+    public int getFollowingCount() {
+        return followingCount;
+    }
+
+    public void setFollowingCount(int followingCount) {
+        this.followingCount = followingCount;
+    }
+}
@@ -0,0 +1,64 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Set-based writes for bulk follow and unfollow. Each method is a single
+ * statement whatever the number of ids, and joins the caller's transaction.
+ */
+@Repository
+public class UserFollowBulkRepo {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserFollowBulkRepo(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Returns the ids that were actually inserted, pairs that already exist are skipped
+    public List<Integer> insertFollows(int followerId, List<Integer> followingIds) {
+        return jdbcTemplate.queryForList("""
+                insert into user_follow (user_id1, user_id2)
+                select ?, unnest(?::int[])
+                on conflict do nothing
+                returning user_id2
+                """, Integer.class, followerId, toArray(followingIds));
+    }
+
+    // Returns the ids that were actually followed before the delete
+    public List<Integer> deleteFollows(int followerId, List<Integer> followingIds) {
+        return jdbcTemplate.queryForList("""
+                delete from user_follow
+                where user_id1 = ? and user_id2 = any(?::int[])
+                returning user_id2
+                """, Integer.class, followerId, toArray(followingIds));
+    }
+
+    // Adds delta to the followers count of every followed user and delta per user to the
+    // follower's following count. Rows are locked in ascending user id order, so bulk
+    // writes that overlap cannot deadlock
+    public int addFollowDeltas(int followerId, List<Integer> followingIds, int delta) {
+        int followingDelta = delta * followingIds.size();
+        return jdbcTemplate.update("""
+                insert into user_follow_stats (user_id, followers_count, following_count)
+                select user_id, greatest(followers_delta, 0), greatest(following_delta, 0)
+                from (select ?::int as user_id, 0 as followers_delta, ? as following_delta
+                      union all
+                      select unnest(?::int[]), ?, 0) deltas
+                order by user_id
+                on conflict (user_id) do update
+                set followers_count = greatest(user_follow_stats.followers_count
+                        + case when excluded.user_id = ? then 0 else ? end, 0),
+                    following_count = greatest(user_follow_stats.following_count
+                        + case when excluded.user_id = ? then ? else 0 end, 0)
+                """, followerId, followingDelta, toArray(followingIds), delta,
+                followerId, delta, followerId, followingDelta);
+    }
+
+    private static Integer[] toArray(List<Integer> ids) {
+        return ids.toArray(new Integer[0]);
+    }
+}
@@ -1,20 +1,51 @@
 package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Repositories;
 
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models.UserFollow;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models.UserFollowIds;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface UserFollowRepo extends JpaRepository<UserFollow , Integer> {
+public interface UserFollowRepo extends JpaRepository<UserFollow, UserFollowIds> {
     List<UserFollow> findByUserId1(int userId1);
 
     void deleteByUserId2(int userId2);
 
-    void deleteUserFollowByUserId1AndUserId2(int userId1, int userId2);
+    @Modifying
+    @Query("delete from UserFollow f where f.userId1 = :userId1 and f.userId2 = :userId2")
+    int deleteUserFollowByUserId1AndUserId2(@Param("userId1") int userId1, @Param("userId2") int userId2);
+
+    // Returns 0 instead of failing when the pair already exists
+    @Modifying
+    @Query(value = "insert into user_follow (user_id1, user_id2) values (:userId1, :userId2) on conflict do nothing",
+            nativeQuery = true)
+    int insertIfAbsent(@Param("userId1") int userId1, @Param("userId2") int userId2);
 
     List<UserFollow> findByUserId2(int userId2);
 
+    List<UserFollow> findByUserId1In(Collection<Integer> userIds);
+
+    List<UserFollow> findByUserId2In(Collection<Integer> userIds);
+
     List<UserFollow> findAllByUserId1(int userId1);
+
+    @Query("select f.userId2 from UserFollow f where f.userId1 = :userId1 and f.userId2 in :userIds")
+    List<Integer> findFollowedAmong(@Param("userId1") int userId1, @Param("userIds") Collection<Integer> userIds);
+
+    // Keyset pages over the composite key, ordered by the other user's id
+    @Query("select f.userId1 from UserFollow f where f.userId2 = :userId and f.userId1 > :after order by f.userId1")
+    List<Integer> findFollowerIdsAfter(@Param("userId") int userId, @Param("after") int after, Limit limit);
+
+    @Query("select f.userId2 from UserFollow f where f.userId1 = :userId and f.userId2 > :after order by f.userId2")
+    List<Integer> findFollowingIdsAfter(@Param("userId") int userId, @Param("after") int after, Limit limit);
+
+    @Query("select distinct f.userId1 from UserFollow f")
+    List<Integer> findDistinctFollowerIds();
 }
@@ -0,0 +1,51 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Repositories;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models.UserFollowStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UserFollowStatsRepo extends JpaRepository<UserFollowStats, Integer> {
+
+    // Creates the row on first use, otherwise adds the deltas in place
+    @Modifying
+    @Query(value = """
+            insert into user_follow_stats (user_id, followers_count, following_count)
+            values (:userId, greatest(:followersDelta, 0), greatest(:followingDelta, 0))
+            on conflict (user_id) do update
+            set followers_count = greatest(user_follow_stats.followers_count + :followersDelta, 0),
+                following_count = greatest(user_follow_stats.following_count + :followingDelta, 0)
+            """, nativeQuery = true)
+    int addDeltas(@Param("userId") int userId,
+                  @Param("followersDelta") int followersDelta,
+                  @Param("followingDelta") int followingDelta);
+
+    // Recounts user_follow and adds the drift to every row that differs, users no longer in
+    // user_follow included. Counts and rows are read from one snapshot and applied as deltas,
+    // so a follow committing meanwhile keeps its own +1/-1 instead of being overwritten
+    @Modifying
+    @Query(value = """
+            insert into user_follow_stats (user_id, followers_count, following_count)
+            select user_id, followers_drift, following_drift
+            from (select coalesce(c.user_id, s.user_id) as user_id,
+                         coalesce(c.followers, 0) - coalesce(s.followers_count, 0) as followers_drift,
+                         coalesce(c.following, 0) - coalesce(s.following_count, 0) as following_drift
+                  from (select user_id, sum(followers) as followers, sum(following) as following
+                        from (select user_id2 as user_id, count(*) as followers, 0 as following
+                              from user_follow group by user_id2
+                              union all
+                              select user_id1, 0, count(*)
+                              from user_follow group by user_id1) counts
+                        group by user_id) c
+                  full join user_follow_stats s on s.user_id = c.user_id) drift
+            where followers_drift <> 0 or following_drift <> 0
+            order by user_id
+            on conflict (user_id) do update
+            set followers_count = user_follow_stats.followers_count + excluded.followers_count,
+                following_count = user_follow_stats.following_count + excluded.following_count
+            """, nativeQuery = true)
+    int reconcileCounts();
+}
@@ -0,0 +1,223 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filter over (follower, following) pairs. A negative answer means the
+ * pair is definitely not in user_follow, so status checks can skip the lookup.
+ * <p>
+ * Bits cannot be cleared, so unfollowed pairs stay as false positives until
+ * the next rebuild. The filter is rebuilt when removals or growth push the
+ * expected false-positive rate past the configured one.
+ */
+@Component
+public class FollowBloomFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(FollowBloomFilter.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    // Rebuilds also run on their own thread, where @Transactional on this bean would not apply
+    private final TransactionTemplate readOnlyTransaction;
+    private final FollowGraphIndex followGraphIndex;
+
+    private volatile Bits bits;
+    // Receives adds that happen while a rebuild is filling the next filter
+    private volatile Bits building;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final LongAdder negatives = new LongAdder();
+    private final LongAdder positives = new LongAdder();
+
+    @Value("${follow.bloom.enabled:true}")
+    private boolean enabled;
+
+    @Value("${follow.bloom.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${follow.bloom.min-capacity:100000}")
+    private int minCapacity;
+
+    public FollowBloomFilter(DataSource dataSource, PlatformTransactionManager transactionManager,
+                             FollowGraphIndex followGraphIndex,
+                             @Value("${follow.graph.load-fetch-size:10000}") int loadFetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(loadFetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.followGraphIndex = followGraphIndex;
+    }
+
+    public boolean isReady() {
+        return enabled && bits != null;
+    }
+
+    // 🔹 False means definitely not following; true means "maybe", check the index or database
+    public boolean mightContain(int followerId, int followingId) {
+        Bits current = bits;
+        if (!enabled || current == null) return true;
+
+        boolean maybe = current.mightContain(key(followerId, followingId));
+        if (maybe) positives.increment();
+        else negatives.increment();
+        return maybe;
+    }
+
+    public void add(int followerId, int followingId) {
+        if (!enabled) return;
+        long key = key(followerId, followingId);
+        // building before bits: rebuild() publishes bits before clearing building, so an add
+        // that finds building already cleared is sure to see the new filter
+        Bits next = building, current = bits;
+        if (current != null) current.put(key);
+        if (next != null) next.put(key);
+        if (current != null && current.isSaturated()) rebuildAsync();
+    }
+
+    public void remove(int followerId, int followingId) {
+        // Same order as add; a filter being built may already hold the removed edge
+        Bits next = building, current = bits;
+        if (next != null) next.removed.incrementAndGet();
+        if (current == null) return;
+        current.removed.incrementAndGet();
+        if (current.isSaturated()) rebuildAsync();
+    }
+
+    // Runs after the graph index so the filter can be filled from memory
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void loadOnStartup() {
+        if (!enabled) return;
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        Bits next;
+        if (followGraphIndex.isReady()) {
+            next = new Bits(Math.max(minCapacity, 2 * followGraphIndex.edgeCount()), falsePositiveRate);
+            building = next;
+            followGraphIndex.forEachEdge((followerId, followingId) -> next.put(key(followerId, followingId)));
+        } else {
+            // Inside a transaction Postgres streams the rows in fetch-size batches instead of all at once
+            next = readOnlyTransaction.execute(status -> {
+                long edges = jdbcTemplate.queryForObject("select count(*) from user_follow", Long.class);
+                Bits filling = new Bits(Math.max(minCapacity, 2 * edges), falsePositiveRate);
+                building = filling;
+                jdbcTemplate.query("select user_id1, user_id2 from user_follow",
+                        rs -> { filling.put(key(rs.getInt(1), rs.getInt(2))); });
+                return filling;
+            });
+        }
+        bits = next;
+        building = null;
+
+        log.info("Built follow bloom filter for {} edges ({} KB) in {} ms",
+                next.inserted.get(), next.words.length() / 128, System.currentTimeMillis() - start);
+    }
+
+    private void rebuildAsync() {
+        if (!rebuilding.compareAndSet(false, true)) return;
+        Thread.ofVirtual().name("follow-bloom-rebuild").start(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.warn("Follow bloom filter rebuild failed, keeping the current filter", e);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Bits current = bits;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", current != null);
+        stats.put("negatives", negatives.sum());
+        stats.put("positives", positives.sum());
+        if (current != null) {
+            stats.put("sizeInBytes", 8L * current.words.length());
+            stats.put("hashFunctions", current.hashes);
+            stats.put("capacity", current.capacity);
+            stats.put("inserted", current.inserted.get());
+            stats.put("removedSinceBuild", current.removed.get());
+        }
+        return stats;
+    }
+
+    private static long key(int followerId, int followingId) {
+        return ((long) followerId << 32) | (followingId & 0xFFFFFFFFL);
+    }
+
+    // Lock-free bit set sized for a capacity and target false-positive rate
+    private static final class Bits {
+        final AtomicLongArray words;
+        final long bitCount;
+        final int hashes;
+        final long capacity;
+        final AtomicLong inserted = new AtomicLong();
+        final AtomicLong removed = new AtomicLong();
+
+        Bits(long capacity, double falsePositiveRate) {
+            long bitsNeeded = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (bitsNeeded + 63) / 64);
+            this.words = new AtomicLongArray(wordCount);
+            this.bitCount = 64L * wordCount;
+            this.hashes = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+            this.capacity = capacity;
+        }
+
+        void put(long key) {
+            long h1 = mix(key), h2 = mix(h1) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long old;
+                do {
+                    old = words.get(word);
+                    if ((old & mask) != 0) break;
+                } while (!words.compareAndSet(word, old, old | mask));
+            }
+            inserted.incrementAndGet();
+        }
+
+        boolean mightContain(long key) {
+            long h1 = mix(key), h2 = mix(h1) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        // Past capacity the false-positive rate climbs; so do stale bits from unfollows
+        boolean isSaturated() {
+            return inserted.get() > capacity || removed.get() > capacity / 4;
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process copy of the user_follow table as sorted {@code int[]} posting
+ * lists, one map per direction. Lists are copy-on-write, so readers never lock.
+ * <p>
+ * The whole table is read once at startup; afterwards every committed follow
+ * or unfollow is applied as a single insert or removal. Until the first load
+ * finishes {@link #isReady()} is false and callers read the database instead.
+ */
+@Component
+public class FollowGraphIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(FollowGraphIndex.class);
+
+    private static final int[] EMPTY = new int[0];
+    // Rough cost of one map entry: node, boxed key and array header
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+    // One lookup in 1024 is timed, so the clock reads stay off the hot path
+    private static final int LOOKUP_SAMPLE_MASK = 1023;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Map<Integer, int[]> following = new ConcurrentHashMap<>();
+    private volatile Map<Integer, int[]> followers = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    // Changes committed while a load is running, replayed on top of it
+    private final Object loadLock = new Object();
+    private List<int[]> pending;
+
+    private final LongAdder sampledLookups = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+    private volatile long loadMillis;
+
+    @Value("${follow.graph.enabled:true}")
+    private boolean enabled;
+
+    public FollowGraphIndex(DataSource dataSource, @Value("${follow.graph.load-fetch-size:10000}") int loadFetchSize) {
+        // Own template: the fetch size would otherwise leak into every other query
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(loadFetchSize);
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    // 🔹 Users that userId follows, ascending
+    public int[] getFollowing(int userId) {
+        return lookup(following, userId);
+    }
+
+    // 🔹 Users that follow userId, ascending
+    public int[] getFollowers(int userId) {
+        return lookup(followers, userId);
+    }
+
+    public int countFollowing(int userId) {
+        return lookup(following, userId).length;
+    }
+
+    public int countFollowers(int userId) {
+        return lookup(followers, userId).length;
+    }
+
+    public boolean isFollowing(int followerId, int followingId) {
+        return Arrays.binarySearch(lookup(following, followerId), followingId) >= 0;
+    }
+
+    public void addEdge(int followerId, int followingId) {
+        if (!enabled) return;
+        synchronized (loadLock) {
+            if (pending != null) pending.add(new int[]{1, followerId, followingId});
+        }
+        insert(following, followerId, followingId);
+        insert(followers, followingId, followerId);
+    }
+
+    public void removeEdge(int followerId, int followingId) {
+        if (!enabled) return;
+        synchronized (loadLock) {
+            if (pending != null) pending.add(new int[]{0, followerId, followingId});
+        }
+        delete(following, followerId, followingId);
+        delete(followers, followingId, followerId);
+    }
+
+    // Ahead of other startup work such as the news feed backfill, which reads the graph
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional(readOnly = true)
+    public void loadOnStartup() {
+        if (!enabled) return;
+        load();
+    }
+
+    // 🔹 Read every edge once and build both directions; inside a transaction
+    //    Postgres streams the rows in fetch-size batches instead of all at once
+    @Transactional(readOnly = true)
+    public void load() {
+        long start = System.currentTimeMillis();
+        synchronized (loadLock) {
+            pending = new ArrayList<>();
+        }
+
+        Map<Integer, IntList> out = new HashMap<>();
+        Map<Integer, IntList> in = new HashMap<>();
+        jdbcTemplate.query("select user_id1, user_id2 from user_follow", rs -> {
+            int followerId = rs.getInt(1);
+            int followingId = rs.getInt(2);
+            out.computeIfAbsent(followerId, id -> new IntList()).add(followingId);
+            in.computeIfAbsent(followingId, id -> new IntList()).add(followerId);
+        });
+
+        Map<Integer, int[]> loadedFollowing = toPostingLists(out);
+        Map<Integer, int[]> loadedFollowers = toPostingLists(in);
+
+        synchronized (loadLock) {
+            for (int[] change : pending) {
+                if (change[0] == 1) {
+                    insert(loadedFollowing, change[1], change[2]);
+                    insert(loadedFollowers, change[2], change[1]);
+                } else {
+                    delete(loadedFollowing, change[1], change[2]);
+                    delete(loadedFollowers, change[2], change[1]);
+                }
+            }
+            following = loadedFollowing;
+            followers = loadedFollowers;
+            pending = null;
+            ready = true;
+        }
+
+        loadMillis = System.currentTimeMillis() - start;
+        log.info("Loaded follow graph index: {} edges, {} users in {} ms",
+                edgeCount(), loadedFollowing.size() + loadedFollowers.size(), loadMillis);
+    }
+
+    public void forEachEdge(EdgeConsumer consumer) {
+        following.forEach((followerId, list) -> {
+            for (int followingId : list) consumer.accept(followerId, followingId);
+        });
+    }
+
+    @FunctionalInterface
+    public interface EdgeConsumer {
+        void accept(int followerId, int followingId);
+    }
+
+    public long edgeCount() {
+        long edges = 0;
+        for (int[] list : following.values()) edges += list.length;
+        return edges;
+    }
+
+    // Posting lists plus an estimate of the map entries holding them
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Map<Integer, int[]> direction : List.of(following, followers)) {
+            for (int[] list : direction.values()) bytes += ENTRY_OVERHEAD_BYTES + 4L * list.length;
+        }
+        return bytes;
+    }
+
+    public Map<String, Object> stats() {
+        long edges = edgeCount();
+        long bytes = sizeInBytes();
+        long samples = sampledLookups.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("ready", ready);
+        stats.put("edges", edges);
+        stats.put("usersWithFollowing", following.size());
+        stats.put("usersWithFollowers", followers.size());
+        stats.put("sizeInBytes", bytes);
+        stats.put("bytesPerEdge", edges == 0 ? 0 : (double) bytes / edges);
+        stats.put("sampledLookups", samples);
+        stats.put("avgLookupNanos", samples == 0 ? 0 : lookupNanos.sum() / samples);
+        stats.put("loadMillis", loadMillis);
+        return stats;
+    }
+
+    private int[] lookup(Map<Integer, int[]> direction, int userId) {
+        if ((ThreadLocalRandom.current().nextInt() & LOOKUP_SAMPLE_MASK) != 0) {
+            return direction.getOrDefault(userId, EMPTY);
+        }
+        long start = System.nanoTime();
+        int[] list = direction.getOrDefault(userId, EMPTY);
+        lookupNanos.add(System.nanoTime() - start);
+        sampledLookups.increment();
+        return list;
+    }
+
+    private static void insert(Map<Integer, int[]> direction, int key, int value) {
+        direction.compute(key, (id, list) -> {
+            if (list == null) return new int[]{value};
+            int at = Arrays.binarySearch(list, value);
+            if (at >= 0) return list;
+            at = -at - 1;
+            int[] updated = new int[list.length + 1];
+            System.arraycopy(list, 0, updated, 0, at);
+            updated[at] = value;
+            System.arraycopy(list, at, updated, at + 1, list.length - at);
+            return updated;
+        });
+    }
+
+    private static void delete(Map<Integer, int[]> direction, int key, int value) {
+        direction.computeIfPresent(key, (id, list) -> {
+            int at = Arrays.binarySearch(list, value);
+            if (at < 0) return list;
+            if (list.length == 1) return null;
+            int[] updated = new int[list.length - 1];
+            System.arraycopy(list, 0, updated, 0, at);
+            System.arraycopy(list, at + 1, updated, at, list.length - at - 1);
+            return updated;
+        });
+    }
+
+    private static Map<Integer, int[]> toPostingLists(Map<Integer, IntList> lists) {
+        Map<Integer, int[]> postings = new ConcurrentHashMap<>(Math.max(16, lists.size() * 4 / 3));
+        lists.forEach((userId, list) -> {
+            int[] values = Arrays.copyOf(list.values, list.size);
+            Arrays.sort(values);
+            postings.put(userId, values);
+        });
+        return postings;
+    }
+
+    // Growable int array used while loading
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+}
@@ -1,49 +1,371 @@
 package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Services;
 
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.ManageUsers.Services.UserService;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services.TimelineService;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models.FollowChangedEvent;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models.FollowPage;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models.UserFollow;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models.UserFollowIds;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models.UserFollowStats;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Repositories.UserFollowBulkRepo;
 import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Repositories.UserFollowRepo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Repositories.UserFollowStatsRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class FollowingService {
 
+    private static final Logger log = LoggerFactory.getLogger(FollowingService.class);
+
     private final UserFollowRepo userFollowRepo;
+    private final UserFollowStatsRepo userFollowStatsRepo;
+    private final UserFollowBulkRepo userFollowBulkRepo;
+    private final UserService userService;
+    private final TimelineService timelineService;
+    private final FollowGraphIndex followGraphIndex;
+    private final FollowBloomFilter followBloomFilter;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public static final int MAX_STATUS_BATCH = 1000;
+    public static final int MAX_BULK_SIZE = 1000;
+    public static final int MAX_PAGE_SIZE = 100;
 
-    public FollowingService(UserFollowRepo userFollowRepo) {
+    public FollowingService(UserFollowRepo userFollowRepo, UserFollowStatsRepo userFollowStatsRepo,
+                            UserFollowBulkRepo userFollowBulkRepo, UserService userService,
+                            TimelineService timelineService,
+                            FollowGraphIndex followGraphIndex, FollowBloomFilter followBloomFilter,
+                            ApplicationEventPublisher eventPublisher) {
         this.userFollowRepo = userFollowRepo;
+        this.userFollowStatsRepo = userFollowStatsRepo;
+        this.userFollowBulkRepo = userFollowBulkRepo;
+        this.userService = userService;
+        this.timelineService = timelineService;
+        this.followGraphIndex = followGraphIndex;
+        this.followBloomFilter = followBloomFilter;
+        this.eventPublisher = eventPublisher;
     }
 
     // 🔹 عدد الأشخاص الذين يتابعهم المستخدم
     public int getNumberOfFollowing(int userId) {
         if (userId < 0) throw new IllegalArgumentException("Invalid userId");
-        List<UserFollow> following = userFollowRepo.findByUserId1(userId);
-        return following.size();
+        if (followGraphIndex.isReady()) return followGraphIndex.countFollowing(userId);
+        return userFollowStatsRepo.findById(userId)
+                .map(UserFollowStats::getFollowingCount)
+                .orElse(0);
     }
 
     // 🔹 عدد الأشخاص الذين يتابعون المستخدم
     public int getNumberOfFollowers(int userId) {
         if (userId < 0) throw new IllegalArgumentException("Invalid userId");
-        List<UserFollow> followers = userFollowRepo.findByUserId2(userId);
-        return followers.size();
+        if (followGraphIndex.isReady()) return followGraphIndex.countFollowers(userId);
+        return userFollowStatsRepo.findById(userId)
+                .map(UserFollowStats::getFollowersCount)
+                .orElse(0);
+    }
+
+    // 🔹 Ids of the users that userId follows, ascending
+    public int[] getFollowingIds(int userId) {
+        if (userId < 0) throw new IllegalArgumentException("Invalid userId");
+        if (followGraphIndex.isReady()) return followGraphIndex.getFollowing(userId);
+        return userFollowRepo.findByUserId1(userId).stream()
+                .mapToInt(UserFollow::getUserId2)
+                .sorted()
+                .toArray();
+    }
+
+    // 🔹 Ids of the users following userId, ascending
+    public int[] getFollowerIds(int userId) {
+        if (userId < 0) throw new IllegalArgumentException("Invalid userId");
+        if (followGraphIndex.isReady()) return followGraphIndex.getFollowers(userId);
+        return userFollowRepo.findByUserId2(userId).stream()
+                .mapToInt(UserFollow::getUserId1)
+                .sorted()
+                .toArray();
+    }
+
+    // 🔹 getFollowingIds of each user, aligned with userIds; one query when the graph index is not loaded
+    public int[][] getFollowingIds(int[] userIds) {
+        if (followGraphIndex.isReady()) {
+            int[][] lists = new int[userIds.length][];
+            for (int i = 0; i < userIds.length; i++) lists[i] = followGraphIndex.getFollowing(userIds[i]);
+            return lists;
+        }
+        List<UserFollow> rows = userIds.length == 0 ? List.of() : userFollowRepo.findByUserId1In(boxed(userIds));
+        return group(userIds, rows, true);
+    }
+
+    // 🔹 getFollowerIds of each user, aligned with userIds; one query when the graph index is not loaded
+    public int[][] getFollowerIds(int[] userIds) {
+        if (followGraphIndex.isReady()) {
+            int[][] lists = new int[userIds.length][];
+            for (int i = 0; i < userIds.length; i++) lists[i] = followGraphIndex.getFollowers(userIds[i]);
+            return lists;
+        }
+        List<UserFollow> rows = userIds.length == 0 ? List.of() : userFollowRepo.findByUserId2In(boxed(userIds));
+        return group(userIds, rows, false);
+    }
+
+    private static List<Integer> boxed(int[] ids) {
+        return Arrays.stream(ids).distinct().boxed().toList();
+    }
+
+    // Sorted id lists from follow rows, keyed by the follower (byFollower) or by the followed user
+    private static int[][] group(int[] userIds, List<UserFollow> rows, boolean byFollower) {
+        Map<Integer, List<Integer>> grouped = new HashMap<>();
+        for (UserFollow row : rows) {
+            int key = byFollower ? row.getUserId1() : row.getUserId2();
+            int other = byFollower ? row.getUserId2() : row.getUserId1();
+            grouped.computeIfAbsent(key, id -> new ArrayList<>()).add(other);
+        }
+        int[][] lists = new int[userIds.length][];
+        for (int i = 0; i < userIds.length; i++) {
+            lists[i] = grouped.getOrDefault(userIds[i], List.of()).stream()
+                    .mapToInt(Integer::intValue)
+                    .sorted()
+                    .toArray();
+        }
+        return lists;
+    }
+
+    // 🔹 One page of the users following userId, after the cursor id
+    public FollowPage getFollowersPage(int userId, Integer cursor, int limit) {
+        validatePage(userId, cursor, limit);
+        int after = cursor == null ? -1 : cursor;
+        List<Integer> ids = followGraphIndex.isReady()
+                ? slice(followGraphIndex.getFollowers(userId), after, limit)
+                : userFollowRepo.findFollowerIdsAfter(userId, after, Limit.of(limit));
+        return toPage(ids, limit);
+    }
+
+    // 🔹 One page of the users that userId follows, after the cursor id
+    public FollowPage getFollowingPage(int userId, Integer cursor, int limit) {
+        validatePage(userId, cursor, limit);
+        int after = cursor == null ? -1 : cursor;
+        List<Integer> ids = followGraphIndex.isReady()
+                ? slice(followGraphIndex.getFollowing(userId), after, limit)
+                : userFollowRepo.findFollowingIdsAfter(userId, after, Limit.of(limit));
+        return toPage(ids, limit);
+    }
+
+    private static void validatePage(int userId, Integer cursor, int limit) {
+        if (userId < 0) throw new IllegalArgumentException("Invalid userId");
+        if (cursor != null && cursor < 0) throw new IllegalArgumentException("Invalid cursor");
+        if (limit <= 0 || limit > MAX_PAGE_SIZE)
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+    }
+
+    // Ids strictly greater than after, from an ascending posting list
+    private static List<Integer> slice(int[] ids, int after, int limit) {
+        int from = Arrays.binarySearch(ids, after);
+        from = from >= 0 ? from + 1 : -from - 1;
+        int to = Math.min(ids.length, from + limit);
+
+        List<Integer> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) page.add(ids[i]);
+        return page;
     }
 
+    // Users of the whole page are hydrated with a single query
+    private FollowPage toPage(List<Integer> ids, int limit) {
+        Integer nextCursor = ids.size() == limit ? ids.get(ids.size() - 1) : null;
+        return new FollowPage(ids.isEmpty() ? List.of() : userService.getUserSummaries(ids), nextCursor);
+    }
+
+    // 🔹 Bloom filter first, then the in-memory graph, then the primary key
+    public boolean isFollowing(int followerId, int followingId) {
+        if (followerId < 0 || followingId < 0) throw new IllegalArgumentException("Invalid userId");
+        if (!followBloomFilter.mightContain(followerId, followingId)) return false;
+        if (followGraphIndex.isReady()) return followGraphIndex.isFollowing(followerId, followingId);
+        return userFollowRepo.existsById(new UserFollowIds(followerId, followingId));
+    }
+
+    // 🔹 Follow status of one follower towards many users, with at most one query
+    public Map<Integer, Boolean> getFollowStatuses(int followerId, List<Integer> userIds) {
+        if (followerId < 0) throw new IllegalArgumentException("Invalid userId");
+        if (userIds.size() > MAX_STATUS_BATCH)
+            throw new IllegalArgumentException("At most " + MAX_STATUS_BATCH + " user ids per request");
+
+        Map<Integer, Boolean> statuses = new LinkedHashMap<>();
+        Set<Integer> candidates = new HashSet<>();
+        for (Integer userId : userIds) {
+            if (userId == null || userId < 0) throw new IllegalArgumentException("Invalid userId");
+            statuses.put(userId, false);
+            if (followBloomFilter.mightContain(followerId, userId)) candidates.add(userId);
+        }
+        if (candidates.isEmpty()) return statuses;
+
+        if (followGraphIndex.isReady()) {
+            int[] following = followGraphIndex.getFollowing(followerId);
+            for (Integer userId : candidates) {
+                if (Arrays.binarySearch(following, userId) >= 0) statuses.put(userId, true);
+            }
+        } else {
+            for (Integer userId : userFollowRepo.findFollowedAmong(followerId, candidates)) {
+                statuses.put(userId, true);
+            }
+        }
+        return statuses;
+    }
+
+    public Map<String, Object> getGraphStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(followGraphIndex.stats());
+        stats.put("bloomFilter", followBloomFilter.stats());
+        return stats;
+    }
+
+    // 🔹 The follow row and both counters commit together
+    @Transactional
     public void followUser(int followerId , int followingId){
         if(followerId<0 ||followingId<0) throw new IllegalArgumentException();
-        UserFollow userFollow = new UserFollow();
-        userFollow.setUserId1(followerId);
-        userFollow.setUserId2(followingId);
-        userFollowRepo.save(userFollow);
+        if (userFollowRepo.insertIfAbsent(followerId, followingId) == 0) {
+            throw new DataIntegrityViolationException("User " + followerId + " already follows " + followingId);
+        }
+        addFollowDeltas(followerId, followingId, 1);
+        afterCommit(() -> {
+            followGraphIndex.addEdge(followerId, followingId);
+            followBloomFilter.add(followerId, followingId);
+            timelineService.invalidate(followerId);
+            eventPublisher.publishEvent(new FollowChangedEvent(followerId, List.of(followingId), true));
+        });
     }
 
 
+    @Transactional
     public void unfollowUser(int unfollowingId , int userId){
         if(unfollowingId<0) throw new IllegalArgumentException();
-        userFollowRepo.deleteUserFollowByUserId1AndUserId2(userId,unfollowingId);
+        if (userFollowRepo.deleteUserFollowByUserId1AndUserId2(userId,unfollowingId) == 0) {
+            throw new EmptyResultDataAccessException("User " + userId + " does not follow " + unfollowingId, 1);
+        }
+        addFollowDeltas(userId, unfollowingId, -1);
+        afterCommit(() -> {
+            followGraphIndex.removeEdge(userId, unfollowingId);
+            followBloomFilter.remove(userId, unfollowingId);
+            timelineService.invalidate(userId);
+            eventPublisher.publishEvent(new FollowChangedEvent(userId, List.of(unfollowingId), false));
+        });
     }
 
+    // 🔹 Follow many users at once: one insert and one counter statement
+    //    whatever the list size; returns the ids that were newly followed
+    @Transactional
+    public List<Integer> followUsers(int followerId, List<Integer> followingIds) {
+        List<Integer> targets = toBulkTargets(followerId, followingIds);
+        if (targets.isEmpty()) return List.of();
+
+        List<Integer> followed = userFollowBulkRepo.insertFollows(followerId, targets);
+        if (followed.isEmpty()) return followed;
+
+        userFollowBulkRepo.addFollowDeltas(followerId, followed, 1);
+        afterCommit(() -> {
+            for (Integer followingId : followed) {
+                followGraphIndex.addEdge(followerId, followingId);
+                followBloomFilter.add(followerId, followingId);
+            }
+            timelineService.invalidate(followerId);
+            eventPublisher.publishEvent(new FollowChangedEvent(followerId, followed, true));
+        });
+        return followed;
+    }
 
+    // 🔹 Unfollow many users with a single set-based delete; returns the ids that were unfollowed
+    @Transactional
+    public List<Integer> unfollowUsers(int followerId, List<Integer> followingIds) {
+        List<Integer> targets = toBulkTargets(followerId, followingIds);
+        if (targets.isEmpty()) return List.of();
+
+        List<Integer> unfollowed = userFollowBulkRepo.deleteFollows(followerId, targets);
+        if (unfollowed.isEmpty()) return unfollowed;
+
+        userFollowBulkRepo.addFollowDeltas(followerId, unfollowed, -1);
+        afterCommit(() -> {
+            for (Integer followingId : unfollowed) {
+                followGraphIndex.removeEdge(followerId, followingId);
+                followBloomFilter.remove(followerId, followingId);
+            }
+            timelineService.invalidate(followerId);
+            eventPublisher.publishEvent(new FollowChangedEvent(followerId, unfollowed, false));
+        });
+        return unfollowed;
+    }
+
+    // Stats rows are locked in ascending user id order, so A following B while B follows A cannot deadlock
+    private void addFollowDeltas(int followerId, int followingId, int delta) {
+        if (followerId < followingId) {
+            userFollowStatsRepo.addDeltas(followerId, 0, delta);
+            userFollowStatsRepo.addDeltas(followingId, delta, 0);
+        } else {
+            userFollowStatsRepo.addDeltas(followingId, delta, 0);
+            userFollowStatsRepo.addDeltas(followerId, 0, delta);
+        }
+    }
+
+    // Distinct, valid ids other than the follower itself
+    private List<Integer> toBulkTargets(int followerId, List<Integer> followingIds) {
+        if (followerId < 0) throw new IllegalArgumentException("Invalid userId");
+        if (followingIds.size() > MAX_BULK_SIZE)
+            throw new IllegalArgumentException("At most " + MAX_BULK_SIZE + " user ids per request");
+
+        Set<Integer> targets = new LinkedHashSet<>();
+        for (Integer followingId : followingIds) {
+            if (followingId == null || followingId < 0) throw new IllegalArgumentException("Invalid userId");
+            if (followingId != followerId) targets.add(followingId);
+        }
+        return new ArrayList<>(targets);
+    }
+
+    /**
+     * Recounts user_follow and repairs any counter that drifted from it, e.g. rows
+     * written outside this service. Also runs shortly after startup so existing
+     * follows get their counters. Repairs are added as deltas, so follows that
+     * commit while it runs are not lost.
+     *
+     * @return number of counter rows that were corrected
+     */
+    @Scheduled(initialDelayString = "${follow.stats.reconcile-initial-delay-ms:0}",
+            fixedDelayString = "${follow.stats.reconcile-interval-ms:3600000}")
+    @Transactional
+    public int reconcileFollowCounts() {
+        long start = System.nanoTime();
+        int repaired = userFollowStatsRepo.reconcileCounts();
+        log.info("Reconciled follow counters, {} rows repaired in {} ms",
+                repaired, (System.nanoTime() - start) / 1_000_000);
+        return repaired;
+    }
+
+    // The in-memory graph must never show an edge whose transaction rolled back, and a
+    // timeline is only dropped once the graph shows the new edges, so the rebuild that
+    // follows reads the new follow set
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 
 }
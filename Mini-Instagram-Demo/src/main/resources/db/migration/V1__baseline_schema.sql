@@ -0,0 +1,34 @@
+-- Schema previously created by hibernate ddl-auto=update.
+-- IF NOT EXISTS lets existing databases adopt the migrations unchanged.
+
+create table if not exists "user" (
+    user_id       integer generated by default as identity primary key,
+    creation_date timestamp(6),
+    date_of_birth timestamp(6),
+    email         varchar(255),
+    last_login    timestamp(6),
+    name          varchar(255)
+);
+
+create table if not exists photo (
+    photo_id        integer generated by default as identity primary key,
+    creation_date   timestamp(6),
+    photo_latitude  integer not null,
+    photo_longitude integer not null,
+    photo_path      varchar(255),
+    user_id         integer not null,
+    user_latitude   integer not null,
+    user_longitude  integer not null
+);
+
+create table if not exists user_follow (
+    user_id1 integer not null,
+    user_id2 integer not null,
+    primary key (user_id1, user_id2)
+);
+
+create table if not exists user_follow_stats (
+    user_id         integer not null primary key,
+    followers_count integer not null,
+    following_count integer not null
+);
@@ -0,0 +1,13 @@
+-- Indexes for the hot paths of PhotoRepo and UserFollowRepo.
+
+-- Feed reads: every PhotoRepo query filters on user_id and orders by
+-- (creation_date, photo_id) desc. Per-user keyset pages, the windowed
+-- recent-keys query, countByUserIdIn and existsByUserIdIn are all served
+-- from this index without touching the heap.
+create index if not exists idx_photo_user_id_creation_date
+    on photo (user_id, creation_date desc, photo_id desc);
+
+-- "Who follows X": fan-out, follower counts and follower pages.
+-- The primary key (user_id1, user_id2) already serves "who does X follow".
+create index if not exists idx_user_follow_user_id2_user_id1
+    on user_follow (user_id2, user_id1);
@@ -0,0 +1,59 @@
+-- Range-partition photo by creation month so feed reads bounded by a
+-- recent creation_date window only touch recent partitions, and old
+-- months can be detached for archival (see PhotoPartitionService).
+
+alter table photo rename to photo_unpartitioned;
+alter index photo_pkey rename to photo_unpartitioned_pkey;
+alter index idx_photo_user_id_creation_date rename to idx_photo_unpartitioned_user_id_creation_date;
+
+-- Identity columns are not allowed on partitioned tables before Postgres 17,
+-- so ids come from a plain sequence. The primary key has to contain the
+-- partition key; photo_id stays unique because only the sequence assigns it.
+create sequence photo_id_seq as integer;
+
+create table photo (
+    photo_id        integer not null default nextval('photo_id_seq'),
+    creation_date   timestamp(6) not null,
+    photo_latitude  integer not null,
+    photo_longitude integer not null,
+    photo_path      varchar(255),
+    user_id         integer not null,
+    user_latitude   integer not null,
+    user_longitude  integer not null,
+    primary key (photo_id, creation_date)
+) partition by range (creation_date);
+
+alter sequence photo_id_seq owned by photo.photo_id;
+
+create index idx_photo_user_id_creation_date
+    on photo (user_id, creation_date desc, photo_id desc);
+
+-- Catches rows outside every monthly partition instead of failing the insert
+create table photo_default partition of photo default;
+
+-- One partition per month, from the oldest photo (or a year back) to three
+-- months ahead; the maintenance job keeps creating months from there on
+do $$
+declare
+    month date := date_trunc('month', least(
+            coalesce((select min(creation_date) from photo_unpartitioned), now()),
+            now() - interval '12 months'));
+    last_month date := date_trunc('month', now() + interval '3 months');
+begin
+    while month <= last_month loop
+        execute format('create table %I partition of photo for values from (%L) to (%L)',
+                       'photo_p' || to_char(month, 'YYYY_MM'), month, (month + interval '1 month')::date);
+        month := (month + interval '1 month')::date;
+    end loop;
+end $$;
+
+-- Rows saved without a creation date sort as the oldest photos
+insert into photo (photo_id, creation_date, photo_latitude, photo_longitude, photo_path,
+                   user_id, user_latitude, user_longitude)
+select photo_id, coalesce(creation_date, timestamp '1970-01-01'), photo_latitude, photo_longitude, photo_path,
+       user_id, user_latitude, user_longitude
+from photo_unpartitioned;
+
+select setval('photo_id_seq', coalesce((select max(photo_id) from photo), 0) + 1, false);
+
+drop table photo_unpartitioned;
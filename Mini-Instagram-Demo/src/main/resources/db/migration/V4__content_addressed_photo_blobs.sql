@@ -0,0 +1,16 @@
+-- Photo files are stored once per distinct content, keyed by SHA-256.
+-- ref_count is the number of photo rows pointing at the blob; blobs that
+-- drop to zero are removed by PhotoBlobStore's cleanup job.
+create table photo_blob (
+    sha256        varchar(64)   not null primary key,
+    path          varchar(1024) not null,
+    size_bytes    bigint        not null,
+    content_type  varchar(100),
+    ref_count     integer       not null,
+    creation_date timestamp(6)  not null
+);
+
+create index idx_photo_blob_unreferenced on photo_blob (sha256) where ref_count = 0;
+
+-- Null for photos uploaded before content addressing; they keep photo_path
+alter table photo add column content_hash varchar(64);
@@ -0,0 +1,5 @@
+-- Progress of the thumbnail and feed-size variants made after upload
+alter table photo add column derivative_state varchar(16);
+
+-- The pipeline's sweeper only ever looks for pending photos
+create index idx_photo_derivative_pending on photo (photo_id) where derivative_state = 'PENDING';
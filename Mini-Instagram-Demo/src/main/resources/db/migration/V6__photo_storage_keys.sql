@@ -0,0 +1,10 @@
+-- Blobs are addressed by a storage key relative to the configured PhotoStorage
+-- backend (blobs/<sha256>.<ext>) instead of an absolute local path; the local
+-- backend keeps the same sharded layout, so existing files stay where they are.
+alter table photo_blob rename column path to storage_key;
+
+update photo_blob set storage_key = 'blobs/' || substring(storage_key from '[^/\\]+$');
+
+update photo p set photo_path = b.storage_key
+from photo_blob b
+where p.content_hash = b.sha256;
@@ -0,0 +1,16 @@
+-- Resumable uploads: the file is assembled chunk by chunk under
+-- <upload.dir>/.sessions/<session_id>.part; committed_offset is how many
+-- leading bytes are durably written. Sessions idle past the expiry are
+-- removed with their file by UploadSessionService.
+create table upload_session (
+    session_id       varchar(36)  not null primary key,
+    user_id          integer      not null,
+    filename         varchar(255) not null,
+    content_type     varchar(100) not null,
+    size_bytes       bigint       not null,
+    committed_offset bigint       not null,
+    creation_date    timestamp(6) not null,
+    updated_date     timestamp(6) not null
+);
+
+create index idx_upload_session_updated on upload_session (updated_date);
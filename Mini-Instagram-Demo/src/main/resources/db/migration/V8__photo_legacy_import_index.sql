@@ -0,0 +1,3 @@
+-- The legacy importer looks for photos without a content hash on every
+-- startup; once they are imported this index is empty and the check is free
+create index idx_photo_content_hash_missing on photo (photo_id) where content_hash is null;
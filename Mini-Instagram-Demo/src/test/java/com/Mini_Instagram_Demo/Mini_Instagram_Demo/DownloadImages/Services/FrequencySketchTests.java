@@ -0,0 +1,100 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The hot cache's frequency sketch, mostly sized to two counters per row.
+ * Both share one byte, so a carry or a shift across the nibble boundary
+ * shows up in the other counter. Such a sketch halves after 20 additions.
+ */
+class FrequencySketchTests {
+
+    private static HotImageCache.FrequencySketch twoCounterSketch() {
+        return new HotImageCache.FrequencySketch(2);
+    }
+
+    // A key whose counter is the given nibble (0 low, 1 high) of the byte in every row; count-min
+    // takes the lowest row, so only then does a bit leaking into one counter show up in the count
+    private static String keyIn(int nibble) {
+        for (int i = 0; i < 1000; i++) {
+            String key = "key" + i;
+            HotImageCache.FrequencySketch sketch = twoCounterSketch();
+            sketch.increment(key);
+            byte[][] rows = (byte[][]) ReflectionTestUtils.getField(sketch, "rows");
+            if (Arrays.stream(rows).allMatch(row -> row[0] == 1 << (nibble << 2))) return key;
+        }
+        throw new AssertionError("No key found in nibble " + nibble);
+    }
+
+    private static void increment(HotImageCache.FrequencySketch sketch, String key, int times) {
+        for (int i = 0; i < times; i++) sketch.increment(key);
+    }
+
+    @Test
+    void counts() {
+        HotImageCache.FrequencySketch sketch = new HotImageCache.FrequencySketch(1024);
+        increment(sketch, "a", 3);
+        sketch.increment("b");
+        assertEquals(3, sketch.frequency("a"));
+        assertEquals(1, sketch.frequency("b"));
+        assertEquals(0, sketch.frequency("c"));
+    }
+
+    @Test
+    void counterStopsAtFifteenWithoutTouchingItsNeighbour() {
+        String low = keyIn(0), high = keyIn(1);
+        HotImageCache.FrequencySketch sketch = twoCounterSketch();
+
+        increment(sketch, low, 19);
+        assertEquals(15, sketch.frequency(low));
+        assertEquals(0, sketch.frequency(high));
+
+        // A full nibble next door does not get in the way
+        increment(sketch, high, 4);
+        assertEquals(15, sketch.frequency(low));
+        assertEquals(4, sketch.frequency(high));
+    }
+
+    @Test
+    void saturatedIncrementsDoNotCountTowardsHalving() {
+        HotImageCache.FrequencySketch sketch = twoCounterSketch();
+        increment(sketch, "a", 100);
+        assertEquals(15, sketch.frequency("a"));
+    }
+
+    @Test
+    void halvingHalvesBothNibbles() {
+        String low = keyIn(0), high = keyIn(1);
+        HotImageCache.FrequencySketch sketch = twoCounterSketch();
+        increment(sketch, low, 15);
+        increment(sketch, high, 4);
+        assertEquals(4, sketch.frequency(high));
+
+        // The 20th addition halves: 15 -> 7 and 5 -> 2, no bit crosses from one nibble into the other
+        sketch.increment(high);
+        assertEquals(7, sketch.frequency(low));
+        assertEquals(2, sketch.frequency(high));
+
+        // Half the sample is left, so the next halving comes ten additions later
+        increment(sketch, high, 9);
+        assertEquals(11, sketch.frequency(high));
+        sketch.increment(high);
+        assertEquals(3, sketch.frequency(low));
+        assertEquals(6, sketch.frequency(high));
+    }
+
+    @Test
+    void halvingLetsOldPopularityFade() {
+        HotImageCache.FrequencySketch sketch = new HotImageCache.FrequencySketch(1024);
+        increment(sketch, "yesterday", 15);
+        // Sample size is ten additions per counter: 10 240 for 1024 counters
+        for (int i = 0; i < 10_240; i++) sketch.increment("once" + i);
+        assertTrue(sketch.frequency("yesterday") <= 8, "frequency after halving: " + sketch.frequency("yesterday"));
+    }
+}
@@ -0,0 +1,82 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Lookups reach the admission decision through the read buffer, and never
+ * wait for the lock that admission and eviction hold.
+ */
+class HotImageCacheTests {
+
+    private final HotImageCache cache = new HotImageCache(true, 100, 100);
+
+    private static Resource image(int size) {
+        return new ByteArrayResource(new byte[size]) {
+            @Override
+            public String getFilename() {
+                return "photo.jpg";
+            }
+        };
+    }
+
+    @Test
+    void bufferedLookupsDecideAdmission() {
+        assertInstanceOf(HotImageCache.CachedImage.class, cache.admit("a", image(60)));
+
+        // b was asked for and a never was, so b displaces a
+        for (int i = 0; i < 3; i++) assertNull(cache.get("b"));
+        assertInstanceOf(HotImageCache.CachedImage.class, cache.admit("b", image(60)));
+        // c was never asked for, so it cannot displace b
+        Resource c = image(60);
+        assertSame(c, cache.admit("c", c));
+
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        assertEquals(1L, cache.getMetrics().get("evictions"));
+        assertEquals(1L, cache.getMetrics().get("rejections"));
+        assertEquals(1L, cache.getMetrics().get("hits"));
+    }
+
+    @Test
+    void lookupsDoNotWaitForTheLock() throws InterruptedException {
+        cache.admit("a", image(60));
+        ReentrantLock lock = (ReentrantLock) ReflectionTestUtils.getField(cache, "lock");
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread holder = Thread.ofPlatform().start(() -> {
+            lock.lock();
+            try {
+                locked.countDown();
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        });
+        locked.await();
+        try {
+            // Enough lookups to fill the buffer several times over
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                for (int i = 0; i < 1000; i++) assertNotNull(cache.get("a"));
+            });
+        } finally {
+            done.countDown();
+            holder.join();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.ImageFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Eviction from the render cache. The source is narrower than every width
+ * asked for, so all renders come out identical in size and the budget can
+ * be set in whole renders.
+ */
+class ImageResizerTests {
+
+    private static final String SHA = "8aeac803";
+
+    @TempDir
+    private Path uploadDir;
+
+    private ImageResizer resizer;
+    private Resource source;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        resizer = newResizer(0);
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(16, 8, BufferedImage.TYPE_INT_RGB), "png", png);
+        source = new ByteArrayResource(png.toByteArray());
+    }
+
+    // Property defaults, except no budget until a test sets one and the given grace
+    private ImageResizer newResizer(long evictionGraceMillis) {
+        ImageResizer resizer = new ImageResizer(uploadDir.toString(), 2);
+        ReflectionTestUtils.setField(resizer, "widthStep", 32);
+        ReflectionTestUtils.setField(resizer, "maxWidth", 4096);
+        ReflectionTestUtils.setField(resizer, "quality", 0.85f);
+        ReflectionTestUtils.setField(resizer, "maxPixels", 50_000_000L);
+        ReflectionTestUtils.setField(resizer, "cacheMaxBytes", Long.MAX_VALUE);
+        ReflectionTestUtils.setField(resizer, "evictionGraceMillis", evictionGraceMillis);
+        return resizer;
+    }
+
+    private Path resize(int width) throws IOException {
+        return resizer.resize(SHA, source, width, ImageFormat.PNG);
+    }
+
+    private void budget(long renders, long renderBytes) {
+        ReflectionTestUtils.setField(resizer, "cacheMaxBytes", renders * renderBytes);
+    }
+
+    @Test
+    void renderIsCachedOnDisk() throws IOException {
+        Path first = resize(32);
+        assertEquals(first, resize(32));
+        assertEquals(1L, resizer.getMetrics().get("renders"));
+        assertEquals(1L, resizer.getMetrics().get("hits"));
+        assertEquals(Files.size(first), resizer.getMetrics().get("cachedBytes"));
+    }
+
+    @Test
+    void leastRecentlyUsedRenderIsEvictedOverBudget() throws IOException {
+        Path w32 = resize(32);
+        budget(2, Files.size(w32));
+        Path w64 = resize(64);
+        // Asked for again, so w64 is now the least recently used
+        resize(32);
+
+        Path w96 = resize(96);
+
+        assertTrue(Files.exists(w32));
+        assertFalse(Files.exists(w64));
+        assertTrue(Files.exists(w96));
+        assertEquals(1L, resizer.getMetrics().get("evictions"));
+        assertEquals(2 * Files.size(w32), resizer.getMetrics().get("cachedBytes"));
+    }
+
+    @Test
+    void newestRenderIsKeptEvenAboveBudget() throws IOException {
+        budget(0, 0);
+        Path w32 = resize(32);
+        assertTrue(Files.exists(w32));
+
+        Path w64 = resize(64);
+        assertFalse(Files.exists(w32));
+        assertTrue(Files.exists(w64));
+        assertEquals(1, resizer.getMetrics().get("cachedFiles"));
+    }
+
+    // A path handed out a moment ago may not have been opened by sendfile yet
+    @Test
+    void renderHandedOutWithinGraceIsNotEvicted() throws IOException {
+        ReflectionTestUtils.setField(resizer, "evictionGraceMillis", 60_000L);
+        budget(0, 0);
+        Path w32 = resize(32);
+        Path w64 = resize(64);
+
+        assertTrue(Files.exists(w32));
+        assertTrue(Files.exists(w64));
+        assertEquals(0L, resizer.getMetrics().get("evictions"));
+        assertEquals(1L, resizer.getMetrics().get("deferredEvictions"));
+    }
+
+    @Test
+    void renderFromPreviousRunIsEvictableAtOnce() throws IOException {
+        Path old = resize(32);
+
+        // Handed out by the previous run, which is gone
+        ImageResizer restarted = newResizer(60_000);
+        ReflectionTestUtils.setField(restarted, "cacheMaxBytes", Files.size(old));
+        restarted.loadIndex();
+        Path fresh = restarted.resize(SHA, source, 64, ImageFormat.PNG);
+
+        assertFalse(Files.exists(old));
+        assertTrue(Files.exists(fresh));
+    }
+
+    @Test
+    void deletedRenderIsRenderedAgain() throws IOException {
+        Path w32 = resize(32);
+        Files.delete(w32);
+        assertEquals(w32, resize(32));
+        assertTrue(Files.exists(w32));
+        assertEquals(2L, resizer.getMetrics().get("renders"));
+        assertEquals(Files.size(w32), resizer.getMetrics().get("cachedBytes"));
+    }
+}
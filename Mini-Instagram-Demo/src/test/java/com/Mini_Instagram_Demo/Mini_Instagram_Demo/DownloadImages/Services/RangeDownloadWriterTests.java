@@ -0,0 +1,196 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Models.CacheHeaders;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Range, If-Range and 416 handling, on in-memory files unless the test is
+ * about the sendfile hand-off.
+ */
+class RangeDownloadWriterTests {
+
+    private static final byte[] BODY = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+    private static final String ETAG = "\"abc123\"";
+    // Whole seconds, as an HTTP date carries them
+    private static final long LAST_MODIFIED = 1_700_000_000_000L;
+
+    private final RangeDownloadWriter writer = new RangeDownloadWriter();
+
+    private MockHttpServletResponse get(Resource resource, String range, String ifRange) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/download/image/1");
+        if (range != null) request.addHeader(HttpHeaders.RANGE, range);
+        if (ifRange != null) request.addHeader(HttpHeaders.IF_RANGE, ifRange);
+        return write(resource, request);
+    }
+
+    private MockHttpServletResponse write(Resource resource, MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        writer.write(resource, "image/png", "inline", new CacheHeaders(ETAG, LAST_MODIFIED, "max-age=60"),
+                request, response);
+        return response;
+    }
+
+    private MockHttpServletResponse get(String range, String ifRange) throws IOException {
+        return get(new ByteArrayResource(BODY), range, ifRange);
+    }
+
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+
+    private static void assertFull(MockHttpServletResponse response) {
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(BODY.length, response.getContentLengthLong());
+        assertArrayEquals(BODY, response.getContentAsByteArray());
+    }
+
+    private static void assertPartial(MockHttpServletResponse response, int start, int end) {
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes " + start + "-" + end + "/" + BODY.length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(end - start + 1, response.getContentLengthLong());
+        assertArrayEquals(Arrays.copyOfRange(BODY, start, end + 1), response.getContentAsByteArray());
+    }
+
+    @Test
+    void noRangeSendsWholeFile() throws IOException {
+        MockHttpServletResponse response = get(null, null);
+        assertFull(response);
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+        assertEquals("max-age=60", response.getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    void singleRange() throws IOException {
+        assertPartial(get("bytes=2-5", null), 2, 5);
+    }
+
+    @Test
+    void openEndedRangeRunsToTheEnd() throws IOException {
+        assertPartial(get("bytes=15-", null), 15, 19);
+    }
+
+    @Test
+    void endPastTheLengthIsCut() throws IOException {
+        assertPartial(get("bytes=15-100", null), 15, 19);
+    }
+
+    @Test
+    void suffixRange() throws IOException {
+        assertPartial(get("bytes=-4", null), 16, 19);
+    }
+
+    @Test
+    void suffixLongerThanFileSendsAllOfIt() throws IOException {
+        assertPartial(get("bytes=-100", null), 0, 19);
+    }
+
+    @Test
+    void multipleRangesFallBackToWholeFile() throws IOException {
+        assertFull(get("bytes=0-1,4-5", null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"bytes=5-2", "bytes=x-y", "items=0-1"})
+    void malformedRangeFallsBackToWholeFile(String range) throws IOException {
+        assertFull(get(range, null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"bytes=20-", "bytes=20-30", "bytes=100-", "bytes=-0"})
+    void rangeStartingAtOrPastTheLengthIsUnsatisfiable(String range) throws IOException {
+        MockHttpServletResponse response = get(range, null);
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */" + BODY.length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void ifRangeWithCurrentEtagSendsRange() throws IOException {
+        assertPartial(get("bytes=2-5", ETAG), 2, 5);
+    }
+
+    // The file changed since the client got the first part: it has to start over
+    @Test
+    void staleIfRangeEtagSendsWholeFile() throws IOException {
+        assertFull(get("bytes=2-5", "\"old\""));
+    }
+
+    @Test
+    void weakIfRangeEtagSendsWholeFile() throws IOException {
+        assertFull(get("bytes=2-5", "W/" + ETAG));
+    }
+
+    @Test
+    void ifRangeWithCurrentDateSendsRange() throws IOException {
+        assertPartial(get("bytes=2-5", httpDate(LAST_MODIFIED)), 2, 5);
+    }
+
+    @Test
+    void staleIfRangeDateSendsWholeFile() throws IOException {
+        assertFull(get("bytes=2-5", httpDate(LAST_MODIFIED - 1000)));
+    }
+
+    @Test
+    void malformedIfRangeSendsWholeFile() throws IOException {
+        assertFull(get("bytes=2-5", "yesterday"));
+    }
+
+    @Test
+    void headSendsHeadersOnly() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("HEAD", "/api/download/image/1");
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        MockHttpServletResponse response = write(new ByteArrayResource(BODY), request);
+        assertEquals(206, response.getStatus());
+        assertEquals(4, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void localFileRangeIsReadThroughDirectBuffer(@TempDir Path dir) throws IOException {
+        Path file = Files.write(dir.resolve("photo.png"), BODY);
+        assertPartial(get(new FileSystemResource(file), "bytes=-4", null), 16, 19);
+    }
+
+    @Test
+    void largeLocalFileRangeIsLeftToSendfile(@TempDir Path dir) throws IOException {
+        ReflectionTestUtils.setField(writer, "sendfileMinBytes", 4L);
+        Path file = Files.write(dir.resolve("photo.png"), BODY);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/download/image/1");
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-9");
+        request.setAttribute("org.apache.tomcat.sendfile.support", true);
+
+        MockHttpServletResponse response = write(new FileSystemResource(file), request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(2L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        // Tomcat's end is exclusive
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+}
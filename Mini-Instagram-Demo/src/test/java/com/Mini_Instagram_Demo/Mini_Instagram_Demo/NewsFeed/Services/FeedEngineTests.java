@@ -0,0 +1,152 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Inputs.FeedCursor;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The in-memory merge against a brute-force sort of the same photos, over
+ * random followee sets, cursors and limits, with some indexes truncated.
+ */
+class FeedEngineTests {
+
+    private static final int CAPACITY = 10;
+
+    private final List<Photo> photos = new ArrayList<>();
+    private final PhotoRepo photoRepo = mock(PhotoRepo.class);
+    private Runnable duringLoad = () -> {
+    };
+
+    private FeedEngine newEngine() {
+        FeedWindow feedWindow = mock(FeedWindow.class);
+        when(feedWindow.since()).thenReturn(new Date(0));
+        when(photoRepo.findRecentPhotoKeysByUserIdIn(anyList(), any(), anyInt())).thenAnswer(call -> {
+            List<Integer> userIds = call.getArgument(0);
+            int perUser = call.getArgument(2);
+            List<Object[]> rows = new ArrayList<>();
+            for (Integer userId : userIds) {
+                photos.stream()
+                        .filter(photo -> photo.getUserId() == userId)
+                        .sorted(NEWEST_FIRST)
+                        .limit(perUser)
+                        .forEach(photo -> rows.add(new Object[]{userId, photo.getPhotoId(), photo.getCreationDate()}));
+            }
+            duringLoad.run();
+            return rows;
+        });
+
+        FeedEngine engine = new FeedEngine(photoRepo, feedWindow);
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "perUserCapacity", CAPACITY);
+        ReflectionTestUtils.setField(engine, "maxUsers", 1000);
+        return engine;
+    }
+
+    private static final Comparator<Photo> NEWEST_FIRST = Comparator
+            .comparingLong((Photo photo) -> photo.getCreationDate().getTime())
+            .thenComparingInt(Photo::getPhotoId)
+            .reversed();
+
+    private Photo addPhoto(int photoId, int userId, long millis) {
+        Photo photo = new Photo();
+        photo.setPhotoId(photoId);
+        photo.setUserId(userId);
+        photo.setCreationDate(new Date(millis));
+        photos.add(photo);
+        return photo;
+    }
+
+    // Everything the followees posted, strictly after the cursor
+    private List<Integer> bruteForce(List<Integer> userIds, FeedCursor cursor) {
+        return photos.stream()
+                .filter(photo -> userIds.contains(photo.getUserId()))
+                .filter(photo -> cursor == null
+                        || cursor.isAfter(photo.getCreationDate().getTime(), photo.getPhotoId()))
+                .sorted(NEWEST_FIRST)
+                .map(Photo::getPhotoId)
+                .toList();
+    }
+
+    @Test
+    void mergeMatchesBruteForceSort() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            photos.clear();
+            FeedEngine engine = newEngine();
+            int users = 1 + random.nextInt(8);
+            int photoId = 1;
+            for (int userId = 1; userId <= users; userId++) {
+                int count = random.nextInt(2 * CAPACITY + 1);
+                // Few distinct timestamps, so ties on the creation date are common
+                for (int i = 0; i < count; i++) addPhoto(photoId++, userId, 1000 + random.nextInt(40));
+            }
+            List<Integer> followees = new ArrayList<>();
+            for (int userId = 1; userId <= users; userId++) {
+                if (random.nextInt(4) > 0) followees.add(userId);
+            }
+            List<Integer> all = bruteForce(followees, null);
+
+            for (int page = 0; page < 5; page++) {
+                FeedCursor cursor = null;
+                if (!all.isEmpty() && random.nextBoolean()) {
+                    Photo at = photos.get(all.get(random.nextInt(all.size())) - 1);
+                    cursor = FeedCursor.of(at);
+                }
+                int limit = 1 + random.nextInt(15);
+                List<Integer> expected = bruteForce(followees, cursor);
+
+                FeedEngine.MergeResult result = engine.merge(followees, cursor, limit);
+                List<Integer> merged = result.photoIds();
+                String context = "round " + round + ", cursor " + cursor + ", limit " + limit;
+                assertEquals(expected.subList(0, merged.size()), merged, context);
+                if (result.complete()) {
+                    assertEquals(Math.min(limit, expected.size()), merged.size(), context);
+                } else {
+                    assertTrue(merged.size() < limit, context);
+                }
+            }
+        }
+    }
+
+    @Test
+    void uploadDuringLoadIsNotLost() {
+        FeedEngine engine = newEngine();
+        addPhoto(1, 7, 1000);
+        // The upload commits and patches the engine after the load read the database
+        duringLoad = () -> {
+            duringLoad = () -> {
+            };
+            engine.onUpload(addPhoto(2, 7, 2000));
+        };
+
+        engine.merge(List.of(7), null, 10);
+        assertEquals(List.of(2, 1), engine.merge(List.of(7), null, 10).photoIds());
+    }
+
+    @Test
+    void uploadAlreadyLoadedIsNotIndexedTwice() {
+        FeedEngine engine = newEngine();
+        addPhoto(1, 7, 1000);
+        Photo late = addPhoto(2, 7, 2000);
+        engine.merge(List.of(7), null, 10);
+
+        engine.onUpload(late);
+        assertEquals(List.of(2, 1), engine.merge(List.of(7), null, 10).photoIds());
+    }
+}
@@ -0,0 +1,77 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Inputs.FeedCursor;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Models.FeedPage;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.Photo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoRepo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Repositories.UserFollowRepo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Services.FollowingService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A feed page's photo rows are read batch by batch while the response is
+ * written, not before it starts.
+ */
+class NewsFeedServiceTests {
+
+    private final PhotoRepo photoRepo = mock(PhotoRepo.class);
+    private final NewsFeedService newsFeedService = new NewsFeedService(mock(UserFollowRepo.class), photoRepo,
+            new TimelineService(), mock(FollowingService.class), mock(FeedEngine.class), new NewsFeedMetrics(),
+            mock(FeedWindow.class));
+
+    private static FeedPage pageOf(int photoCount) {
+        List<FeedCursor> entries = new ArrayList<>();
+        for (int i = photoCount; i >= 1; i--) entries.add(new FeedCursor(1000L * i, i));
+        return new FeedPage(entries, null);
+    }
+
+    @Test
+    void photosAreLoadedOneBatchAtATimeInFeedOrder() {
+        when(photoRepo.findAllById(anyList())).thenAnswer(call -> {
+            List<Integer> ids = new ArrayList<>(call.getArgument(0));
+            // The database returns rows in any order
+            ids.sort(null);
+            List<Photo> rows = new ArrayList<>();
+            for (Integer id : ids) {
+                Photo photo = new Photo();
+                photo.setPhotoId(id);
+                rows.add(photo);
+            }
+            return rows;
+        });
+
+        Iterator<List<Photo>> batches = newsFeedService.loadPhotos(pageOf(45));
+        verify(photoRepo, never()).findAllById(anyList());
+
+        List<Integer> loaded = new ArrayList<>();
+        List<Integer> batchSizes = new ArrayList<>();
+        while (batches.hasNext()) {
+            List<Photo> batch = batches.next();
+            batchSizes.add(batch.size());
+            batch.forEach(photo -> loaded.add(photo.getPhotoId()));
+        }
+
+        assertEquals(List.of(20, 20, 5), batchSizes);
+        assertEquals(pageOf(45).photoIds(), loaded);
+        verify(photoRepo, times(3)).findAllById(anyList());
+    }
+
+    @Test
+    void emptyPageReadsNothing() {
+        assertFalse(newsFeedService.loadPhotos(pageOf(0)).hasNext());
+        verify(photoRepo, never()).findAllById(anyList());
+    }
+}
@@ -0,0 +1,79 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Inputs.FeedCursor;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Models.Timeline;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * A rebuild stores its timeline only if nothing was pushed to or invalidated
+ * for the follower while it was reading the database.
+ */
+class TimelineServiceTests {
+
+    private final TimelineService timelineService = new TimelineService();
+
+    // What a rebuild that read photo 1 produces
+    private static Timeline rebuilt() {
+        Timeline timeline = new Timeline(10, List.of());
+        timeline.push(1, 1000);
+        return timeline;
+    }
+
+    @Test
+    void rebuildWithoutChangesIsKept() {
+        int stamp = timelineService.stamp(7);
+        Timeline timeline = rebuilt();
+        timelineService.putTimeline(7, timeline, stamp);
+        assertSame(timeline, timelineService.getTimeline(7));
+    }
+
+    @Test
+    void pushDuringRebuildIsNotLost() {
+        int stamp = timelineService.stamp(7);
+        // Photo 2 commits after the rebuild's query: there is no timeline to push into yet
+        timelineService.push(7, 2, 2000);
+        timelineService.putTimeline(7, rebuilt(), stamp);
+        assertNull(timelineService.getTimeline(7));
+    }
+
+    @Test
+    void invalidationDuringRebuildIsNotLost() {
+        int stamp = timelineService.stamp(7);
+        timelineService.invalidate(7);
+        timelineService.putTimeline(7, rebuilt(), stamp);
+        assertNull(timelineService.getTimeline(7));
+    }
+
+    @Test
+    void pushAfterInstallReachesTimeline() {
+        int stamp = timelineService.stamp(7);
+        timelineService.putTimeline(7, rebuilt(), stamp);
+        timelineService.push(7, 2, 2000);
+        assertEquals(List.of(new FeedCursor(2000, 2), new FeedCursor(1000, 1)),
+                timelineService.getTimeline(7).getEntries(null, 0, 10));
+    }
+
+    @Test
+    void photoReadByRebuildIsNotPushedTwice() {
+        Timeline timeline = rebuilt();
+        timeline.push(1, 1000);
+        assertEquals(List.of(new FeedCursor(1000, 1)), timeline.getEntries(null, 0, 10));
+        assertEquals(1, timeline.size());
+    }
+
+    @Test
+    void entriesOlderThanWindowAreNeitherReadNorCounted() {
+        Timeline timeline = rebuilt();
+        timeline.push(2, 2000);
+        timeline.push(3, 3000);
+        assertEquals(List.of(new FeedCursor(3000, 3), new FeedCursor(2000, 2)),
+                timeline.getEntries(null, 2000, 10));
+        assertEquals(2, timeline.countSince(2000));
+    }
+}
@@ -0,0 +1,95 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.Suggestions.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Models.FollowChangedEvent;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Services.FollowingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Suggestions are cached only if no follow change reached the user while
+ * they were computed, and the cache drops its least recently used entry.
+ */
+class SuggestionServiceTests {
+
+    private final FollowingService followingService = mock(FollowingService.class);
+    private final SuggestionService suggestionService = newService(2);
+
+    private SuggestionService newService(int cacheMaxUsers) {
+        when(followingService.getFollowingIds(anyInt())).thenReturn(new int[0]);
+        when(followingService.getFollowerIds(anyInt())).thenReturn(new int[0]);
+        SuggestionService service = new SuggestionService(followingService, 1);
+        ReflectionTestUtils.setField(service, "latencyBudgetMs", 1000L);
+        ReflectionTestUtils.setField(service, "sampleSize", 1000);
+        ReflectionTestUtils.setField(service, "maxCandidates", 2000);
+        ReflectionTestUtils.setField(service, "cacheTtlSeconds", 300L);
+        ReflectionTestUtils.setField(service, "cacheMaxUsers", cacheMaxUsers);
+        return service;
+    }
+
+    @AfterEach
+    void shutdown() {
+        suggestionService.shutdown();
+    }
+
+    @Test
+    void followChangeDuringComputationIsNotLost() {
+        // User 7 follows someone while their suggestions are being computed
+        when(followingService.getFollowingIds(7)).thenAnswer(call -> {
+            suggestionService.onFollowChanged(new FollowChangedEvent(7, List.of(8), true));
+            return new int[0];
+        });
+        suggestionService.getSuggestions(7, 10);
+
+        doReturn(new int[0]).when(followingService).getFollowingIds(7);
+        suggestionService.getSuggestions(7, 10);
+        verify(followingService, times(2)).getFollowingIds(7);
+    }
+
+    @Test
+    void followChangeOfFolloweeDropsCachedSuggestions() {
+        when(followingService.getFollowerIds(9)).thenReturn(new int[]{7});
+        suggestionService.getSuggestions(7, 10);
+        suggestionService.onFollowChanged(new FollowChangedEvent(9, List.of(3), true));
+        suggestionService.getSuggestions(7, 10);
+        verify(followingService, times(2)).getFollowingIds(7);
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        suggestionService.getSuggestions(1, 10);
+        suggestionService.getSuggestions(2, 10);
+        // 1 is now more recently used than 2
+        suggestionService.getSuggestions(1, 10);
+        suggestionService.getSuggestions(3, 10);
+
+        suggestionService.getSuggestions(1, 10);
+        verify(followingService, times(1)).getFollowingIds(1);
+        suggestionService.getSuggestions(2, 10);
+        verify(followingService, times(2)).getFollowingIds(2);
+        assertEquals(2, suggestionService.getMetrics().get("cachedUsers"));
+    }
+
+    @Test
+    void followListsAreReadInOneBatch() {
+        when(followingService.getFollowingIds(7)).thenReturn(new int[]{1, 2, 3});
+        when(followingService.getFollowingIds(any(int[].class)))
+                .thenReturn(new int[][]{{4, 5}, {4}, {5, 6}});
+
+        assertEquals(3, suggestionService.getSuggestions(7, 10).suggestions().size());
+        verify(followingService, times(1)).getFollowingIds(any(int[].class));
+        verify(followingService, never()).getFollowingIds(1);
+    }
+}
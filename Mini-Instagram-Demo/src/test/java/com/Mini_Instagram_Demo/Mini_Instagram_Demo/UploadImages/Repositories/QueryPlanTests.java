@@ -0,0 +1,181 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the migrations on a seeded Postgres and fails when a hot query of
+ * PhotoRepo or UserFollowRepo is planned as a sequential scan, or when a
+ * feed query reads photo partitions older than the feed window.
+ * JPQL queries are written here as the SQL Hibernate generates for them.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class QueryPlanTests {
+
+    private static final String USERS = "(11, 42, 97, 150, 733, 1024, 4096, 7001, 9999, 15000)";
+
+    // Same bound as FeedWindow with the default 12 months
+    private static final String SINCE = "timestamp '" + LocalDate.now().withDayOfMonth(1).minusMonths(12) + "'";
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on (\\w+)");
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static Connection connection;
+
+    @BeforeAll
+    static void migrateAndSeed() throws SQLException {
+        Flyway.configure()
+                .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                .load()
+                .migrate();
+
+        connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        try (Statement statement = connection.createStatement()) {
+            // 20k users, 10 recent photos each, every user follows 10 others
+            statement.execute("""
+                    insert into photo (user_id, creation_date, photo_path,
+                                       photo_latitude, photo_longitude, user_latitude, user_longitude)
+                    select u, localtimestamp - (u * 10 + n) * interval '1 minute', 'p', 0, 0, 0, 0
+                    from generate_series(1, 20000) u, generate_series(1, 10) n
+                    """);
+            // Two years of older photos in a partition below the monthly ones, outside the feed window
+            statement.execute("create table photo_archive partition of photo"
+                    + " for values from ('2000-01-01') to (" + SINCE + ")");
+            statement.execute("""
+                    insert into photo (user_id, creation_date, photo_path,
+                                       photo_latitude, photo_longitude, user_latitude, user_longitude)
+                    select u, localtimestamp - interval '13 months' - (u * 10 + n) * interval '5 minutes', 'p', 0, 0, 0, 0
+                    from generate_series(1, 20000) u, generate_series(1, 10) n
+                    """);
+            statement.execute("""
+                    insert into user_follow (user_id1, user_id2)
+                    select u, 1 + (u * 7919 + n * 104729) % 20000
+                    from generate_series(1, 20000) u, generate_series(1, 10) n
+                    on conflict do nothing
+                    """);
+            // Every photo went through the legacy import already
+            statement.execute("update photo set content_hash = md5(photo_id::text)");
+            statement.execute("analyze");
+        }
+    }
+
+    @AfterAll
+    static void close() throws SQLException {
+        if (connection != null) connection.close();
+    }
+
+    // Feed reads, all bounded below by the feed window
+    static Stream<Arguments> feedQueries() {
+        return Stream.of(
+                Arguments.of("PhotoRepo.findFeedKeys",
+                        "select photo_id, creation_date from photo where user_id in " + USERS + " and creation_date >= " + SINCE
+                                + " order by creation_date desc, photo_id desc limit 100"),
+                Arguments.of("PhotoRepo.findFeedKeysBefore",
+                        "select photo_id, creation_date from photo where user_id in " + USERS + " and creation_date >= " + SINCE
+                                + " and (creation_date < localtimestamp - interval '30 days'"
+                                + " or (creation_date = localtimestamp - interval '30 days' and photo_id < 5000))"
+                                + " order by creation_date desc, photo_id desc limit 100"),
+                Arguments.of("PhotoRepo.findRecentPhotoKeysByUserIdIn",
+                        "select user_id, photo_id, creation_date from ("
+                                + " select p.user_id, p.photo_id, p.creation_date,"
+                                + " row_number() over (partition by p.user_id order by p.creation_date desc, p.photo_id desc) as rn"
+                                + " from photo p where p.user_id in " + USERS + " and p.creation_date >= " + SINCE + ") ranked"
+                                + " where rn <= 200 order by user_id, creation_date desc, photo_id desc"),
+                Arguments.of("PhotoRepo.countByUserIdInSince",
+                        "select count(*) from photo where user_id in " + USERS + " and creation_date >= " + SINCE),
+                Arguments.of("PhotoRepo.findPhotoIdsByUserIdInSince",
+                        "select photo_id from photo where user_id in " + USERS + " and creation_date >= " + SINCE
+                                + " fetch first 1 rows only")
+        );
+    }
+
+    static Stream<Arguments> hotQueries() {
+        return Stream.concat(feedQueries(), Stream.of(
+                Arguments.of("PhotoRepo.findAllByUserId",
+                        "select * from photo where user_id = 42"),
+                Arguments.of("PhotoRepo.findAllByUserIdIn",
+                        "select * from photo where user_id in " + USERS),
+                Arguments.of("PhotoRepo.findWithoutContentHashAfter",
+                        "select * from photo where content_hash is null and photo_id > 0"
+                                + " order by photo_id fetch first 500 rows only"),
+                Arguments.of("UserFollowRepo.findByUserId1",
+                        "select * from user_follow where user_id1 = 42"),
+                Arguments.of("UserFollowRepo.findByUserId2",
+                        "select * from user_follow where user_id2 = 42"),
+                Arguments.of("UserFollowRepo.findByUserId1In",
+                        "select * from user_follow where user_id1 in " + USERS),
+                Arguments.of("UserFollowRepo.findByUserId2In",
+                        "select * from user_follow where user_id2 in " + USERS),
+                Arguments.of("UserFollowRepo.existsById",
+                        "select 1 from user_follow where user_id1 = 42 and user_id2 = 97 fetch first 1 rows only"),
+                Arguments.of("UserFollowRepo.findFollowedAmong",
+                        "select user_id2 from user_follow where user_id1 = 42 and user_id2 in " + USERS),
+                Arguments.of("UserFollowRepo.findFollowerIdsAfter",
+                        "select user_id1 from user_follow where user_id2 = 42 and user_id1 > 100"
+                                + " order by user_id1 fetch first 50 rows only"),
+                Arguments.of("UserFollowRepo.findFollowingIdsAfter",
+                        "select user_id2 from user_follow where user_id1 = 42 and user_id2 > 100"
+                                + " order by user_id2 fetch first 50 rows only"),
+                Arguments.of("UserFollowRepo.deleteUserFollowByUserId1AndUserId2",
+                        "delete from user_follow where user_id1 = 42 and user_id2 = 97")
+        ));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void hotQueryDoesNotSeqScan(String name, String sql) throws SQLException {
+        String plan = explain(sql);
+        Matcher seqScan = SEQ_SCAN.matcher(plan);
+        while (seqScan.find()) {
+            // Empty partitions (months ahead, the default one) cost nothing to scan
+            String relation = seqScan.group(1);
+            assertTrue(isEmpty(relation), () -> name + " regressed to a sequential scan on " + relation + ":\n" + plan);
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("feedQueries")
+    void feedQueryPrunesOldPartitions(String name, String sql) throws SQLException {
+        String plan = explain(sql);
+        assertFalse(plan.contains("photo_archive"), () -> name + " reads partitions outside the feed window:\n" + plan);
+    }
+
+    private static boolean isEmpty(String relation) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select reltuples from pg_class where relname = '" + relation + "'")) {
+            return rs.next() && rs.getDouble(1) <= 0;
+        }
+    }
+
+    private static String explain(String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Statement statement = connection.createStatement()) {
+            // Plan only: EXPLAIN without ANALYZE does not run the delete
+            try (ResultSet rs = statement.executeQuery("explain " + sql)) {
+                while (rs.next()) plan.append(rs.getString(1)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
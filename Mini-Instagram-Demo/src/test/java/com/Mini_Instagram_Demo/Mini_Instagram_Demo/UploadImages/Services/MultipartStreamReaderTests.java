@@ -0,0 +1,257 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The hand-written multipart parser, fed through streams that return only a
+ * few bytes per read so delimiters and headers land across buffer refills.
+ */
+class MultipartStreamReaderTests {
+
+    private static final String BOUNDARY = "----form7MA4YWxkTrZu0gW";
+
+    // Hands out at most chunkSize bytes per read, like a slow socket
+    private static InputStream chunked(byte[] body, int chunkSize) {
+        return new ByteArrayInputStream(body) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, chunkSize));
+            }
+        };
+    }
+
+    private static MultipartStreamReader reader(byte[] body, int chunkSize) {
+        return new MultipartStreamReader(chunked(body, chunkSize), BOUNDARY);
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) out.writeBytes(part);
+        return out.toByteArray();
+    }
+
+    // A text field followed by a file part, closed properly
+    private static byte[] form(String preamble, byte[] file) {
+        return concat(ascii(preamble
+                        + "--" + BOUNDARY + "\r\n"
+                        + "Content-Disposition: form-data; name=\"photoLan\"\r\n"
+                        + "\r\n"
+                        + "42\r\n"
+                        + "--" + BOUNDARY + "\r\n"
+                        + "Content-Disposition: form-data; name=\"image\"; filename=\"cat.png\"\r\n"
+                        + "Content-Type: image/png\r\n"
+                        + "\r\n"),
+                file,
+                ascii("\r\n--" + BOUNDARY + "--\r\n"));
+    }
+
+    private static byte[] readFile(MultipartStreamReader reader, long maxBytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = reader.transferTo(Channels.newChannel(out), maxBytes);
+        assertEquals(out.size(), written);
+        return out.toByteArray();
+    }
+
+    private static void assertForm(MultipartStreamReader reader, byte[] file) throws IOException {
+        assertTrue(reader.nextPart());
+        assertEquals("photoLan", reader.getName());
+        assertNull(reader.getFilename());
+        assertEquals("42", reader.readString(64));
+
+        assertTrue(reader.nextPart());
+        assertEquals("image", reader.getName());
+        assertEquals("cat.png", reader.getFilename());
+        assertEquals("image/png", reader.getContentType());
+        assertArrayEquals(file, readFile(reader, Long.MAX_VALUE));
+
+        assertFalse(reader.nextPart());
+        assertFalse(reader.nextPart());
+    }
+
+    @ParameterizedTest(name = "{0} bytes per read")
+    @ValueSource(ints = {1, 2, 3, 7, 64, 8192, 1 << 20})
+    void readsFieldsAndFileWhateverTheReadSize(int chunkSize) throws IOException {
+        byte[] file = new byte[20_000];
+        new Random(chunkSize).nextBytes(file);
+        assertForm(reader(form("", file), chunkSize), file);
+    }
+
+    // Sizes around the 64 KB read buffer, so the closing delimiter straddles a refill
+    @ParameterizedTest(name = "{0} byte file")
+    @ValueSource(ints = {65_280, 65_500, 65_520, 65_530, 65_536, 65_540, 131_050, 131_072})
+    void findsDelimiterSplitAcrossRefills(int fileSize) throws IOException {
+        byte[] file = new byte[fileSize];
+        new Random(fileSize).nextBytes(file);
+        assertForm(reader(form("", file), 4093), file);
+    }
+
+    // Data that starts like the delimiter but breaks off must come through untouched
+    @ParameterizedTest(name = "{0} bytes per read")
+    @ValueSource(ints = {1, 5, 8192})
+    void keepsNearMissDelimitersInTheBody(int chunkSize) throws IOException {
+        byte[] file = ascii("a\r\nb\r\n-c\r\n--d\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1)
+                + "X\r\n--" + BOUNDARY.substring(0, 5) + "\r\r\n\r\n-");
+        assertForm(reader(form("", file), chunkSize), file);
+    }
+
+    @ParameterizedTest(name = "{0} bytes per read")
+    @ValueSource(ints = {1, 3, 8192})
+    void skipsPreambleBeforeFirstBoundary(int chunkSize) throws IOException {
+        byte[] file = ascii("PNG");
+        String preamble = "This is a multi-part message in MIME format.\r\n--not-the-boundary\r\n\r\n";
+        assertForm(reader(form(preamble, file), chunkSize), file);
+    }
+
+    @Test
+    void ignoresEpilogueAfterClosingBoundary() throws IOException {
+        byte[] file = ascii("PNG");
+        byte[] body = concat(form("", file), ascii("epilogue\r\n--" + BOUNDARY + "\r\nignored"));
+        assertForm(reader(body, 1), file);
+    }
+
+    @Test
+    void skipsPartsThatAreNotRead() throws IOException {
+        byte[] file = new byte[100_000];
+        MultipartStreamReader reader = reader(form("", file), 1000);
+        assertTrue(reader.nextPart());
+        assertTrue(reader.nextPart());
+        assertEquals("image", reader.getName());
+        assertFalse(reader.nextPart());
+    }
+
+    @Test
+    void rejectsBodyWithoutBoundary() {
+        byte[] body = ascii("no multipart here, just some text that is long enough\r\n");
+        assertThrows(IllegalArgumentException.class, () -> reader(body, 3).nextPart());
+    }
+
+    @Test
+    void failsWhenBodyEndsInsidePart() throws IOException {
+        byte[] body = ascii("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"image\"; filename=\"cat.png\"\r\n"
+                + "\r\n"
+                + "truncated upload without a closing boundary");
+        MultipartStreamReader reader = reader(body, 2);
+        assertTrue(reader.nextPart());
+        assertThrows(EOFException.class, () -> readFile(reader, Long.MAX_VALUE));
+    }
+
+    @Test
+    void failsWhenClosingBoundaryIsMissing() throws IOException {
+        // Last part ends with a delimiter, but neither headers nor "--" follow
+        byte[] body = ascii("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"photoLan\"\r\n"
+                + "\r\n"
+                + "42\r\n"
+                + "--" + BOUNDARY + "\r\n");
+        MultipartStreamReader reader = reader(body, 1);
+        assertTrue(reader.nextPart());
+        assertEquals("42", reader.readString(64));
+        assertThrows(EOFException.class, reader::nextPart);
+    }
+
+    @Test
+    void failsWhenBodyEndsRightAfterDelimiter() throws IOException {
+        byte[] body = ascii("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"photoLan\"\r\n"
+                + "\r\n"
+                + "42\r\n"
+                + "--" + BOUNDARY);
+        MultipartStreamReader reader = reader(body, 1);
+        assertTrue(reader.nextPart());
+        assertThrows(EOFException.class, reader::nextPart);
+    }
+
+    @Test
+    void rejectsGarbageAfterDelimiter() throws IOException {
+        byte[] body = ascii("--" + BOUNDARY + "xx\r\n\r\n");
+        assertThrows(IllegalArgumentException.class, () -> reader(body, 1).nextPart());
+    }
+
+    @Test
+    void rejectsOversizedHeaderLine() {
+        byte[] body = ascii("--" + BOUNDARY + "\r\n"
+                + "X-Padding: " + "a".repeat(9 * 1024) + "\r\n"
+                + "\r\n"
+                + "value\r\n"
+                + "--" + BOUNDARY + "--\r\n");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> reader(body, 1000).nextPart());
+        assertEquals("Multipart headers too large", e.getMessage());
+    }
+
+    @Test
+    void rejectsTooManyHeaderLines() {
+        byte[] body = ascii("--" + BOUNDARY + "\r\n"
+                + ("X-Padding: " + "a".repeat(100) + "\r\n").repeat(100)
+                + "\r\n"
+                + "value\r\n"
+                + "--" + BOUNDARY + "--\r\n");
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> reader(body, 7).nextPart());
+        assertEquals("Multipart headers too large", e.getMessage());
+    }
+
+    @Test
+    void failsWhenBodyEndsInsideHeaders() {
+        byte[] body = ascii("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"image\"");
+        assertThrows(EOFException.class, () -> reader(body, 4).nextPart());
+    }
+
+    @Test
+    void limitsFieldAndFileSizes() throws IOException {
+        byte[] file = new byte[5000];
+        MultipartStreamReader reader = reader(form("", file), 100);
+        assertTrue(reader.nextPart());
+        assertThrows(IllegalArgumentException.class, () -> reader.readString(1));
+
+        MultipartStreamReader files = reader(form("", file), 100);
+        files.nextPart();
+        files.nextPart();
+        assertThrows(MaxUploadSizeExceededException.class, () -> readFile(files, 4999));
+    }
+
+    @Test
+    void acceptsFileOfExactlyTheLimit() throws IOException {
+        byte[] file = new byte[5000];
+        MultipartStreamReader reader = reader(form("", file), 100);
+        reader.nextPart();
+        reader.nextPart();
+        assertEquals(5000, readFile(reader, 5000).length);
+    }
+
+    @Test
+    void readsEmptyParts() throws IOException {
+        byte[] file = new byte[0];
+        assertForm(reader(form("", file), 1), file);
+    }
+
+    @Test
+    void rejectsInvalidBoundary() {
+        assertThrows(IllegalArgumentException.class, () -> new MultipartStreamReader(InputStream.nullInputStream(), ""));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MultipartStreamReader(InputStream.nullInputStream(), "b".repeat(71)));
+    }
+}
@@ -0,0 +1,101 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Models.PhotoBlob;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoBlobRepo;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Storage.PhotoStorage;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Blob files are written before any transaction starts, skipped for
+ * duplicates, and written again when the cleanup job removed them meanwhile.
+ */
+class PhotoBlobStoreTests {
+
+    private static final String SHA256 = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    private static final String KEY = "blobs/" + SHA256 + ".png";
+
+    private final PhotoBlobRepo photoBlobRepo = mock(PhotoBlobRepo.class);
+    private final PhotoStorage photoStorage = mock(PhotoStorage.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final PhotoBlobStore photoBlobStore =
+            new PhotoBlobStore(photoBlobRepo, photoStorage, transactionManager, "uploads");
+    private final PhotoBlobStore.BlobContent content = mock(PhotoBlobStore.BlobContent.class);
+
+    private static PhotoBlob blob(int refCount) {
+        PhotoBlob blob = new PhotoBlob();
+        blob.setSha256(SHA256);
+        blob.setStorageKey(KEY);
+        blob.setRefCount(refCount);
+        return blob;
+    }
+
+    private void acquireReturns(int refs) {
+        when(photoBlobRepo.acquire(eq(SHA256), anyString(), anyLong(), any())).thenReturn(refs);
+    }
+
+    @Test
+    void newContentIsWrittenBeforeTheTransaction() throws IOException {
+        when(photoBlobRepo.findById(SHA256)).thenReturn(Optional.empty(), Optional.of(blob(1)));
+        acquireReturns(1);
+        when(photoStorage.exists(KEY)).thenReturn(true);
+
+        photoBlobStore.store(SHA256, 3, "image/png", content);
+
+        InOrder order = inOrder(content, transactionManager, photoBlobRepo);
+        order.verify(content).putInto(photoStorage, KEY, "image/png");
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(photoBlobRepo).acquire(SHA256, KEY, 3, "image/png");
+        verify(content, times(1)).putInto(any(), any(), any());
+    }
+
+    @Test
+    void duplicateOfReferencedBlobIsNotWritten() throws IOException {
+        when(photoBlobRepo.findById(SHA256)).thenReturn(Optional.of(blob(1)), Optional.of(blob(2)));
+        acquireReturns(2);
+
+        photoBlobStore.store(SHA256, 3, "image/png", content);
+
+        verify(content, never()).putInto(any(), any(), any());
+    }
+
+    @Test
+    void fileDeletedByCleanupIsWrittenAgain() throws IOException {
+        // Referenced when checked, then released and cleaned up before the acquire
+        when(photoBlobRepo.findById(SHA256)).thenReturn(Optional.of(blob(1)), Optional.of(blob(1)));
+        acquireReturns(1);
+        when(photoStorage.exists(KEY)).thenReturn(false);
+
+        photoBlobStore.store(SHA256, 3, "image/png", content);
+
+        verify(content, times(1)).putInto(photoStorage, KEY, "image/png");
+    }
+
+    @Test
+    void failedRewriteReleasesTheReference() throws IOException {
+        when(photoBlobRepo.findById(SHA256)).thenReturn(Optional.of(blob(1)), Optional.of(blob(1)));
+        acquireReturns(1);
+        when(photoStorage.exists(KEY)).thenReturn(false);
+        doThrow(new IOException("disk full")).when(content).putInto(photoStorage, KEY, "image/png");
+
+        assertThrows(IOException.class, () -> photoBlobStore.store(SHA256, 3, "image/png", content));
+        verify(photoBlobRepo).release(SHA256);
+    }
+}
@@ -0,0 +1,85 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Partition maintenance against a Postgres container. Uses the last month
+ * the job creates ahead, which holds no photos yet.
+ */
+@SpringBootTest(properties = {
+        "photo.partitions.maintenance-initial-delay-ms=3600000",
+        "follow.stats.reconcile-initial-delay-ms=3600000",
+        "newsfeed.timeline.backfill-on-startup=false"})
+@Testcontainers(disabledWithoutDocker = true)
+class PhotoPartitionServiceTests {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    private static final int PHOTO_ID = 2_000_000_001;
+
+    @Autowired
+    private PhotoPartitionService photoPartitionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${photo.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @AfterEach
+    void deleteTestRows() {
+        jdbcTemplate.update("delete from photo where photo_id = ?", PHOTO_ID);
+    }
+
+    // A photo dated in a month without a partition lands in photo_default
+    @Test
+    void createdMonthTakesOverItsRowsFromDefault() {
+        YearMonth month = YearMonth.now().plusMonths(monthsAhead);
+        String name = "photo_p" + month.getYear() + "_" + String.format("%02d", month.getMonthValue());
+        jdbcTemplate.execute("drop table if exists " + name);
+        jdbcTemplate.update("""
+                insert into photo (photo_id, creation_date, photo_latitude, photo_longitude, photo_path,
+                                   user_id, user_latitude, user_longitude)
+                values (?, ?::timestamp, 0, 0, 'test', 1, 0, 0)
+                """, PHOTO_ID, month.atDay(15).atStartOfDay().toString());
+        assertEquals("photo_default", partitionOfTestPhoto());
+
+        Map<String, List<String>> result = photoPartitionService.maintainPartitions();
+
+        assertEquals(List.of(name), result.get("created"));
+        assertTrue(result.get("failed").isEmpty());
+        assertEquals(name, partitionOfTestPhoto());
+        assertTrue(photoPartitionService.getPartitions().stream().anyMatch(p -> p.name().equals("photo_default")),
+                "photo_default is attached again");
+    }
+
+    private String partitionOfTestPhoto() {
+        return jdbcTemplate.queryForObject("select tableoid::regclass::text from photo where photo_id = ?",
+                String.class, PHOTO_ID);
+    }
+}
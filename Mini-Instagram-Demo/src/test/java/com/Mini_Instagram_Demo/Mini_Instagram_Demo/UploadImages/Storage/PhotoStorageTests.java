@@ -0,0 +1,130 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Storage;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.core.io.Resource;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.MinIOContainer;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Same contract for every PhotoStorage backend: the local one always, the
+ * S3 one against a MinIO container when Docker is available.
+ */
+class PhotoStorageTests {
+
+    private static final String KEY = "blobs/9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08.png";
+
+    @TempDir
+    static Path root;
+
+    private static MinIOContainer minio;
+
+    static Stream<Arguments> storages() {
+        List<Arguments> storages = new ArrayList<>();
+        storages.add(Arguments.of("local", new LocalPhotoStorage(root.resolve("uploads").toString())));
+        if (DockerClientFactory.instance().isDockerAvailable()) {
+            if (minio == null) {
+                minio = new MinIOContainer("minio/minio:RELEASE.2024-08-17T01-24-54Z");
+                minio.start();
+            }
+            S3Client client = S3Client.builder()
+                    .endpointOverride(URI.create(minio.getS3URL()))
+                    .region(Region.US_EAST_1)
+                    .credentialsProvider(StaticCredentialsProvider.create(
+                            AwsBasicCredentials.create(minio.getUserName(), minio.getPassword())))
+                    .forcePathStyle(true)
+                    .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED)
+                    .build();
+            S3PhotoStorage s3 = new S3PhotoStorage(client, "photos", "test");
+            s3.createBucketIfMissing();
+            storages.add(Arguments.of("s3", s3));
+        }
+        return storages.stream();
+    }
+
+    @AfterAll
+    static void stopMinio() {
+        if (minio != null) minio.stop();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("storages")
+    void putFileThenReadBack(String name, PhotoStorage storage) throws IOException {
+        byte[] content = "photo bytes".getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(root.resolve(name + ".part"), content);
+
+        storage.put(KEY, file, "image/png");
+
+        assertFalse(Files.exists(file), "the spooled file is consumed");
+        assertTrue(storage.exists(KEY));
+        Resource resource = storage.get(KEY);
+        assertTrue(resource.exists());
+        assertEquals(content.length, resource.contentLength());
+        assertEquals(KEY.substring("blobs/".length()), resource.getFilename());
+        try (InputStream in = resource.getInputStream()) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+
+        storage.delete(KEY);
+        assertFalse(storage.exists(KEY));
+        assertFalse(storage.get(KEY).exists());
+        storage.delete(KEY);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("storages")
+    void putStreamReplacesContent(String name, PhotoStorage storage) throws IOException {
+        byte[] first = {1, 2, 3};
+        byte[] second = {4, 5, 6, 7};
+        storage.put(KEY, new ByteArrayInputStream(first), first.length, "image/png");
+        storage.put(KEY, new ByteArrayInputStream(second), second.length, "image/png");
+
+        try (InputStream in = storage.get(KEY).getInputStream()) {
+            assertArrayEquals(second, in.readAllBytes());
+        }
+        storage.delete(KEY);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("storages")
+    void missingKeyDoesNotExist(String name, PhotoStorage storage) throws IOException {
+        String key = "derivatives/0000000000000000000000000000000000000000000000000000000000000000_feed.jpg";
+        assertFalse(storage.exists(key));
+        assertThrows(IOException.class, () -> storage.get(key).getInputStream().close());
+    }
+
+    @Test
+    void localStorageShardsByHashAndStaysInsideItsRoot() throws IOException {
+        LocalPhotoStorage storage = new LocalPhotoStorage(root.resolve("sharded").toString());
+        storage.put(KEY, new ByteArrayInputStream(new byte[]{1}), 1, "image/png");
+
+        assertTrue(Files.exists(root.resolve("sharded/blobs/9f/86").resolve(KEY.substring("blobs/".length()))));
+        assertThrows(IllegalArgumentException.class, () -> storage.get("../../etc/passwd"));
+    }
+}
@@ -0,0 +1,191 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.UserFollow.Services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Follow writes against a Postgres container, with ids far above any real
+ * user so existing rows are never touched.
+ */
+@SpringBootTest(properties = {
+        "follow.stats.reconcile-initial-delay-ms=3600000",
+        "newsfeed.timeline.backfill-on-startup=false"})
+@Testcontainers(disabledWithoutDocker = true)
+class FollowingServiceTests {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    private static final int A = 2_000_000_001;
+    private static final int B = 2_000_000_002;
+
+    @Autowired
+    private FollowingService followingService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private static final int C = 2_000_000_003;
+
+    @BeforeEach
+    @AfterEach
+    void deleteTestRows() {
+        jdbcTemplate.update("delete from user_follow where user_id1 in (?, ?, ?) or user_id2 in (?, ?, ?)",
+                A, B, C, A, B, C);
+        jdbcTemplate.update("delete from user_follow_stats where user_id in (?, ?, ?)", A, B, C);
+    }
+
+    // Both follows queue up behind a lock on the two stats rows and then run
+    // at once; locking the rows in opposite order would deadlock one of them
+    @Test
+    void oppositeFollowsDoNotDeadlock() throws Exception {
+        runTogether(() -> followingService.followUser(A, B), () -> followingService.followUser(B, A));
+
+        assertCounts(A, 1, 1);
+        assertCounts(B, 1, 1);
+    }
+
+    // A bulk write used to lock the follower's row first and then the targets in request order
+    @Test
+    void overlappingBulkFollowsDoNotDeadlock() throws Exception {
+        runTogether(() -> followingService.followUsers(A, List.of(C, B)),
+                () -> followingService.followUsers(B, List.of(C, A)));
+        assertCounts(A, 1, 2);
+        assertCounts(B, 1, 2);
+        assertCounts(C, 2, 0);
+
+        runTogether(() -> followingService.unfollowUsers(A, List.of(C, B)),
+                () -> followingService.unfollowUsers(B, List.of(C, A)));
+        assertCounts(A, 0, 0);
+        assertCounts(B, 0, 0);
+        assertCounts(C, 0, 0);
+    }
+
+    @Test
+    void reconcileZeroesCountersOfUsersWithoutFollows() {
+        jdbcTemplate.update("insert into user_follow_stats values (?, 3, 2)", A);
+        followingService.reconcileFollowCounts();
+        assertCounts(A, 0, 0);
+    }
+
+    // A follow commits after reconcile counted user_follow but before it reached the stats rows
+    @Test
+    void reconcileKeepsFollowCommittedMeanwhile() throws Exception {
+        // Drift to repair: a follow written without its counters
+        jdbcTemplate.update("insert into user_follow_stats values (?, 0, 0), (?, 0, 0)", A, B);
+        jdbcTemplate.update("insert into user_follow (user_id1, user_id2) values (?, ?)", A, B);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (Connection follow = dataSource.getConnection()) {
+            // What followUser(B, A) writes, held open
+            follow.setAutoCommit(false);
+            try (PreparedStatement insert = follow.prepareStatement(
+                    "insert into user_follow (user_id1, user_id2) values (?, ?)");
+                 PreparedStatement stats = follow.prepareStatement(
+                         "update user_follow_stats set followers_count = followers_count + ?,"
+                                 + " following_count = following_count + ? where user_id = ?")) {
+                insert.setInt(1, B);
+                insert.setInt(2, A);
+                insert.executeUpdate();
+                for (int[] delta : new int[][]{{1, 0, A}, {0, 1, B}}) {
+                    stats.setInt(1, delta[0]);
+                    stats.setInt(2, delta[1]);
+                    stats.setInt(3, delta[2]);
+                    stats.executeUpdate();
+                }
+            }
+            Future<Integer> reconcile = executor.submit(() -> followingService.reconcileFollowCounts());
+            awaitBlockedOnStats(1);
+            follow.commit();
+
+            reconcile.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertCounts(A, 1, 1);
+        assertCounts(B, 1, 1);
+    }
+
+    // Holds all test stats rows locked until every write is blocked on them, then lets them go at once
+    private void runTogether(Runnable... writes) throws Exception {
+        jdbcTemplate.update("""
+                insert into user_follow_stats values (?, 0, 0), (?, 0, 0), (?, 0, 0)
+                on conflict do nothing
+                """, A, B, C);
+
+        ExecutorService executor = Executors.newFixedThreadPool(writes.length);
+        List<Future<?>> running = new ArrayList<>();
+        try (Connection holder = dataSource.getConnection()) {
+            holder.setAutoCommit(false);
+            try (PreparedStatement lock = holder.prepareStatement(
+                    "select 1 from user_follow_stats where user_id in (?, ?, ?) for update")) {
+                lock.setInt(1, A);
+                lock.setInt(2, B);
+                lock.setInt(3, C);
+                lock.executeQuery().close();
+            }
+            for (Runnable write : writes) running.add(executor.submit(write));
+            awaitBlockedOnStats(writes.length);
+            holder.commit();
+
+            for (Future<?> write : running) write.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertCounts(int userId, int followers, int following) {
+        Map<String, Object> stats = jdbcTemplate.queryForMap(
+                "select followers_count, following_count from user_follow_stats where user_id = ?", userId);
+        assertEquals(followers, stats.get("followers_count"), "followers of " + userId);
+        assertEquals(following, stats.get("following_count"), "following of " + userId);
+    }
+
+    private void awaitBlockedOnStats(int sessions) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            Integer blocked = jdbcTemplate.queryForObject("""
+                    select count(*) from pg_stat_activity
+                    where datname = current_database() and wait_event_type = 'Lock'
+                      and query like '%user_follow_stats%'
+                    """, Integer.class);
+            if (blocked != null && blocked >= sessions) return;
+            Thread.sleep(10);
+        }
+        fail("Follows never blocked on the stats rows");
+    }
+}
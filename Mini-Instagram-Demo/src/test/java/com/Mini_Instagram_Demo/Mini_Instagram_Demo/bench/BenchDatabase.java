@@ -0,0 +1,75 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.bench;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationVersion;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Postgres for the benchmarks: a container with the Flyway migrations
+ * applied, seeded through plain JDBC like QueryPlanTests. Needs Docker.
+ */
+final class BenchDatabase implements AutoCloseable {
+
+    private final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+    private final Connection connection;
+
+    BenchDatabase() throws SQLException {
+        this(MigrationVersion.LATEST);
+    }
+
+    // Schema as of an older migration; migrate() brings it up to date later
+    BenchDatabase(MigrationVersion target) throws SQLException {
+        postgres.start();
+        migrate(target);
+        connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+
+    void migrate() {
+        migrate(MigrationVersion.LATEST);
+    }
+
+    private void migrate(MigrationVersion target) {
+        Flyway.configure()
+                .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                .target(target)
+                .load()
+                .migrate();
+    }
+
+    Connection connection() {
+        return connection;
+    }
+
+    void seedPhotos(int users, int perUser) throws SQLException {
+        seedPhotos(users, perUser, Duration.ofSeconds((long) users * perUser));
+    }
+
+    // 🔹 perUser photos for each of users 1..users, evenly spread over the span, the newest now
+    void seedPhotos(int users, int perUser, Duration span) throws SQLException {
+        long stepMicros = span.toNanos() / 1000 / ((long) users * perUser);
+        execute("insert into photo (user_id, creation_date, photo_path,"
+                + " photo_latitude, photo_longitude, user_latitude, user_longitude)"
+                + " select u, localtimestamp - ((n - 1) * " + users + " + u) * interval '" + stepMicros + " microseconds',"
+                + " 'p', 0, 0, 0, 0"
+                + " from generate_series(1, " + users + ") u, generate_series(1, " + perUser + ") n");
+        execute("analyze photo");
+    }
+
+    void execute(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        connection.close();
+        postgres.stop();
+    }
+}
@@ -0,0 +1,128 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.bench;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services.FeedEngine;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.NewsFeed.Services.FeedWindow;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Repositories.PhotoRepo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * One feed page of 100 photos on a million photos in Postgres: FeedEngine's
+ * k-way merge over warm per-user indexes against the repository query that
+ * sorts the followees' photos in the database.
+ * <p>
+ * Run with {@code mvn -Pbench test -DskipTests -Dbench=FeedMergeBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeedMergeBenchmark {
+
+    private static final int USERS = 5_000;
+    private static final int PHOTOS_PER_USER = 200;
+    private static final int PAGE = 100;
+
+    @Param({"10", "100", "500"})
+    private int followees;
+
+    private BenchDatabase database;
+    private FeedEngine engine;
+    private List<Integer> followeeIds;
+    private PreparedStatement feedKeys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = new BenchDatabase();
+        database.seedPhotos(USERS, PHOTOS_PER_USER);
+        Date since = new Date(0);
+
+        followeeIds = new ArrayList<>();
+        StringJoiner in = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < followees; i++) {
+            int userId = 1 + i * (USERS / followees);
+            followeeIds.add(userId);
+            in.add(String.valueOf(userId));
+        }
+
+        // PhotoRepo.findFeedKeys, as Hibernate writes it
+        feedKeys = database.connection().prepareStatement("select photo_id, creation_date from photo"
+                + " where user_id in " + in + " and creation_date >= ?"
+                + " order by creation_date desc, photo_id desc limit " + PAGE);
+        feedKeys.setTimestamp(1, new Timestamp(since.getTime()));
+
+        PreparedStatement recentKeys = database.connection().prepareStatement("select user_id, photo_id, creation_date from ("
+                + " select p.user_id, p.photo_id, p.creation_date,"
+                + " row_number() over (partition by p.user_id order by p.creation_date desc, p.photo_id desc) as rn"
+                + " from photo p where p.user_id in " + in + " and p.creation_date >= ?) ranked"
+                + " where rn <= ? order by user_id, creation_date desc, photo_id desc");
+        PhotoRepo photoRepo = mock(PhotoRepo.class);
+        when(photoRepo.findRecentPhotoKeysByUserIdIn(anyList(), any(), anyInt())).thenAnswer(call -> {
+            recentKeys.setTimestamp(1, new Timestamp(since.getTime()));
+            recentKeys.setInt(2, call.getArgument(2));
+            List<Object[]> rows = new ArrayList<>();
+            try (ResultSet rs = recentKeys.executeQuery()) {
+                while (rs.next()) rows.add(new Object[]{rs.getInt(1), rs.getInt(2), new Date(rs.getTimestamp(3).getTime())});
+            }
+            return rows;
+        });
+        FeedWindow feedWindow = mock(FeedWindow.class);
+        when(feedWindow.since()).thenReturn(since);
+
+        engine = new FeedEngine(photoRepo, feedWindow);
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "perUserCapacity", PHOTOS_PER_USER);
+        ReflectionTestUtils.setField(engine, "maxUsers", USERS);
+        // Loads the indexes once; the benchmark measures the steady state
+        engine.merge(followeeIds, null, PAGE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Integer> engineMerge() {
+        return engine.merge(followeeIds, null, PAGE).photoIds();
+    }
+
+    @Benchmark
+    public List<Integer> repositoryQuery() throws SQLException {
+        List<Integer> ids = new ArrayList<>(PAGE);
+        try (ResultSet rs = feedKeys.executeQuery()) {
+            while (rs.next()) ids.add(rs.getInt(1));
+        }
+        return ids;
+    }
+}
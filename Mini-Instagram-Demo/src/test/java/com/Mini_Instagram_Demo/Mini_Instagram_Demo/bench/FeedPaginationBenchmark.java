@@ -0,0 +1,117 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One feed page of 100 photos at increasing depth in a feed of a million
+ * photos: the keyset query behind {@code ?cursor=} against OFFSET paging.
+ * Keyset latency should stay flat while OFFSET grows with the depth.
+ * <p>
+ * Run with {@code mvn -Pbench test -DskipTests -Dbench=FeedPaginationBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeedPaginationBenchmark {
+
+    private static final int USERS = 5_000;
+    private static final int PHOTOS_PER_USER = 200;
+    private static final int PAGE = 100;
+
+    // Photos skipped before the page
+    @Param({"0", "10000", "100000", "900000"})
+    private int depth;
+
+    private BenchDatabase database;
+    private PreparedStatement keyset;
+    private PreparedStatement offset;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = new BenchDatabase();
+        database.seedPhotos(USERS, PHOTOS_PER_USER);
+
+        // The follower follows every user, so the feed holds all the photos
+        StringJoiner in = new StringJoiner(", ", "(", ")");
+        for (int userId = 1; userId <= USERS; userId++) in.add(String.valueOf(userId));
+        String feed = "select photo_id, creation_date from photo where user_id in " + in + " and creation_date >= ?";
+        String newestFirst = " order by creation_date desc, photo_id desc";
+        Timestamp since = new Timestamp(0);
+
+        offset = database.connection().prepareStatement(feed + newestFirst + " limit " + PAGE + " offset " + depth);
+        offset.setTimestamp(1, since);
+
+        if (depth == 0) {
+            // PhotoRepo.findFeedKeys: the first page has no cursor
+            keyset = database.connection().prepareStatement(feed + newestFirst + " limit " + PAGE);
+            keyset.setTimestamp(1, since);
+            return;
+        }
+        // The cursor a client holds after reading depth photos
+        Timestamp before;
+        int photoId;
+        try (PreparedStatement last = database.connection().prepareStatement(
+                feed + newestFirst + " limit 1 offset " + (depth - 1))) {
+            last.setTimestamp(1, since);
+            try (ResultSet rs = last.executeQuery()) {
+                rs.next();
+                photoId = rs.getInt(1);
+                before = rs.getTimestamp(2);
+            }
+        }
+        // PhotoRepo.findFeedKeysBefore
+        keyset = database.connection().prepareStatement(feed
+                + " and (creation_date < ? or (creation_date = ? and photo_id < ?))" + newestFirst + " limit " + PAGE);
+        keyset.setTimestamp(1, since);
+        keyset.setTimestamp(2, before);
+        keyset.setTimestamp(3, before);
+        keyset.setInt(4, photoId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Integer> keyset() throws SQLException {
+        return photoIds(keyset);
+    }
+
+    @Benchmark
+    public List<Integer> offset() throws SQLException {
+        return photoIds(offset);
+    }
+
+    private static List<Integer> photoIds(PreparedStatement query) throws SQLException {
+        List<Integer> ids = new ArrayList<>(PAGE);
+        try (ResultSet rs = query.executeQuery()) {
+            while (rs.next()) ids.add(rs.getInt(1));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,105 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.bench;
+
+import org.flywaydb.core.api.MigrationVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Photo inserts and feed queries on 20 million photos spread over two years,
+ * before and after the photo table was partitioned by month. The feed query
+ * is bounded by the 12-month feed window, so on the partitioned table it
+ * skips the older year of partitions.
+ * <p>
+ * The unpartitioned schema stops at V2; the partitioned one is migrated from
+ * there by V3, which moves the seeded rows into monthly partitions. Seeding
+ * takes a few minutes per schema.
+ * <p>
+ * Run with {@code mvn -Pbench test -DskipTests -Dbench=PhotoPartitionBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhotoPartitionBenchmark {
+
+    private static final MigrationVersion UNPARTITIONED = MigrationVersion.fromVersion("2");
+    private static final int USERS = 100_000;
+    private static final int PHOTOS_PER_USER = 200;
+    private static final int FOLLOWEES = 100;
+    private static final int PAGE = 100;
+
+    @Param({"unpartitioned", "partitioned"})
+    private String schema;
+
+    private BenchDatabase database;
+    private PreparedStatement feedKeys;
+    private PreparedStatement insert;
+    private int nextUserId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        database = new BenchDatabase(UNPARTITIONED);
+        database.seedPhotos(USERS, PHOTOS_PER_USER, Duration.ofDays(730));
+        if (schema.equals("partitioned")) {
+            database.migrate();
+            database.execute("analyze photo");
+        }
+
+        StringJoiner in = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < FOLLOWEES; i++) in.add(String.valueOf(1 + i * (USERS / FOLLOWEES)));
+        // PhotoRepo.findFeedKeys, from the start of the month 12 months back as FeedWindow does
+        feedKeys = database.connection().prepareStatement("select photo_id, creation_date from photo"
+                + " where user_id in " + in + " and creation_date >= ?"
+                + " order by creation_date desc, photo_id desc limit " + PAGE);
+        feedKeys.setTimestamp(1, Timestamp.valueOf(LocalDate.now().withDayOfMonth(1).minusMonths(12).atStartOfDay()));
+
+        insert = database.connection().prepareStatement("insert into photo (user_id, creation_date, photo_path,"
+                + " photo_latitude, photo_longitude, user_latitude, user_longitude)"
+                + " values (?, localtimestamp, 'p', 0, 0, 0, 0)");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Integer> feedQuery() throws SQLException {
+        List<Integer> ids = new ArrayList<>(PAGE);
+        try (ResultSet rs = feedKeys.executeQuery()) {
+            while (rs.next()) ids.add(rs.getInt(1));
+        }
+        return ids;
+    }
+
+    @Benchmark
+    public int insert() throws SQLException {
+        nextUserId = nextUserId % USERS + 1;
+        insert.setInt(1, nextUserId);
+        return insert.executeUpdate();
+    }
+}
@@ -0,0 +1,128 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.bench;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Storage.LocalPhotoStorage;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Storage.PhotoStorage;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.UploadImages.Storage.S3PhotoStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+import org.testcontainers.containers.MinIOContainer;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storing and reading back one photo through each PhotoStorage backend: the
+ * hash-sharded local directory and S3 against a MinIO container.
+ * <p>
+ * Run with {@code mvn -Pbench test -DskipTests -Dbench=PhotoStorageBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhotoStorageBenchmark {
+
+    // Puts cycle over this many keys, so the store does not keep growing
+    private static final int KEYS = 256;
+
+    @Param({"local", "s3"})
+    private String backend;
+
+    @Param({"262144", "4194304"})
+    private int photoBytes;
+
+    private Path root;
+    private MinIOContainer minio;
+    private PhotoStorage storage;
+    private byte[] photo;
+    private String[] keys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("photo-storage-bench");
+        if (backend.equals("s3")) {
+            minio = new MinIOContainer("minio/minio:RELEASE.2024-08-17T01-24-54Z");
+            minio.start();
+            S3Client client = S3Client.builder()
+                    .endpointOverride(URI.create(minio.getS3URL()))
+                    .region(Region.US_EAST_1)
+                    .credentialsProvider(StaticCredentialsProvider.create(
+                            AwsBasicCredentials.create(minio.getUserName(), minio.getPassword())))
+                    .forcePathStyle(true)
+                    .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED)
+                    .build();
+            S3PhotoStorage s3 = new S3PhotoStorage(client, "photos", "bench");
+            s3.createBucketIfMissing();
+            storage = s3;
+        } else {
+            storage = new LocalPhotoStorage(root.resolve("uploads").toString());
+        }
+
+        photo = new byte[photoBytes];
+        ThreadLocalRandom.current().nextBytes(photo);
+        // Key names start with a content hash; any 64 hex digits do here
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "blobs/" + "%016x".formatted(i * 0x9e3779b97f4a7c15L) + "0".repeat(48) + ".jpg";
+            storage.put(keys[i], new ByteArrayInputStream(photo), photo.length, "image/jpeg");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (storage instanceof S3PhotoStorage s3) s3.close();
+        if (minio != null) minio.stop();
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    @Benchmark
+    public String put() throws IOException {
+        String key = nextKey();
+        storage.put(key, new ByteArrayInputStream(photo), photo.length, "image/jpeg");
+        return key;
+    }
+
+    @Benchmark
+    public long get() throws IOException {
+        try (InputStream in = storage.get(nextKey()).getInputStream()) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public boolean exists() throws IOException {
+        return storage.exists(nextKey());
+    }
+
+    private String nextKey() {
+        next = (next + 1) % KEYS;
+        return keys[next];
+    }
+}
@@ -0,0 +1,171 @@
+package com.Mini_Instagram_Demo.Mini_Instagram_Demo.bench;
+
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Models.CacheHeaders;
+import com.Mini_Instagram_Demo.Mini_Instagram_Demo.DownloadImages.Services.RangeDownloadWriter;
+import jakarta.servlet.ServletOutputStream;
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.apache.catalina.connector.OutputBuffer;
+import org.apache.coyote.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent downloads through RangeDownloadWriter into a Tomcat output
+ * stream that discards the bytes: a local file read through a pooled direct
+ * buffer against the same file copied through a heap byte[], whole and as a
+ * 64 KiB range. The bench profile runs JMH's gc profiler, which reports the
+ * allocation rate and GC count next to the throughput.
+ * <p>
+ * Sendfile is off: Tomcat only performs it from a real connector.
+ * <p>
+ * Run with {@code mvn -Pbench test -DskipTests -Dbench=RangeDownloadBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RangeDownloadBenchmark {
+
+    @Param({"file", "stream"})
+    private String source;
+
+    @Param({"full", "range"})
+    private String request;
+
+    @Param({"262144", "4194304"})
+    private int fileBytes;
+
+    private Path root;
+    private Resource resource;
+    private RangeDownloadWriter writer;
+    private final CacheHeaders cacheHeaders = new CacheHeaders("\"bench\"", 1_700_000_000_000L, "max-age=60");
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("range-download-bench");
+        byte[] content = new byte[fileBytes];
+        ThreadLocalRandom.current().nextBytes(content);
+        Path file = Files.write(root.resolve("photo.jpg"), content);
+        // Anything that is not a file goes through the byte[] copy
+        resource = source.equals("file") ? new FileSystemResource(file) : new StreamedFile(file);
+
+        writer = new RangeDownloadWriter();
+        ReflectionTestUtils.setField(writer, "sendfileMinBytes", Long.MAX_VALUE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(root);
+    }
+
+    // One connection: its request and the Tomcat buffers behind its response, reused across downloads
+    @State(Scope.Thread)
+    public static class Connection {
+
+        private MockHttpServletRequest request;
+        private Response coyoteResponse;
+        private OutputBuffer outputBuffer;
+        private ServletOutputStream out;
+        private long bytesWritten;
+
+        @Setup(Level.Trial)
+        public void setUp(RangeDownloadBenchmark benchmark) {
+            request = new MockHttpServletRequest("GET", "/api/download/image/1");
+            if (benchmark.request.equals("range")) request.addHeader(HttpHeaders.RANGE, "bytes=65536-131071");
+
+            coyoteResponse = new Response();
+            coyoteResponse.setOutputBuffer(new org.apache.coyote.OutputBuffer() {
+                @Override
+                public int doWrite(ByteBuffer chunk) {
+                    int n = chunk.remaining();
+                    chunk.position(chunk.limit());
+                    bytesWritten += n;
+                    return n;
+                }
+
+                @Override
+                public long getBytesWritten() {
+                    return bytesWritten;
+                }
+            });
+            outputBuffer = new OutputBuffer(OutputBuffer.DEFAULT_BUFFER_SIZE);
+            outputBuffer.setResponse(coyoteResponse);
+            out = new CoyoteOutputStream(outputBuffer) {
+            };
+        }
+
+        private MockHttpServletResponse response() {
+            outputBuffer.recycle();
+            coyoteResponse.recycle();
+            return new MockHttpServletResponse() {
+                @Override
+                public ServletOutputStream getOutputStream() {
+                    return out;
+                }
+            };
+        }
+    }
+
+    @Benchmark
+    public long download(Connection connection) throws IOException {
+        writer.write(resource, "image/jpeg", "inline", cacheHeaders, connection.request, connection.response());
+        connection.out.flush();
+        return connection.bytesWritten;
+    }
+
+    // A file seen only through its stream, as an object store would serve it
+    private static final class StreamedFile extends AbstractResource {
+
+        private final Path file;
+
+        StreamedFile(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(file);
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return Files.size(file);
+        }
+
+        @Override
+        public String getDescription() {
+            return "stream of " + file;
+        }
+    }
+}